@@ -0,0 +1,84 @@
+package com.tongtongbigboy.lexer;
+
+/**
+ * 基准测试和单元测试共用的正则表达式族
+ */
+public class PatternFamilies {
+
+    /**
+     * 根据名称生成正则表达式
+     * literal    长字面量
+     * charClass  大字符集合，类似标识符
+     * nestedStar 嵌套闭包
+     * blowupN    (a|b)*a(a|b)...，共 N 个 (a|b)，最小 DFA 有 2^(N+1) 个状态
+     * @param family
+     * @return
+     */
+    public static String create(String family) {
+        switch (family) {
+            case "literal":
+                return literal(256);
+            case "charClass":
+                return "([a-zA-Z_])([a-zA-Z0-9_])*(.([a-zA-Z_])([a-zA-Z0-9_])*)*";
+            case "nestedStar":
+                return "((a|b*)*(c|d*)*)*((e|f)*(g))*(h)";
+            default:
+                if (family.startsWith("blowup")) {
+                    return blowup(Integer.parseInt(family.substring("blowup".length())));
+                }
+                throw new RuntimeException("未知的正则表达式族：" + family);
+        }
+    }
+
+    /**
+     * 生成用于匹配的输入文本，字符取自正则表达式中出现的字符
+     * @param family
+     * @param length
+     * @return
+     */
+    public static String input(String family, int length) {
+        String alphabet;
+        switch (family) {
+            case "literal":
+                //字面量本身重复出现
+                alphabet = null;
+                break;
+            case "charClass":
+                alphabet = "abcXYZ_019.";
+                break;
+            case "nestedStar":
+                alphabet = "abcdefgh";
+                break;
+            default:
+                alphabet = "ab";
+        }
+        StringBuilder sb = new StringBuilder(length);
+        String literal = literal(256);
+        long seed = 1;
+        for (int i = 0; i < length; i++) {
+            if (alphabet == null) {
+                sb.append(literal.charAt(i % literal.length()));
+                continue;
+            }
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            sb.append(alphabet.charAt((int) ((seed >>> 33) % alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    private static String literal(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        return sb.toString();
+    }
+
+    private static String blowup(int n) {
+        StringBuilder sb = new StringBuilder("(a|b)*a");
+        for (int i = 0; i < n; i++) {
+            sb.append("(a|b)");
+        }
+        return sb.toString();
+    }
+}
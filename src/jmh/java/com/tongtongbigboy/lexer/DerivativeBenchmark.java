@@ -0,0 +1,53 @@
+package com.tongtongbigboy.lexer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两种 DFA 构造方式的对比，都从正则表达式开始：
+ * thompson 为 Thompson 构造 + 子集构造，derivatives 为 DerivativeConstruction；
+ * 带 Min 后缀的方法再加上最小化，比较得到最小 DFA 的总时间。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DerivativeBenchmark {
+
+    @Param({"literal", "charClass", "nestedStar", "blowup8", "blowup12"})
+    public String family;
+
+    private String pattern;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pattern = PatternFamilies.create(family);
+    }
+
+    @Benchmark
+    public DFAGraph thompson() {
+        NFAGraph graph = NFARegexUtil.createNFAGraph(pattern);
+        graph.getEndState().setEnd(true);
+        graph.getStartState().setStart(true);
+        return DFARegexUtil.NFAToDFA(graph);
+    }
+
+    @Benchmark
+    public DFAGraph derivatives() {
+        return DerivativeConstruction.toDFA(Collections.singletonList(pattern), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public DFAGraph thompsonMin() {
+        return thompson().translateMinDFA();
+    }
+
+    @Benchmark
+    public DFAGraph derivativesMin() {
+        return derivatives().translateMinDFA();
+    }
+}
@@ -0,0 +1,54 @@
+package com.tongtongbigboy.lexer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GraphvizUtil.createStateGraph 的基准测试。
+ * 图片渲染调用外部引擎，比其他阶段慢几个数量级，只测状态数不太多的正则表达式族。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class GraphvizBenchmark {
+
+    @Param({"literal", "charClass", "nestedStar", "blowup8"})
+    public String family;
+
+    private Map<String, List<String>> mapList;
+    private File outputDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        NFAGraph nfaGraph = NFARegexUtil.createNFAGraph(PatternFamilies.create(family));
+        nfaGraph.getEndState().setEnd(true);
+        nfaGraph.getStartState().setStart(true);
+        mapList = DFARegexUtil.toMapList(DFARegexUtil.NFAToDFA(nfaGraph).translateMinDFA());
+        outputDir = Files.createTempDirectory("lexer-jmh").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = outputDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        outputDir.delete();
+    }
+
+    @Benchmark
+    public void createStateGraph() throws IOException {
+        GraphvizUtil.createStateGraph(mapList, new File(outputDir, family).getPath());
+    }
+}
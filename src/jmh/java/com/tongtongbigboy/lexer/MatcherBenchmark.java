@@ -0,0 +1,56 @@
+package com.tongtongbigboy.lexer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 匹配器的基准测试：字节码匹配器（MatcherGenerator）与查表匹配器（CompiledDFA）。
+ * 输入为 64K 个字符，scan 从头到尾查找所有不重叠的匹配，lookingAt 从开头做一次最长匹配。
+ * bytecode 直接调用 generate，literal、blowup8 的 DFA 较大，用来观察方法过大不被 JIT 编译时的代价。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatcherBenchmark {
+
+    @Param({"literal", "charClass", "nestedStar", "blowup8"})
+    public String family;
+
+    @Param({"table", "bytecode"})
+    public String engine;
+
+    private AutomatonMatcher matcher;
+    private String input;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        CompiledDFA dfa = PatternCache.getDefault().get(PatternFamilies.create(family)).getCompiledDFA();
+        matcher = "table".equals(engine) ? dfa : MatcherGenerator.generate(dfa);
+        input = PatternFamilies.input(family, 64 * 1024);
+    }
+
+    @Benchmark
+    public int lookingAt() {
+        return matcher.lookingAt(input, 0);
+    }
+
+    @Benchmark
+    public int scan() {
+        int count = 0;
+        int from = 0;
+        while (from <= input.length()) {
+            long match = matcher.find(input, from);
+            if (match < 0) {
+                break;
+            }
+            count++;
+            int end = CompiledDFA.matchEnd(match);
+            from = end > CompiledDFA.matchStart(match) ? end : end + 1;
+        }
+        return count;
+    }
+}
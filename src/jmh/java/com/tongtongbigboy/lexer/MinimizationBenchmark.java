@@ -0,0 +1,57 @@
+package com.tongtongbigboy.lexer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 最小化的扩展性测试：串行的 Hopcroft 算法与线程数为 threads 的并行 Moore 算法，只测划分本身。
+ * Moore 算法每轮的工作量为 O(n·k)，单线程时比 Hopcroft 慢，核数多时才有收益。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinimizationBenchmark {
+
+    @Param({"charClass", "blowup12", "blowup14"})
+    public String family;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private CompactDFA dfa;
+    private int[] initialBlocks;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NFAGraph nfaGraph = NFARegexUtil.createNFAGraph(PatternFamilies.create(family));
+        nfaGraph.getEndState().setEnd(true);
+        nfaGraph.getStartState().setStart(true);
+        dfa = CompactDFA.create(DFARegexUtil.NFAToDFA(nfaGraph));
+        initialBlocks = new int[dfa.getStateCount()];
+        for (int s = 0; s < initialBlocks.length; s++) {
+            initialBlocks[s] = dfa.getToken(s);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[] hopcroft() {
+        return DFAMinimizer.hopcroft(dfa, initialBlocks);
+    }
+
+    @Benchmark
+    public int[] moore() {
+        return DFAMinimizer.moore(dfa, initialBlocks, pool);
+    }
+}
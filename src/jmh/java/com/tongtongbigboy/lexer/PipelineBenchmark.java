@@ -0,0 +1,58 @@
+package com.tongtongbigboy.lexer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编译流程各阶段的基准测试，每个方法只测一个阶段，输入在 setup 中准备好。
+ * 画图阶段见 GraphvizBenchmark。
+ * 用 gradle jmh 运行，-prof gc 会同时给出每次调用分配的内存。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Param({"literal", "charClass", "nestedStar", "blowup8", "blowup12"})
+    public String family;
+
+    private String pattern;
+    private NFAGraph nfaGraph;
+    private DFAGraph dfaGraph;
+    private DFAGraph minDFA;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pattern = PatternFamilies.create(family);
+        nfaGraph = createNFAGraph();
+        dfaGraph = DFARegexUtil.NFAToDFA(nfaGraph);
+        minDFA = dfaGraph.translateMinDFA();
+    }
+
+    @Benchmark
+    public NFAGraph createNFAGraph() {
+        NFAGraph graph = NFARegexUtil.createNFAGraph(pattern);
+        graph.getEndState().setEnd(true);
+        graph.getStartState().setStart(true);
+        return graph;
+    }
+
+    @Benchmark
+    public DFAGraph nfaToDFA() {
+        return DFARegexUtil.NFAToDFA(nfaGraph);
+    }
+
+    @Benchmark
+    public DFAGraph translateMinDFA() {
+        return dfaGraph.translateMinDFA();
+    }
+
+    @Benchmark
+    public String toCCode() {
+        return DFARegexUtil.toCCode(minDFA);
+    }
+}
@@ -0,0 +1,52 @@
+package com.tongtongbigboy.lexer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 子集构造的扩展性测试：串行的 DFARegexUtil.NFAToDFA 与线程数为 threads 的 ParallelSubsetConstruction。
+ * 线程数大于 CPU 核数时没有意义，可以用 -Pjmh.includes='SubsetConstructionBenchmark' 并配合 -p threads=1,2,4 指定。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubsetConstructionBenchmark {
+
+    @Param({"charClass", "blowup12", "blowup14"})
+    public String family;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private CompactNFA nfa;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NFAGraph nfaGraph = NFARegexUtil.createNFAGraph(PatternFamilies.create(family));
+        nfaGraph.getEndState().setEnd(true);
+        nfaGraph.getStartState().setStart(true);
+        nfa = CompactNFA.create(nfaGraph);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public DFAGraph sequential() {
+        return DFARegexUtil.NFAToDFA(nfa);
+    }
+
+    @Benchmark
+    public DFAGraph parallel() {
+        return ParallelSubsetConstruction.NFAToDFA(nfa, Integer.MAX_VALUE, pool);
+    }
+}
@@ -0,0 +1,304 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.*;
+
+/**
+ * 字符等价类（类似 flex 的 yy_ec）。
+ * 如果两个字符在 NFA 中出现在完全相同的边上，它们对任何状态的转换都相同，可以当作同一个输入符号。
+ * 子集构造、最小化、代码生成都在等价类编号上进行，表宽由字符个数降为等价类个数。
+ *
+ * 字符到等价类的映射用有序区间表示，0..255 另有直接查表，其余字符二分查找。
+ */
+public class Alphabet {
+
+    // 直接查表的范围
+    private static final int DIRECT_SIZE = 256;
+
+    // 有序、互不相交的区间 [starts[i], ends[i]] 属于等价类 classes[i]
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] classes;
+    // 0..255 的直接查找表，-1 表示不属于任何等价类
+    private final int[] direct;
+    // 等价类编号 => 包含的字符区间 {lo0, hi0, lo1, hi1, ...}
+    private final int[][] classRanges;
+    // 等价类编号 => 显示用的标签
+    private final String[] labels;
+
+    private Alphabet(int[] starts, int[] ends, int[] classes, int classCount) {
+        this.starts = starts;
+        this.ends = ends;
+        this.classes = classes;
+        this.direct = new int[DIRECT_SIZE];
+        Arrays.fill(direct, -1);
+        for (int i = 0; i < starts.length && starts[i] < DIRECT_SIZE; i++) {
+            for (int c = starts[i]; c <= ends[i] && c < DIRECT_SIZE; c++) {
+                direct[c] = classes[i];
+            }
+        }
+        int[] counts = new int[classCount];
+        for (int cls : classes) {
+            counts[cls]++;
+        }
+        this.classRanges = new int[classCount][];
+        for (int cls = 0; cls < classCount; cls++) {
+            classRanges[cls] = new int[counts[cls] * 2];
+        }
+        int[] fill = new int[classCount];
+        for (int i = 0; i < classes.length; i++) {
+            classRanges[classes[i]][fill[classes[i]]++] = starts[i];
+            classRanges[classes[i]][fill[classes[i]]++] = ends[i];
+        }
+        this.labels = new String[classCount];
+        for (int cls = 0; cls < classCount; cls++) {
+            labels[cls] = buildLabel(classRanges[cls]);
+        }
+    }
+
+    /**
+     * 根据若干组字符区间计算等价类。
+     * 每组对应 NFA 中同一对 (起点, 终点) 之间所有边上的字符，两个字符属于同一个等价类当且仅当它们出现在完全相同的组中。
+     * @param groups 每组为区间数组 {lo0, hi0, lo1, hi1, ...}，闭区间
+     * @return
+     */
+    public static Alphabet create(List<int[]> groups) {
+        List<int[]> normalized = new ArrayList<>();
+        for (int[] group : groups) {
+            normalized.add(normalize(group));
+        }
+        groups = normalized;
+        //所有区间端点把字符集切成基本区间，基本区间 j 为 [points[j], points[j+1]-1]
+        TreeSet<Integer> pointSet = new TreeSet<>();
+        for (int[] group : groups) {
+            for (int i = 0; i < group.length; i += 2) {
+                pointSet.add(group[i]);
+                pointSet.add(group[i + 1] + 1);
+            }
+        }
+        int[] points = new int[pointSet.size()];
+        int index = 0;
+        for (int point : pointSet) {
+            points[index++] = point;
+        }
+        int unitCount = Math.max(points.length - 1, 0);
+
+        //划分细化：开始时所有被覆盖的基本区间属于同一类，每一组把各类分成组内、组外两部分
+        int[] classOf = new int[unitCount];
+        Arrays.fill(classOf, -1);
+        int[] classSize = new int[unitCount + 1];
+        int classCount = 0;
+        for (int[] group : groups) {
+            for (int i = 0; i < group.length; i += 2) {
+                for (int u = unitIndex(points, group[i]); u < unitIndex(points, group[i + 1] + 1); u++) {
+                    if (classOf[u] < 0) {
+                        classCount = 1;
+                        classOf[u] = 0;
+                        classSize[0]++;
+                    }
+                }
+            }
+        }
+        int[] marked = new int[unitCount + 1];
+        int[] split = new int[unitCount + 1];
+        Arrays.fill(split, -1);
+        int[] units = new int[unitCount];
+        int[] touched = new int[unitCount];
+        for (int[] group : groups) {
+            int size = 0;
+            int touchedCount = 0;
+            for (int i = 0; i < group.length; i += 2) {
+                for (int u = unitIndex(points, group[i]); u < unitIndex(points, group[i + 1] + 1); u++) {
+                    units[size++] = u;
+                    if (marked[classOf[u]]++ == 0) {
+                        touched[touchedCount++] = classOf[u];
+                    }
+                }
+            }
+            //只有部分被标记的类需要分裂，被标记的部分移入新类
+            for (int i = 0; i < size; i++) {
+                int cls = classOf[units[i]];
+                if (marked[cls] == classSize[cls] && split[cls] < 0) {
+                    continue;
+                }
+                if (split[cls] < 0) {
+                    split[cls] = classCount++;
+                }
+                classOf[units[i]] = split[cls];
+                classSize[split[cls]]++;
+                classSize[cls]--;
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                marked[touched[i]] = 0;
+                split[touched[i]] = -1;
+            }
+        }
+
+        //按最小字符重新编号，并合并相邻且同类的基本区间
+        int[] renumber = new int[classCount];
+        Arrays.fill(renumber, -1);
+        int next = 0;
+        List<int[]> intervals = new ArrayList<>();
+        for (int u = 0; u < unitCount; u++) {
+            if (classOf[u] < 0) {
+                continue;
+            }
+            if (renumber[classOf[u]] < 0) {
+                renumber[classOf[u]] = next++;
+            }
+            int cls = renumber[classOf[u]];
+            int lo = points[u];
+            int hi = points[u + 1] - 1;
+            int[] last = intervals.isEmpty() ? null : intervals.get(intervals.size() - 1);
+            if (last != null && last[2] == cls && last[1] + 1 == lo) {
+                last[1] = hi;
+            } else {
+                intervals.add(new int[]{lo, hi, cls});
+            }
+        }
+        int[] starts = new int[intervals.size()];
+        int[] ends = new int[intervals.size()];
+        int[] classes = new int[intervals.size()];
+        for (int i = 0; i < intervals.size(); i++) {
+            starts[i] = intervals.get(i)[0];
+            ends[i] = intervals.get(i)[1];
+            classes[i] = intervals.get(i)[2];
+        }
+        return new Alphabet(starts, ends, classes, next);
+    }
+
+    /**
+     * 区间排序并合并重叠、相邻的区间，RegexContext 也用它规范化字符集合
+     * @param ranges
+     * @return
+     */
+    static int[] normalize(int[] ranges) {
+        int count = ranges.length / 2;
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            packed[i] = ((long) ranges[2 * i] << 32) | ranges[2 * i + 1];
+        }
+        Arrays.sort(packed);
+        int[] result = new int[ranges.length];
+        int size = 0;
+        for (long range : packed) {
+            int lo = (int) (range >>> 32);
+            int hi = (int) range;
+            if (size > 0 && lo <= result[size - 1] + 1) {
+                result[size - 1] = Math.max(result[size - 1], hi);
+            } else {
+                result[size++] = lo;
+                result[size++] = hi;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int unitIndex(int[] points, int point) {
+        return Arrays.binarySearch(points, point);
+    }
+
+    /**
+     * 获取字符所属的等价类
+     * @param c 字符
+     * @return 等价类编号，-1 表示该字符不出现在任何边上
+     */
+    public int classOf(int c) {
+        if (c < DIRECT_SIZE) {
+            return direct[c];
+        }
+        int lo = 0;
+        int hi = starts.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (c < starts[mid]) {
+                hi = mid - 1;
+            } else if (c > ends[mid]) {
+                lo = mid + 1;
+            } else {
+                return classes[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 获取字符区间集合覆盖的等价类，区间必须由完整的等价类组成
+     * @param ranges 区间数组 {lo0, hi0, lo1, hi1, ...}
+     * @return 有序的等价类编号
+     */
+    public int[] classesOf(int[] ranges) {
+        TreeSet<Integer> result = new TreeSet<>();
+        for (int i = 0; i < ranges.length; i += 2) {
+            int lo = ranges[i];
+            int hi = ranges[i + 1];
+            //找到第一个 ends >= lo 的区间
+            int left = 0;
+            int right = starts.length;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (ends[mid] < lo) {
+                    left = mid + 1;
+                } else {
+                    right = mid;
+                }
+            }
+            for (int j = left; j < starts.length && starts[j] <= hi; j++) {
+                result.add(classes[j]);
+            }
+        }
+        int[] array = new int[result.size()];
+        int index = 0;
+        for (int cls : result) {
+            array[index++] = cls;
+        }
+        return array;
+    }
+
+    /**
+     * 获取等价类包含的字符区间
+     * @param cls 等价类编号
+     * @return 有序区间数组 {lo0, hi0, lo1, hi1, ...}
+     */
+    public int[] getRanges(int cls) {
+        return classRanges[cls].clone();
+    }
+
+    /**
+     * 等价类的标签，单个字符就是字符本身，否则形如 [A-Zac]
+     * @param cls
+     * @return
+     */
+    public String getLabel(int cls) {
+        return labels[cls];
+    }
+
+    public int getClassCount() {
+        return labels.length;
+    }
+
+    /**
+     * 所有等价类标签，下标即等价类编号
+     * @return
+     */
+    public List<String> getLabels() {
+        return new ArrayList<>(Arrays.asList(labels));
+    }
+
+    private static String buildLabel(int[] ranges) {
+        if (ranges.length == 2 && ranges[0] == ranges[1]) {
+            return new String(Character.toChars(ranges[0]));
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < ranges.length; i += 2) {
+            sb.appendCodePoint(ranges[i]);
+            if (ranges[i + 1] - ranges[i] >= 2) {
+                sb.append('-');
+            }
+            if (ranges[i + 1] != ranges[i]) {
+                sb.appendCodePoint(ranges[i + 1]);
+            }
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.tongtongbigboy.lexer;
+
+/**
+ * 正则表达式匹配器的公共接口，由不同的执行方式实现（稠密表 DFA、延迟构造的 DFA 等）。
+ */
+public interface AutomatonMatcher {
+
+    /**
+     * 整个输入是否匹配
+     * @param input
+     * @return
+     */
+    boolean matches(CharSequence input);
+
+    /**
+     * 从 from 开始的最长匹配
+     * @param input
+     * @param from 开始位置
+     * @return 最长匹配的结束位置（不含），没有匹配返回 -1
+     */
+    int lookingAt(CharSequence input, int from);
+
+    /**
+     * 从 from 开始查找最左的最长匹配。
+     * 默认实现从每个位置依次调用 lookingAt，第一个字符就失败的位置只需一次转换；
+     * 但每次 lookingAt 都可能读到输入末尾才失败，最坏 O(n²)，例如 a*b 在一长串 a 上查找。
+     * NFAMatcher 同时推进所有开始位置，一遍扫描完成，为 O(n·m)。
+     * @param input
+     * @param from 开始查找的位置
+     * @return 匹配的开始、结束位置打包为 long，用 CompiledDFA.matchStart/matchEnd 取出；没有匹配返回 -1
+     */
+    default long find(CharSequence input, int from) {
+        int length = input.length();
+        for (int i = from; i <= length; i++) {
+            int end = lookingAt(input, i);
+            if (end >= 0) {
+                return ((long) i << 32) | end;
+            }
+        }
+        return -1;
+    }
+}
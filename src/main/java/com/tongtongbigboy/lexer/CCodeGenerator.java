@@ -0,0 +1,336 @@
+package com.tongtongbigboy.lexer;
+
+/**
+ * 由 DFA 生成可以直接编译的 C 语言词法分析器（表驱动）。
+ *
+ * 生成的文件包含：
+ * 字节 => 等价类表 yy_ec、转换表 yy_next[状态][等价类]、接受表 yy_accept，都是 static const 数组，大小由状态数和等价类数决定；
+ * 扫描器结构 yy_scanner，输入通过回调 yy_refill_fn 按块读入缓冲区，跨越缓冲区边界的记号会移到开头继续读取，放不下时扩容；
+ * yy_next_token() 采用最长匹配，规则与 DFAScanner 相同；
+ * 定义 YY_MAIN 时还会生成 main 函数，从标准输入读取，输出记号数和吞吐量，可以用来测试生成的代码。
+ *
+ * 扫描器按字节匹配，每个字节通过 yy_ec 当作码点 0..0xff 的一个字符，码点大于 0xff 的字符在生成的代码中不会出现。
+ * 所以只有输入按 ISO-8859-1 解释时（即 DFAScanner 直接在字节上匹配的方式）记号序列才与 DFAScanner 完全相同。
+ * 对 UTF-8 等多字节编码的输入，非 ASCII 字符被拆成多个字节分别匹配：
+ * 规则中 0x80..0xff 的字符（例如 [à-ÿ]）会匹配编码中的单个字节，而不是该字符，偏移和长度也按字节计算，
+ * 与按字符解码后匹配的 DFAScanner 结果不同。规则和输入都是 ASCII 时两者相同。
+ * 状态按从开始状态出发的广度优先顺序重新编号，同一个 DFA 每次生成的代码相同。
+ */
+public class CCodeGenerator {
+
+    // 表中每行的元素个数
+    private static final int ROW_WIDTH = 16;
+
+    private final CompiledDFA dfa;
+    // 标识符前缀，默认为 yy
+    private final String prefix;
+    // 新编号 => 原状态
+    private int[] order;
+    // 原状态 => 新编号
+    private int[] renumber;
+
+    private CCodeGenerator(CompiledDFA dfa, String prefix) {
+        this.dfa = dfa;
+        this.prefix = prefix;
+    }
+
+    public static String generate(DFAGraph dfaGraph) {
+        return generate(CompiledDFA.create(dfaGraph), "yy");
+    }
+
+    /**
+     * 生成 C 语言代码
+     * @param dfa
+     * @param prefix 所有标识符的前缀，宏使用它的大写形式
+     * @return
+     */
+    public static String generate(CompiledDFA dfa, String prefix) {
+        if (!prefix.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new RuntimeException("不是合法的 C 语言标识符：" + prefix);
+        }
+        CCodeGenerator generator = new CCodeGenerator(dfa, prefix);
+        generator.number();
+        return generator.toCode();
+    }
+
+    /**
+     * 按 CompiledDFA.breadthFirstOrder() 重新编号
+     */
+    private void number() {
+        order = dfa.breadthFirstOrder();
+        renumber = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            renumber[order[i]] = i;
+        }
+    }
+
+    private String toCode() {
+        int n = dfa.getStateCount();
+        int k = Math.max(dfa.getClassCount(), 1);
+        int[] ec = new int[256];
+        int[] next = new int[n * k];
+        int[] accept = new int[n];
+        for (int c = 0; c < 256; c++) {
+            ec[c] = dfa.getAlphabet().classOf(c);
+        }
+        int maxToken = 0;
+        for (int i = 0; i < n; i++) {
+            int s = order[i];
+            for (int cls = 0; cls < dfa.getClassCount(); cls++) {
+                int t = dfa.getTarget(s, cls);
+                next[i * k + cls] = t < 0 ? -1 : renumber[t];
+            }
+            if (dfa.getClassCount() == 0) {
+                next[i] = -1;
+            }
+            //单个正则表达式的接受态没有规则编号，记为规则 0
+            accept[i] = dfa.isAccept(s) ? Math.max(dfa.getToken(s), 0) : -1;
+            maxToken = Math.max(maxToken, accept[i]);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("/* 由 DFA 生成的词法分析器，请勿手工修改。").append(n).append(" 个状态，")
+                .append(dfa.getClassCount()).append(" 个字符等价类。 */\n");
+        sb.append("#include <stdio.h>\n");
+        sb.append("#include <stdlib.h>\n");
+        sb.append("#include <string.h>\n");
+        sb.append('\n');
+        sb.append("#define YY_NUM_STATES ").append(n).append('\n');
+        sb.append("#define YY_NUM_CLASSES ").append(k).append('\n');
+        sb.append("#define YY_START_STATE 0\n");
+        sb.append("/* 输入结束 */\n");
+        sb.append("#define YY_EOF (-1)\n");
+        sb.append("/* 当前位置没有任何规则能匹配，记号为一个字节 */\n");
+        sb.append("#define YY_ERROR (-2)\n");
+        sb.append("#define YY_BUFFER_SIZE 8192\n");
+        sb.append('\n');
+        sb.append("/* 字节 => 等价类，-1 表示不出现在任何边上 */\n");
+        appendTable(sb, "static const " + cType(k - 1) + " yy_ec[256]", ec);
+        sb.append("/* 转换表 yy_next[状态][等价类]，-1 表示失败 */\n");
+        appendMatrix(sb, "static const " + cType(n - 1) + " yy_next[YY_NUM_STATES][YY_NUM_CLASSES]", next, k);
+        sb.append("/* 状态 => 接受的规则编号，-1 表示非接受态 */\n");
+        appendTable(sb, "static const " + cType(maxToken) + " yy_accept[YY_NUM_STATES]", accept);
+        sb.append(SCANNER);
+        String code = sb.toString();
+        if (!"yy".equals(prefix)) {
+            code = code.replace("yy_", prefix + "_").replace("YY_", prefix.toUpperCase() + "_");
+        }
+        return code;
+    }
+
+    /**
+     * 能容纳 [-1, max] 的最小整数类型
+     * @param max
+     * @return
+     */
+    private static String cType(int max) {
+        if (max < Byte.MAX_VALUE) {
+            return "signed char";
+        }
+        if (max < Short.MAX_VALUE) {
+            return "short";
+        }
+        return "int";
+    }
+
+    private static void appendTable(StringBuilder sb, String declaration, int[] values) {
+        sb.append(declaration).append(" = {");
+        for (int i = 0; i < values.length; i++) {
+            if (i % ROW_WIDTH == 0) {
+                sb.append("\n    ");
+            } else {
+                sb.append(' ');
+            }
+            sb.append(values[i]);
+            if (i + 1 < values.length) {
+                sb.append(',');
+            }
+        }
+        sb.append("\n};\n\n");
+    }
+
+    /**
+     * 二维表，每个状态一行，一行过长时折行
+     */
+    private static void appendMatrix(StringBuilder sb, String declaration, int[] values, int width) {
+        sb.append(declaration).append(" = {\n");
+        for (int row = 0; row * width < values.length; row++) {
+            sb.append("    {");
+            for (int i = 0; i < width; i++) {
+                if (i > 0) {
+                    sb.append(i % ROW_WIDTH == 0 ? ",\n     " : ", ");
+                }
+                sb.append(values[row * width + i]);
+            }
+            sb.append(row * width + width < values.length ? "},\n" : "}\n");
+        }
+        sb.append("};\n\n");
+    }
+
+    // 与 DFA 无关的扫描代码
+    private static final String SCANNER = String.join("\n",
+            "/* 填充缓冲区的回调：最多读入 size 个字节到 buf，返回读入的字节数，0 表示输入结束 */",
+            "typedef size_t (*yy_refill_fn)(void *ctx, char *buf, size_t size);",
+            "",
+            "typedef struct yy_scanner {",
+            "    /* 缓冲区，[start, limit) 为尚未消耗的字节 */",
+            "    char *buf;",
+            "    size_t size;",
+            "    size_t start;",
+            "    size_t limit;",
+            "    int eof;",
+            "    /* buf[0] 在整个输入中的偏移 */",
+            "    unsigned long long buf_offset;",
+            "    yy_refill_fn refill;",
+            "    void *ctx;",
+            "    /* 当前记号，不以 '\\0' 结尾，下一次调用 yy_next_token 后失效 */",
+            "    const char *text;",
+            "    size_t leng;",
+            "    unsigned long long offset;",
+            "} yy_scanner;",
+            "",
+            "/* 从 FILE* 读取的回调 */",
+            "size_t yy_file_refill(void *ctx, char *buf, size_t size)",
+            "{",
+            "    return fread(buf, 1, size, (FILE *) ctx);",
+            "}",
+            "",
+            "int yy_init(yy_scanner *s, yy_refill_fn refill, void *ctx)",
+            "{",
+            "    memset(s, 0, sizeof(*s));",
+            "    s->buf = (char *) malloc(YY_BUFFER_SIZE);",
+            "    if (s->buf == NULL) {",
+            "        return -1;",
+            "    }",
+            "    s->size = YY_BUFFER_SIZE;",
+            "    s->refill = refill;",
+            "    s->ctx = ctx;",
+            "    return 0;",
+            "}",
+            "",
+            "void yy_destroy(yy_scanner *s)",
+            "{",
+            "    free(s->buf);",
+            "    s->buf = NULL;",
+            "}",
+            "",
+            "/* 读取更多输入，会把 [start, limit) 移到缓冲区开头，返回是否读到了新的字节 */",
+            "static int yy_fill(yy_scanner *s)",
+            "{",
+            "    size_t n;",
+            "    if (s->eof) {",
+            "        return 0;",
+            "    }",
+            "    if (s->start > 0) {",
+            "        memmove(s->buf, s->buf + s->start, s->limit - s->start);",
+            "        s->buf_offset += s->start;",
+            "        s->limit -= s->start;",
+            "        s->start = 0;",
+            "    }",
+            "    if (s->limit == s->size) {",
+            "        char *bigger = (char *) realloc(s->buf, s->size * 2);",
+            "        if (bigger == NULL) {",
+            "            s->eof = 1;",
+            "            return 0;",
+            "        }",
+            "        s->buf = bigger;",
+            "        s->size *= 2;",
+            "    }",
+            "    n = s->refill(s->ctx, s->buf + s->limit, s->size - s->limit);",
+            "    if (n == 0) {",
+            "        s->eof = 1;",
+            "        return 0;",
+            "    }",
+            "    s->limit += n;",
+            "    return 1;",
+            "}",
+            "",
+            "/* 最长匹配：一直走到 DFA 失败为止，再回退到最后一次经过接受态的位置。返回规则编号、YY_EOF 或 YY_ERROR */",
+            "int yy_next_token(yy_scanner *s)",
+            "{",
+            "    int state = YY_START_STATE;",
+            "    int token = YY_ERROR;",
+            "    size_t pos;",
+            "    size_t last_accept = 0;",
+            "    int accepted = 0;",
+            "    if (s->start == s->limit && !yy_fill(s)) {",
+            "        s->text = s->buf + s->start;",
+            "        s->leng = 0;",
+            "        s->offset = s->buf_offset + s->start;",
+            "        return YY_EOF;",
+            "    }",
+            "    pos = s->start;",
+            "    for (;;) {",
+            "        int cls;",
+            "        if (pos == s->limit) {",
+            "            /* 缓冲区用完，yy_fill 可能移动缓冲区内容，位置都相对 start 保存 */",
+            "            size_t old_start = s->start;",
+            "            int more = yy_fill(s);",
+            "            pos -= old_start - s->start;",
+            "            if (accepted) {",
+            "                last_accept -= old_start - s->start;",
+            "            }",
+            "            if (!more) {",
+            "                break;",
+            "            }",
+            "        }",
+            "        cls = yy_ec[(unsigned char) s->buf[pos]];",
+            "        if (cls < 0) {",
+            "            break;",
+            "        }",
+            "        state = yy_next[state][cls];",
+            "        if (state < 0) {",
+            "            break;",
+            "        }",
+            "        pos++;",
+            "        if (yy_accept[state] >= 0) {",
+            "            accepted = 1;",
+            "            last_accept = pos;",
+            "            token = yy_accept[state];",
+            "        }",
+            "    }",
+            "    s->text = s->buf + s->start;",
+            "    s->offset = s->buf_offset + s->start;",
+            "    /* 没有经过接受态（或只匹配到空串）时报错并跳过一个字节 */",
+            "    if (!accepted || last_accept == s->start) {",
+            "        token = YY_ERROR;",
+            "        s->leng = 1;",
+            "    } else {",
+            "        s->leng = last_accept - s->start;",
+            "    }",
+            "    s->start += s->leng;",
+            "    return token;",
+            "}",
+            "",
+            "#ifdef YY_MAIN",
+            "#include <time.h>",
+            "",
+            "/* 从标准输入读取，统计记号数并输出吞吐量 */",
+            "int main(void)",
+            "{",
+            "    yy_scanner s;",
+            "    unsigned long long tokens = 0;",
+            "    unsigned long long errors = 0;",
+            "    clock_t begin;",
+            "    double seconds;",
+            "    int token;",
+            "    if (yy_init(&s, yy_file_refill, stdin) != 0) {",
+            "        return 1;",
+            "    }",
+            "    begin = clock();",
+            "    while ((token = yy_next_token(&s)) != YY_EOF) {",
+            "        if (token == YY_ERROR) {",
+            "            errors++;",
+            "        } else {",
+            "            tokens++;",
+            "        }",
+            "    }",
+            "    seconds = (double) (clock() - begin) / CLOCKS_PER_SEC;",
+            "    printf(\"tokens=%llu errors=%llu bytes=%llu seconds=%.3f MB/s=%.1f\\n\",",
+            "            tokens, errors, s.offset, seconds, seconds > 0 ? s.offset / seconds / 1e6 : 0.0);",
+            "    yy_destroy(&s);",
+            "    return 0;",
+            "}",
+            "#endif",
+            "");
+}
@@ -0,0 +1,113 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.*;
+
+/**
+ * DFAGraph 的整数数组形式。
+ * 状态用 0..stateCount-1 的下标表示，开始状态的下标为 0；
+ * 路径用 paths 中的下标表示；转换表按行存放，transitions[state * pathCount + path] 为目的状态，-1 表示没有转换。
+ */
+public class CompactDFA {
+
+    // 下标 => DFAState
+    private final DFAState[] states;
+    // 路径集合
+    private final String[] paths;
+    // 转换表
+    private final int[] transitions;
+
+    private CompactDFA(DFAState[] states, String[] paths, int[] transitions) {
+        this.states = states;
+        this.paths = paths;
+        this.transitions = transitions;
+    }
+
+    /**
+     * 根据 DFAGraph 生成数组形式
+     * @param dfaGraph 数据来源
+     * @return
+     */
+    public static CompactDFA create(DFAGraph dfaGraph) {
+        Map<DFAState, Map<String, DFAState>> stateTable = dfaGraph.getStateTable();
+        //收集状态，开始状态排在最前面
+        Map<DFAState, Integer> stateToIndex = new HashMap<>();
+        List<DFAState> stateList = new ArrayList<>();
+        addState(dfaGraph.getStart(), stateToIndex, stateList);
+        for (DFAState state : dfaGraph.getAcceptStates()) {
+            addState(state, stateToIndex, stateList);
+        }
+        for (DFAState state : dfaGraph.getNonAcceptStates()) {
+            addState(state, stateToIndex, stateList);
+        }
+        for (Map.Entry<DFAState, Map<String, DFAState>> entry : stateTable.entrySet()) {
+            addState(entry.getKey(), stateToIndex, stateList);
+            for (DFAState target : entry.getValue().values()) {
+                addState(target, stateToIndex, stateList);
+            }
+        }
+
+        String[] paths = dfaGraph.getPaths().toArray(new String[0]);
+        int pathCount = paths.length;
+        int[] transitions = new int[stateList.size() * pathCount];
+        Arrays.fill(transitions, -1);
+        for (int i = 0; i < stateList.size(); i++) {
+            Map<String, DFAState> row = stateTable.get(stateList.get(i));
+            if (row == null) {
+                continue;
+            }
+            for (int p = 0; p < pathCount; p++) {
+                DFAState target = row.get(paths[p]);
+                if (target != null) {
+                    transitions[i * pathCount + p] = stateToIndex.get(target);
+                }
+            }
+        }
+        return new CompactDFA(stateList.toArray(new DFAState[0]), paths, transitions);
+    }
+
+    private static void addState(DFAState state, Map<DFAState, Integer> stateToIndex, List<DFAState> stateList) {
+        if (!stateToIndex.containsKey(state)) {
+            stateToIndex.put(state, stateList.size());
+            stateList.add(state);
+        }
+    }
+
+    /**
+     * 获取下一个状态
+     * @param state 状态下标
+     * @param path 路径下标
+     * @return 目的状态下标，-1 表示没有转换
+     */
+    public int getTarget(int state, int path) {
+        return transitions[state * paths.length + path];
+    }
+
+    public int getStateCount() {
+        return states.length;
+    }
+
+    public int getPathCount() {
+        return paths.length;
+    }
+
+    public DFAState getState(int index) {
+        return states[index];
+    }
+
+    public String getPath(int path) {
+        return paths[path];
+    }
+
+    public boolean isEnd(int state) {
+        return states[state].isEnd();
+    }
+
+    /**
+     * 终止状态接受的规则编号
+     * @param state
+     * @return 不是终止状态返回 -1
+     */
+    public int getToken(int state) {
+        return states[state].getToken();
+    }
+}
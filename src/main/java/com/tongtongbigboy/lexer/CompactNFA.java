@@ -0,0 +1,302 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.*;
+
+/**
+ * 冻结后的 NFA，用整数数组表示（CSR 压缩行格式）。
+ * 状态用 0..stateCount-1 的下标表示，下标按 NFAState 的 id 升序排列，
+ * 所以有序的下标数组与有序的 id 一一对应。
+ * 状态 i 的非 ε 边位于 [edgeOffset[i], edgeOffset[i+1]) ，ε 边单独存放于 [epsilonOffset[i], epsilonOffset[i+1]) 。
+ * 非 ε 边的标签是字符等价类编号，见 Alphabet。
+ */
+public class CompactNFA {
+
+    // 状态个数
+    private final int stateCount;
+    // 开始状态下标
+    private final int startState;
+    // 下标 => NFAState
+    private final NFAState[] states;
+    // 终止状态接受的规则编号，-1 表示不是终止状态
+    private final int[] tokens;
+    // 字符等价类，边的标签为等价类编号
+    private final Alphabet alphabet;
+    // 非 ε 边
+    private final int[] edgeOffset;
+    private final int[] edgeLabel;
+    private final int[] edgeTarget;
+    // ε 边
+    private final int[] epsilonOffset;
+    private final int[] epsilonTarget;
+    // 每个状态的 ε-closure 缓存
+    private final int[][] closures;
+
+    private CompactNFA(int stateCount, int startState, NFAState[] states, int[] tokens, Alphabet alphabet,
+                       int[] edgeOffset, int[] edgeLabel, int[] edgeTarget, int[] epsilonOffset, int[] epsilonTarget) {
+        this.stateCount = stateCount;
+        this.startState = startState;
+        this.states = states;
+        this.tokens = tokens;
+        this.alphabet = alphabet;
+        this.edgeOffset = edgeOffset;
+        this.edgeLabel = edgeLabel;
+        this.edgeTarget = edgeTarget;
+        this.epsilonOffset = epsilonOffset;
+        this.epsilonTarget = epsilonTarget;
+        this.closures = new int[stateCount][];
+        computeClosures();
+    }
+
+    /**
+     * 将 NFAGraph 冻结为数组形式
+     * @param nfaGraph 数据来源
+     * @return
+     */
+    public static CompactNFA create(NFAGraph nfaGraph) {
+        List<NFAState> stateList = new ArrayList<>();
+        NFARegexUtil.generateStateListAndPathListFromNFAGraph(stateList, new ArrayList<>(), nfaGraph);
+
+        //按 id 排序，下标顺序与 id 顺序一致
+        NFAState[] states = stateList.toArray(new NFAState[0]);
+        Arrays.sort(states);
+        int n = states.length;
+        Map<NFAState, Integer> stateToIndex = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            stateToIndex.put(states[i], i);
+        }
+
+        //把同一对 (起点, 终点) 之间所有边上的字符归为一组，用来计算字符等价类
+        List<int[]> groups = new ArrayList<>();
+        List<int[]> groupEnds = new ArrayList<>();
+        int epsilonCount = 0;
+        for (int i = 0; i < n; i++) {
+            Map<NFAState, List<Integer>> targetRanges = new LinkedHashMap<>();
+            for (Map.Entry<String, Set<NFAState>> entry : states[i].getEdges().entrySet()) {
+                if (NFAState.EPSILON.equals(entry.getKey())) {
+                    epsilonCount += entry.getValue().size();
+                    continue;
+                }
+                int[] range = labelRange(entry.getKey());
+                for (NFAState target : entry.getValue()) {
+                    List<Integer> ranges = targetRanges.computeIfAbsent(target, k -> new ArrayList<>());
+                    ranges.add(range[0]);
+                    ranges.add(range[1]);
+                }
+            }
+            for (Map.Entry<NFAState, List<Integer>> entry : targetRanges.entrySet()) {
+                int[] ranges = new int[entry.getValue().size()];
+                for (int j = 0; j < ranges.length; j++) {
+                    ranges[j] = entry.getValue().get(j);
+                }
+                groups.add(ranges);
+                groupEnds.add(new int[]{i, stateToIndex.get(entry.getKey())});
+            }
+        }
+        Alphabet alphabet = Alphabet.create(groups);
+
+        //每组展开为若干条以等价类为标签的边
+        int[][] groupClasses = new int[groups.size()][];
+        int edgeCount = 0;
+        for (int g = 0; g < groups.size(); g++) {
+            groupClasses[g] = alphabet.classesOf(groups.get(g));
+            edgeCount += groupClasses[g].length;
+        }
+        int[] tokens = new int[n];
+        int[] edgeOffset = new int[n + 1];
+        int[] edgeLabel = new int[edgeCount];
+        int[] edgeTarget = new int[edgeCount];
+        int[] epsilonOffset = new int[n + 1];
+        int[] epsilonTarget = new int[epsilonCount];
+        int e = 0;
+        int eps = 0;
+        int g = 0;
+        for (int i = 0; i < n; i++) {
+            NFAState state = states[i];
+            tokens[i] = state.isEnd() ? state.getToken() : -1;
+            edgeOffset[i] = e;
+            epsilonOffset[i] = eps;
+            for (NFAState target : state.getEdges().getOrDefault(NFAState.EPSILON, Collections.emptySet())) {
+                epsilonTarget[eps++] = stateToIndex.get(target);
+            }
+            //组是按起点顺序生成的
+            for (; g < groups.size() && groupEnds.get(g)[0] == i; g++) {
+                for (int cls : groupClasses[g]) {
+                    edgeLabel[e] = cls;
+                    edgeTarget[e] = groupEnds.get(g)[1];
+                    e++;
+                }
+            }
+        }
+        edgeOffset[n] = e;
+        epsilonOffset[n] = eps;
+        int startState = stateToIndex.get(nfaGraph.getStartState());
+        return new CompactNFA(n, startState, states, tokens, alphabet,
+                edgeOffset, edgeLabel, edgeTarget, epsilonOffset, epsilonTarget);
+    }
+
+    /**
+     * 边的标签对应的字符区间
+     * @param label 单个字符，或 NFAGraph.rangeLabel 生成的区间 a-z
+     * @return {lo, hi}
+     */
+    private static int[] labelRange(String label) {
+        if (label.length() == 3 && label.charAt(1) == '-') {
+            return new int[]{label.charAt(0), label.charAt(2)};
+        }
+        if (label.length() != 1) {
+            throw new RuntimeException("无法识别的路径：" + label);
+        }
+        return new int[]{label.charAt(0), label.charAt(0)};
+    }
+
+    /**
+     * 得到单个状态的 ε-closure
+     * 只有开始状态和非 ε 边的目的状态会被求闭包，它们的闭包在创建时已算好
+     * @param state 状态下标
+     * @return 有序的状态下标数组
+     */
+    public int[] closure(int state) {
+        return closures[state];
+    }
+
+    /**
+     * 预先求出开始状态和所有非 ε 边目的状态的 ε-closure
+     */
+    private void computeClosures() {
+        BitSet needed = new BitSet(stateCount);
+        needed.set(startState);
+        for (int target : edgeTarget) {
+            needed.set(target);
+        }
+        int[] stack = new int[stateCount];
+        int[] buffer = new int[stateCount];
+        // visited[i] == stamp 表示本轮已访问，避免每次清空
+        int[] visited = new int[stateCount];
+        int stamp = 0;
+        for (int state = needed.nextSetBit(0); state >= 0; state = needed.nextSetBit(state + 1)) {
+            stamp++;
+            int top = 0;
+            int size = 0;
+            visited[state] = stamp;
+            stack[top++] = state;
+            while (top > 0) {
+                int current = stack[--top];
+                buffer[size++] = current;
+                for (int j = epsilonOffset[current]; j < epsilonOffset[current + 1]; j++) {
+                    int target = epsilonTarget[j];
+                    if (visited[target] != stamp) {
+                        visited[target] = stamp;
+                        stack[top++] = target;
+                    }
+                }
+            }
+            int[] result = Arrays.copyOf(buffer, size);
+            Arrays.sort(result);
+            closures[state] = result;
+        }
+    }
+
+    /**
+     * 得到状态集合的 ε-closure，即各状态缓存闭包的并集
+     * @param states 状态下标，必须是开始状态或非 ε 边的目的状态，可以无序、重复
+     * @param count 有效长度
+     * @param marks 长度为 stateCount 的标记数组，调用前后全为 false
+     * @param buffer 长度为 stateCount 的缓冲区
+     * @return 有序的状态下标数组
+     */
+    public int[] closure(int[] states, int count, boolean[] marks, int[] buffer) {
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            for (int target : closure(states[i])) {
+                if (!marks[target]) {
+                    marks[target] = true;
+                    buffer[size++] = target;
+                }
+            }
+        }
+        int[] result = Arrays.copyOf(buffer, size);
+        for (int target : result) {
+            marks[target] = false;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * 下标集合转为 NFAState 集合
+     * @param set
+     * @return
+     */
+    public Set<NFAState> toStateSet(int[] set) {
+        Set<NFAState> stateSet = new HashSet<>();
+        for (int i : set) {
+            stateSet.add(states[i]);
+        }
+        return stateSet;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getStartState() {
+        return startState;
+    }
+
+    public NFAState getState(int index) {
+        return states[index];
+    }
+
+    public boolean isEnd(int index) {
+        return tokens[index] >= 0;
+    }
+
+    /**
+     * 终止状态接受的规则编号
+     * @param index
+     * @return 不是终止状态返回 -1
+     */
+    public int getToken(int index) {
+        return tokens[index];
+    }
+
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    public int getLabelCount() {
+        return alphabet.getClassCount();
+    }
+
+    public String getLabel(int label) {
+        return alphabet.getLabel(label);
+    }
+
+    public int getEdgeStart(int state) {
+        return edgeOffset[state];
+    }
+
+    public int getEdgeEnd(int state) {
+        return edgeOffset[state + 1];
+    }
+
+    public int getEdgeLabel(int edge) {
+        return edgeLabel[edge];
+    }
+
+    public int getEdgeTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    public int getEpsilonStart(int state) {
+        return epsilonOffset[state];
+    }
+
+    public int getEpsilonEnd(int state) {
+        return epsilonOffset[state + 1];
+    }
+
+    public int getEpsilonTarget(int edge) {
+        return epsilonTarget[edge];
+    }
+}
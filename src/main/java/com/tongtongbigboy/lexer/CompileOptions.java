@@ -0,0 +1,109 @@
+package com.tongtongbigboy.lexer;
+
+/**
+ * 编译选项，不可变。作为 PatternCache 的键的一部分，选项不同的编译结果分别缓存。
+ */
+public class CompileOptions {
+
+    // 默认选项
+    public static final CompileOptions DEFAULT = new CompileOptions(Integer.MAX_VALUE, 1000, false, false);
+
+    // 子集构造允许产生的最多 DFA 状态数，超过时报错，防止病态正则表达式耗尽内存
+    private final int maxDFAStates;
+    // 计数重复 {m,n} 允许复制的最多份数（嵌套时相乘），编译前检查，见 NFARegexUtil.checkRepeat
+    private final int maxRepeat;
+    // 是否在公共 ForkJoinPool 中并行编译，见 ParallelSubsetConstruction、DFAMinimizer.moore
+    private final boolean parallel;
+    // 是否用 Brzozowski 导数直接由正则表达式构造 DFA，见 DerivativeConstruction
+    private final boolean derivatives;
+
+    private CompileOptions(int maxDFAStates, int maxRepeat, boolean parallel, boolean derivatives) {
+        this.maxDFAStates = maxDFAStates;
+        this.maxRepeat = maxRepeat;
+        this.parallel = parallel;
+        this.derivatives = derivatives;
+    }
+
+    public int getMaxDFAStates() {
+        return maxDFAStates;
+    }
+
+    /**
+     * 返回修改了 DFA 状态数上限的新选项
+     * @param maxDFAStates 必须大于 0
+     * @return
+     */
+    public CompileOptions withMaxDFAStates(int maxDFAStates) {
+        if (maxDFAStates <= 0) {
+            throw new RuntimeException("DFA 状态数上限必须大于0：" + maxDFAStates);
+        }
+        return new CompileOptions(maxDFAStates, maxRepeat, parallel, derivatives);
+    }
+
+    public int getMaxRepeat() {
+        return maxRepeat;
+    }
+
+    /**
+     * 返回修改了计数重复上限的新选项
+     * @param maxRepeat 必须大于 0
+     * @return
+     */
+    public CompileOptions withMaxRepeat(int maxRepeat) {
+        if (maxRepeat <= 0) {
+            throw new RuntimeException("重复次数上限必须大于0：" + maxRepeat);
+        }
+        return new CompileOptions(maxDFAStates, maxRepeat, parallel, derivatives);
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * 返回修改了是否并行编译的新选项。规则很多、DFA 很大时并行才有收益
+     * @param parallel
+     * @return
+     */
+    public CompileOptions withParallel(boolean parallel) {
+        return new CompileOptions(maxDFAStates, maxRepeat, parallel, derivatives);
+    }
+
+    public boolean isDerivatives() {
+        return derivatives;
+    }
+
+    /**
+     * 返回修改了 DFA 构造方式的新选项。为 true 时不经过 NFA 和子集构造，parallel 对这一步不起作用
+     * @param derivatives
+     * @return
+     */
+    public CompileOptions withDerivatives(boolean derivatives) {
+        return new CompileOptions(maxDFAStates, maxRepeat, parallel, derivatives);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompileOptions that = (CompileOptions) o;
+        return maxDFAStates == that.maxDFAStates && maxRepeat == that.maxRepeat && parallel == that.parallel
+                && derivatives == that.derivatives;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * maxDFAStates + maxRepeat) + (parallel ? 1 : 0)) + (derivatives ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("CompileOptions{");
+        sb.append("maxDFAStates=").append(maxDFAStates);
+        sb.append(", maxRepeat=").append(maxRepeat);
+        sb.append(", parallel=").append(parallel);
+        sb.append(", derivatives=").append(derivatives);
+        sb.append('}');
+        return sb.toString();
+    }
+}
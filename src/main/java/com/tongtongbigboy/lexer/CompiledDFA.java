@@ -0,0 +1,260 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 编译后的稠密表 DFA 匹配器，一般由最小化后的 DFAGraph 生成。
+ * 状态和字符等价类都用 int 表示，table[state * classCount + cls] 为目的状态，-1 表示失败（包括转入无法到达接受态的死状态）。
+ * 匹配过程只做数组访问，不分配任何对象，可以在多个线程间共享。
+ */
+public class CompiledDFA implements AutomatonMatcher {
+
+    // 状态个数
+    private final int stateCount;
+    // 字符等价类个数
+    private final int classCount;
+    // 开始状态
+    private final int startState;
+    // 转换表
+    private final int[] table;
+    // 接受态位图
+    private final long[] acceptBits;
+    // 状态 => 接受的规则编号，-1 表示非接受态
+    private final int[] tokens;
+    // 字符 => 等价类
+    private final Alphabet alphabet;
+
+    private CompiledDFA(int stateCount, int classCount, int startState, int[] table, long[] acceptBits, int[] tokens,
+                        Alphabet alphabet) {
+        this.stateCount = stateCount;
+        this.classCount = classCount;
+        this.startState = startState;
+        this.table = table;
+        this.acceptBits = acceptBits;
+        this.tokens = tokens;
+        this.alphabet = alphabet;
+    }
+
+    /**
+     * 由 DFAGraph 生成匹配器
+     * @param dfaGraph 一般是 translateMinDFA() 的结果
+     * @return
+     */
+    public static CompiledDFA create(DFAGraph dfaGraph) {
+        CompactDFA dfa = CompactDFA.create(dfaGraph);
+        Alphabet alphabet = dfaGraph.getAlphabet();
+        if (alphabet == null) {
+            //路径是单个字符时，每个字符各自一个等价类
+            List<int[]> groups = new ArrayList<>();
+            for (String path : dfaGraph.getPaths()) {
+                if (path.length() != 1) {
+                    throw new RuntimeException("无法识别的路径：" + path);
+                }
+                groups.add(new int[]{path.charAt(0), path.charAt(0)});
+            }
+            alphabet = Alphabet.create(groups);
+        }
+        int n = dfa.getStateCount();
+        int classCount = alphabet.getClassCount();
+        //等价类 => CompactDFA 中的路径下标
+        int[] column = new int[classCount];
+        for (int cls = 0; cls < classCount; cls++) {
+            column[cls] = dfaGraph.getPaths().indexOf(alphabet.getLabel(cls));
+        }
+
+        boolean[] live = liveStates(dfa);
+        int[] table = new int[n * classCount];
+        long[] acceptBits = new long[(n + 63) >>> 6];
+        int[] tokens = new int[n];
+        for (int s = 0; s < n; s++) {
+            tokens[s] = dfa.getToken(s);
+            if (dfa.isEnd(s)) {
+                acceptBits[s >>> 6] |= 1L << s;
+            }
+            for (int cls = 0; cls < classCount; cls++) {
+                int target = column[cls] < 0 ? -1 : dfa.getTarget(s, column[cls]);
+                table[s * classCount + cls] = target >= 0 && live[target] ? target : -1;
+            }
+        }
+        return new CompiledDFA(n, classCount, 0, table, acceptBits, tokens, alphabet);
+    }
+
+    /**
+     * 求能到达接受态的状态，其余状态都是死状态
+     * @param dfa
+     * @return
+     */
+    private static boolean[] liveStates(CompactDFA dfa) {
+        int n = dfa.getStateCount();
+        int k = dfa.getPathCount();
+        //逆向图，CSR 格式
+        int[] offset = new int[n + 1];
+        for (int s = 0; s < n; s++) {
+            for (int a = 0; a < k; a++) {
+                int t = dfa.getTarget(s, a);
+                if (t >= 0) {
+                    offset[t + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offset[i + 1] += offset[i];
+        }
+        int[] predecessors = new int[offset[n]];
+        int[] fill = Arrays.copyOf(offset, n);
+        for (int s = 0; s < n; s++) {
+            for (int a = 0; a < k; a++) {
+                int t = dfa.getTarget(s, a);
+                if (t >= 0) {
+                    predecessors[fill[t]++] = s;
+                }
+            }
+        }
+        //从接受态出发反向遍历
+        boolean[] live = new boolean[n];
+        int[] stack = new int[n];
+        int top = 0;
+        for (int s = 0; s < n; s++) {
+            if (dfa.isEnd(s)) {
+                live[s] = true;
+                stack[top++] = s;
+            }
+        }
+        while (top > 0) {
+            int s = stack[--top];
+            for (int i = offset[s]; i < offset[s + 1]; i++) {
+                if (!live[predecessors[i]]) {
+                    live[predecessors[i]] = true;
+                    stack[top++] = predecessors[i];
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * 整个输入是否匹配
+     * @param input
+     * @return
+     */
+    @Override
+    public boolean matches(CharSequence input) {
+        int state = startState;
+        int length = input.length();
+        for (int i = 0; i < length && state >= 0; i++) {
+            state = next(state, input.charAt(i));
+        }
+        return state >= 0 && isAccept(state);
+    }
+
+    /**
+     * 从 from 开始的最长匹配
+     * @param input
+     * @param from 开始位置
+     * @return 最长匹配的结束位置（不含），没有匹配返回 -1
+     */
+    @Override
+    public int lookingAt(CharSequence input, int from) {
+        int state = startState;
+        int lastAccept = isAccept(state) ? from : -1;
+        int length = input.length();
+        for (int i = from; i < length; i++) {
+            state = next(state, input.charAt(i));
+            if (state < 0) {
+                break;
+            }
+            if (isAccept(state)) {
+                lastAccept = i + 1;
+            }
+        }
+        return lastAccept;
+    }
+
+    public static int matchStart(long match) {
+        return (int) (match >>> 32);
+    }
+
+    public static int matchEnd(long match) {
+        return (int) match;
+    }
+
+    /**
+     * 单步转换
+     * @param state 当前状态
+     * @param c 输入字符
+     * @return 下一个状态，-1 表示失败
+     */
+    public int next(int state, char c) {
+        int cls = alphabet.classOf(c);
+        return cls < 0 ? -1 : table[state * classCount + cls];
+    }
+
+    /**
+     * 按等价类查转换表
+     * @param state 当前状态
+     * @param cls 等价类编号
+     * @return 下一个状态，-1 表示失败
+     */
+    public int getTarget(int state, int cls) {
+        return table[state * classCount + cls];
+    }
+
+    /**
+     * 从开始状态出发按等价类顺序广度优先遍历得到的状态顺序，不可到达的状态排在最后。
+     * 生成代码时用它重新编号，同一个 DFA 每次生成的代码相同
+     * @return 新编号 => 状态
+     */
+    public int[] breadthFirstOrder() {
+        int[] order = new int[stateCount];
+        boolean[] visited = new boolean[stateCount];
+        int size = 0;
+        order[size++] = startState;
+        visited[startState] = true;
+        for (int i = 0; i < size; i++) {
+            for (int cls = 0; cls < classCount; cls++) {
+                int t = table[order[i] * classCount + cls];
+                if (t >= 0 && !visited[t]) {
+                    visited[t] = true;
+                    order[size++] = t;
+                }
+            }
+        }
+        for (int s = 0; s < stateCount; s++) {
+            if (!visited[s]) {
+                order[size++] = s;
+            }
+        }
+        return order;
+    }
+
+    public boolean isAccept(int state) {
+        return (acceptBits[state >>> 6] & (1L << state)) != 0;
+    }
+
+    /**
+     * 接受态接受的规则编号
+     * @param state
+     * @return 非接受态返回 -1
+     */
+    public int getToken(int state) {
+        return tokens[state];
+    }
+
+    public int getStartState() {
+        return startState;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+}
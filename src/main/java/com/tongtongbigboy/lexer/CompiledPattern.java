@@ -0,0 +1,107 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一个正则表达式（或一组词法规则）的编译结果，保存 NFA、DFA、最小化 DFA 和匹配器四个阶段。
+ * 各阶段在第一次获取时才计算，之后直接返回，可以在多个线程间共享。
+ * 返回的图会被多个调用者共用，不能修改。
+ */
+public class CompiledPattern {
+
+    // 正则表达式，多于一个时按词法规则合并，下标即规则编号
+    private final List<String> patterns;
+    private final CompileOptions options;
+
+    private NFAGraph nfaGraph;
+    private CompactNFA compactNFA;
+    private DFAGraph dfaGraph;
+    private DFAGraph minDFA;
+    private CompiledDFA compiledDFA;
+
+    private CompiledPattern(List<String> patterns, CompileOptions options) {
+        this.patterns = patterns;
+        this.options = options;
+    }
+
+    /**
+     * 创建编译结果，此时还没有进行任何计算
+     * @param patterns 正则表达式，至少一个
+     * @param options
+     * @return
+     */
+    public static CompiledPattern create(List<String> patterns, CompileOptions options) {
+        if (patterns.isEmpty()) {
+            throw new RuntimeException("正则表达式为空");
+        }
+        return new CompiledPattern(Collections.unmodifiableList(new ArrayList<>(patterns)), options);
+    }
+
+    /**
+     * 正则表达式对应的 NFA，已设置开始状态和终止状态
+     * @return
+     */
+    public synchronized NFAGraph getNFAGraph() {
+        if (nfaGraph == null) {
+            for (String pattern : patterns) {
+                NFARegexUtil.checkRepeat(pattern, options.getMaxRepeat());
+            }
+            if (patterns.size() == 1) {
+                NFAGraph graph = NFARegexUtil.createNFAGraph(patterns.get(0));
+                graph.getEndState().setEnd(true);
+                graph.getStartState().setStart(true);
+                nfaGraph = graph;
+            } else {
+                nfaGraph = NFARegexUtil.createNFAGraph(patterns);
+            }
+        }
+        return nfaGraph;
+    }
+
+    public synchronized DFAGraph getDFAGraph() {
+        if (dfaGraph == null && options.isDerivatives()) {
+            //不经过 NFA
+            for (String pattern : patterns) {
+                NFARegexUtil.checkRepeat(pattern, options.getMaxRepeat());
+            }
+            dfaGraph = DerivativeConstruction.toDFA(patterns, options.getMaxDFAStates());
+        }
+        if (dfaGraph == null) {
+            if (compactNFA == null) {
+                compactNFA = CompactNFA.create(getNFAGraph());
+            }
+            dfaGraph = options.isParallel()
+                    ? ParallelSubsetConstruction.NFAToDFA(compactNFA, options.getMaxDFAStates())
+                    : DFARegexUtil.NFAToDFA(compactNFA, options.getMaxDFAStates());
+        }
+        return dfaGraph;
+    }
+
+    public synchronized DFAGraph getMinDFA() {
+        if (minDFA == null) {
+            minDFA = getDFAGraph().translateMinDFA(options.isParallel());
+        }
+        return minDFA;
+    }
+
+    /**
+     * 由最小化 DFA 生成的匹配器
+     * @return
+     */
+    public synchronized CompiledDFA getCompiledDFA() {
+        if (compiledDFA == null) {
+            compiledDFA = CompiledDFA.create(getMinDFA());
+        }
+        return compiledDFA;
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    public CompileOptions getOptions() {
+        return options;
+    }
+}
@@ -1,6 +1,7 @@
 package com.tongtongbigboy.lexer;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * DFAGraph类，有个最小化DFA方法
@@ -18,10 +19,14 @@ public class DFAGraph {
     private List<DFAState> acceptStates;
     // 非接收状态集合
     private List<DFAState> nonAcceptStates;
+    // 已加入接受态集合或非接受态集合的状态，避免 List.contains 线性查找
+    private Set<DFAState> classifiedStates;
     // statesId => dfaState
     private Map<String,DFAState> idToState;
     // 路径集合
     private List<String> paths;
+    // 字符等价类，路径为等价类标签时不为 null，paths 的下标即等价类编号
+    private Alphabet alphabet;
 
     public DFAGraph(DFAState start) {
         this.start = start;
@@ -38,6 +43,7 @@ public class DFAGraph {
         this.stateTable = new HashMap<>();
         this.acceptStates = new ArrayList<>();
         this.nonAcceptStates = new ArrayList<>();
+        this.classifiedStates = new HashSet<>();
         this.paths = new ArrayList<>();
         this.idToState = new HashMap<>();
 
@@ -97,6 +103,7 @@ public class DFAGraph {
         dfaGraph.stateTableB = new HashMap<>();
         dfaGraph.acceptStates = new ArrayList<>();
         dfaGraph.nonAcceptStates = new ArrayList<>();
+        dfaGraph.classifiedStates = new HashSet<>();
         dfaGraph.idToState = new HashMap<>();
         dfaGraph.paths = new ArrayList<>();
         return dfaGraph;
@@ -132,229 +139,122 @@ public class DFAGraph {
      * @param dfaState
      */
     public void addAcceptOrNonStates(DFAState dfaState){
+        if (!classifiedStates.add(dfaState)){
+            return;
+        }
         if (dfaState.isEnd()){
-            if (!acceptStates.contains(dfaState)){
-                acceptStates.add(dfaState);
-            }
+            acceptStates.add(dfaState);
         } else {
-            if (!nonAcceptStates.contains(dfaState)){
-                nonAcceptStates.add(dfaState);
-            }
+            nonAcceptStates.add(dfaState);
         }
     }
 
     /**
-     * 对本DFA进行HopCraft最小化
-     * Hopsroft 算法就是先根据非终结状态与非终结状态将所有的节点分为 N 和 A 两大类。 N 为非终结状态，A 为终结状态，之后再对每一组运用基于等价类实现的切割算法。
-     * //基于等价类的思想
-     * split(equal)
-     *     for(path in paths)
-     *         if(path can split equal)
-     *             split equal into equal1, ..., equalk
-     *
-     * hopcroft()
-     *     split all nodes into N, A
-     *     while(equal_set is still changes)
-     *         for(equal in set)
-     *      	   split(equal)
+     * 对本DFA进行Hopcroft最小化
+     * 先按接受的规则将所有状态分为若干等价类（非接受态一类，接受同一规则的接受态一类），再用 DFAMinimizer.hopcroft 进行划分细化，
+     * 最后把每个等价类合并为一个状态。
      *
-     * @return	HopCraft最小化的DFA
+     * @return	Hopcroft最小化的DFA
      */
     public DFAGraph translateMinDFA() {
-        int i;
-        //用于容纳状态的等价集合
-        List<List<String>> container = new LinkedList<>();
-
-        List<String> acceptL = new LinkedList<>();
-        List<String> nacceptL = new LinkedList<>();
-        container.add(acceptL);
-        container.add(nacceptL);
-
-        //分割成一个接受集，一个非接受集
-        for(i = 0; i < acceptStates.size(); i++) {
-            acceptL.add(acceptStates.get(i).getNFAStatesId());
-        }
-        for (int j = 0; j < nonAcceptStates.size(); j++) {
-            nacceptL.add(nonAcceptStates.get(j).getNFAStatesId());
-        }
-
-        //分割等价类
-        boolean hasChange = true;					//表示了等价类修改了
-        while( hasChange ) {
-            hasChange = splitContainer(container);
-        }
-
-        //用于求新的转换函数
-        return produceMinDFA(container);			//根据该等价类获取DFA
+        return translateMinDFA(false);
     }
 
     /**
-     * 对container容器中的等价类进行分割
-     * @param container		等价类的容器
-     * @return				是否进行了分割（false代表否， true代表真）
+     * 最小化
+     * @param parallel 为 true 时在公共 ForkJoinPool 中用并行的 Moore 算法划分，结果与 Hopcroft 相同
+     * @return
      */
-    private boolean splitContainer( List<List<String>> container ) {
-
-        for(List<String> list : container) {
-            for (String inputCh : paths) {
-                if(splitList(inputCh, list, container)) {
-                    return true;
-                }
-            }
+    public DFAGraph translateMinDFA(boolean parallel) {
+        CompactDFA dfa = CompactDFA.create(this);
+        //初始划分：按接受的规则编号，非接受集为 -1
+        int[] initialBlocks = new int[dfa.getStateCount()];
+        for (int s = 0; s < dfa.getStateCount(); s++) {
+            initialBlocks[s] = dfa.getToken(s);
         }
-        return false;
+        //分割等价类
+        int[] blockOf = parallel
+                ? DFAMinimizer.moore(dfa, initialBlocks, ForkJoinPool.commonPool())
+                : DFAMinimizer.hopcroft(dfa, initialBlocks);
+        //根据该等价类获取DFA
+        return produceMinDFA(dfa, blockOf);
     }
 
     /**
-     * 功能：使用指定驱动字符，分割等价类
-     * 返回：是否分割
-     * @param input			使用的字符
-     * @param list			分割的等价类
-     * @param container		等价类的容器
-     * @return				是否能进行分割
+     * 根据分割开来的等价类生成新的DFA
+     * @param dfa		数组形式的本DFA
+     * @param blockOf	每个状态所在的等价类编号，开始状态所在等价类编号为 0
+     * @return	DFA
      */
-    private boolean splitList(String input, List<String> list, List<List<String>> container) {
-
-        //一个map集
-        //键：每个这个等价类中的状态能够转的到的等价类下标
-        //值：一个List，里面保存了该转换到该等价类的状态
-        Map<Integer, List<String>> map = new HashMap();
-        for(String num : list) {
-            //这个等价类中的状态能够转的到状态
-            String endstate = stateTableB.get(num).get(input);
-            //获取这个状态的等价类下标
-            int equalIndex = getListNum(endstate, container);
-            if ( !map.containsKey(equalIndex) ) {
-                List<String> temp = new LinkedList<>();
-                temp.add(num);
-                map.put(equalIndex, temp);
-            }else {
-                List<String> temp = map.get(equalIndex);
-                temp.add(num);
-                map.put(equalIndex, temp);
-            }
+    private DFAGraph produceMinDFA(CompactDFA dfa, int[] blockOf) {
+        int blockCount = 0;
+        for (int block : blockOf) {
+            blockCount = Math.max(blockCount, block + 1);
         }
-
-        if(map.size() == 1) {
-            //表示该字符无法分割该等价类
-            return false;
-        }else{
-            //表示该字符能分割该等价类
-            //1.删除该等价类
-            container.remove(list);
-            //2.添加分割后的等价类
-            for(Map.Entry< Integer, List<String>> entry : map.entrySet()) {
-                container.add(entry.getValue());
-            }
-            return true;
+        //按等价类对状态排序（计数排序），members[blockOffset[b]..blockOffset[b+1]) 为等价类 b 中的状态
+        int[] blockOffset = new int[blockCount + 1];
+        for (int block : blockOf) {
+            blockOffset[block + 1]++;
         }
-    }
-
-    /**
-     * 获取一个状态所在的等价类的编号
-     * @param state				传入的状态
-     * @param container			等价类的容器
-     * @return					该状态所对应的等价类的编号
-     */
-    private int getListNum(String state, List<List<String>> container) {
-        for(int i = 0; i < container.size(); i++) {
-            if( container.get(i).contains(state) ) {
-                return i;
-            }
+        for (int b = 0; b < blockCount; b++) {
+            blockOffset[b + 1] += blockOffset[b];
+        }
+        int[] members = new int[blockOf.length];
+        int[] cursor = Arrays.copyOf(blockOffset, blockCount);
+        for (int s = 0; s < blockOf.length; s++) {
+            members[cursor[blockOf[s]]++] = s;
         }
-        return -1;						//代表着不能该状态没有转换到的等价类
-    }
-
-    /**
-     * 根据分割开来的等价类集合生成新的DFA
-     * @param container		等价类的容器
-     * @return	DFA
-     */
-    private DFAGraph produceMinDFA( List<List<String>> container) {
-        //状态集合
-        List<DFAState> stateList = new LinkedList<>();
-        //转换函数集合
-        List<TransformFunction> transList = new LinkedList<TransformFunction>();
-        //开始状态排到container前面。
-        container.sort(new Comparator<List<String>>() {
-            @Override
-            public int compare(List<String> o1, List<String> o2) {
-                int a = 0;
-                for (String s : o1) {
-                    //是开始状态
-                    if (s.startsWith("1,")){
-                        a = 1;
-                        break;
-                    }
-                }
-                int b = 0;
-                for (String s : o2) {
-                    if (s.startsWith("1,")){
-                        b = 1;
-                        break;
-                    }
-                }
-                return a-b;
-            }
-        });
-
-        // 旧指最小化前，新指最小化后。旧的statesId => 新的statesId
-        Map<String,String> oldIdToNewId = new HashMap<>();
-        //将每个等价类转化为一个状态
-        for(int i=0; i < container.size(); i++ ) {
-            //获取一个等价类，等价类就是List<String>集合，里面是状态的statesId
-            List<String> list = container.get(i);
 
-            //将一个等价类关联的所有nfaState保存到一个set中
-            Set<NFAState> set = new HashSet<>();
-            for (String id : list) {
-                set.addAll(idToState.get(id).getNFAStateSet());
-            }
-            //根据Set<NFAState>构造DFAState
-            DFAState stateA = DFAState.create(set);
-            //添加到状态集合
-            stateList.add(stateA);
-            //更新oldIdToNewId
-            for (String s : list) {
-                oldIdToNewId.put(s,stateA.getNFAStatesId());
+        //状态集合，开始状态所在等价类排在最前面
+        List<DFAState> stateList = new ArrayList<>();
+        for (int b = 0; b < blockCount; b++) {
+            //将一个等价类关联的所有nfaState合并，构造DFAState
+            List<DFAState> blockStates = new ArrayList<>();
+            for (int i = blockOffset[b]; i < blockOffset[b + 1]; i++) {
+                blockStates.add(dfa.getState(members[i]));
             }
+            stateList.add(DFAState.merge(blockStates));
         }
 
         //构造转换函数集合
-        for (int i = 0; i < container.size(); i++) {
-            //获取一个等价类
-            List<String> list = container.get(i);
+        List<TransformFunction> transList = new ArrayList<>();
+        for (int b = 0; b < blockCount; b++) {
             //任意取出一个等价类中的状态。因为该等价类中所有的状态都是等价的
-            String state = list.get(0);
-            //遍历paths，以求构造转换函数集合
-            for (String inputCh : paths) {
-                //获取该状态通过路径inputCh能到达的目的状态
-                String targetState = stateTableB.get(state).get(inputCh);
-                //能获取到目的状态
-                if( targetState != null && !"".equals(targetState)) {
-                    //目的状态对应的等价类状态体，或者说最小化后的一个状态
-                    String target = oldIdToNewId.get(targetState);
-                    //new 了一个转换函数。state所在的等价类状态体 通过inputCh 到达 目的状态对应的等价类状态体
-                    transList.add(new TransformFunction(oldIdToNewId.get(state) , inputCh, target));
+            int state = members[blockOffset[b]];
+            for (int p = 0; p < dfa.getPathCount(); p++) {
+                //获取该状态通过路径能到达的目的状态
+                int target = dfa.getTarget(state, p);
+                //能获取到目的状态，且目的状态不是空集对应的死状态
+                if (target >= 0 && !"".equals(dfa.getState(target).getNFAStatesId())) {
+                    transList.add(new TransformFunction(stateList.get(b).getNFAStatesId(), dfa.getPath(p),
+                            stateList.get(blockOf[target]).getNFAStatesId()));
                 }
             }
-
         }
 
-        return new DFAGraph(stateList, transList);
+        DFAGraph minDFA = new DFAGraph(stateList, transList);
+        minDFA.setPaths(new ArrayList<>(paths));
+        minDFA.setAlphabet(alphabet);
+        return minDFA;
     }
 
-
-
-
     /**
      * 获取对应的下一个状态节点
      * @param currentState
-     * @param path
+     * @param path 路径，可以是等价类标签，也可以是单个字符
      * @return
      */
     public DFAState getStateByMove(DFAState currentState, String path) {
-        return stateTable.getOrDefault(currentState, EMPTY).get(path);
+        Map<String, DFAState> pathMap = stateTable.getOrDefault(currentState, EMPTY);
+        DFAState state = pathMap.get(path);
+        //单个字符先换成所属等价类的标签
+        if (state == null && alphabet != null && path.length() == 1) {
+            int cls = alphabet.classOf(path.charAt(0));
+            if (cls >= 0) {
+                state = pathMap.get(alphabet.getLabel(cls));
+            }
+        }
+        return state;
     }
 
     public DFAState getStart() {
@@ -381,6 +281,14 @@ public class DFAGraph {
         this.paths = paths;
     }
 
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    public void setAlphabet(Alphabet alphabet) {
+        this.alphabet = alphabet;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("DFAGraph{");
@@ -0,0 +1,352 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hopcroft 划分细化算法，O(n·k·log n)，n 为状态数，k 为路径数。
+ *
+ * 等价类（块）中的状态在 elements 中连续存放，块 b 占据 [blockStart[b], blockEnd[b])。
+ * 工作表中存放待处理的分割者 (块, 路径)。取出一个分割者 (S, a) 后，利用逆转换表求出经过 a 能到达 S 的状态，
+ * 在各自的块中把它们交换到块首，然后把被部分标记的块一分为二。
+ * 新块总是取较小的一半，并把 (新块, 每条路径) 加入工作表，所以每个状态最多被重新编号 log n 次。
+ *
+ * 另有并行的 Moore 算法（moore），得到相同的划分。
+ */
+public class DFAMinimizer {
+
+    /**
+     * 对数组形式的 DFA 进行最小化
+     * @param dfa 待最小化的 DFA，缺失的转换视为转向一个虚拟的死状态
+     * @param initialBlocks 初始划分，initialBlocks[state] 为状态所在的初始块编号，编号相同即同一块
+     * @return 每个状态所在的等价类编号，按状态下标顺序从 0 开始连续编号
+     */
+    public static int[] hopcroft(CompactDFA dfa, int[] initialBlocks) {
+        int realCount = dfa.getStateCount();
+        int k = dfa.getPathCount();
+        //存在缺失转换时，补一个虚拟死状态，编号为 realCount
+        boolean needSink = false;
+        for (int s = 0; s < realCount && !needSink; s++) {
+            for (int a = 0; a < k; a++) {
+                if (dfa.getTarget(s, a) < 0) {
+                    needSink = true;
+                    break;
+                }
+            }
+        }
+        int n = needSink ? realCount + 1 : realCount;
+        int sink = realCount;
+
+        //逆转换表，CSR 格式。键为 target * k + a，值为前驱状态
+        int[] inverseOffset = new int[n * k + 1];
+        for (int s = 0; s < n; s++) {
+            for (int a = 0; a < k; a++) {
+                inverseOffset[target(dfa, s, a, sink, realCount) * k + a + 1]++;
+            }
+        }
+        for (int i = 0; i < n * k; i++) {
+            inverseOffset[i + 1] += inverseOffset[i];
+        }
+        int[] inverse = new int[n * k];
+        int[] fill = Arrays.copyOf(inverseOffset, n * k);
+        for (int s = 0; s < n; s++) {
+            for (int a = 0; a < k; a++) {
+                inverse[fill[target(dfa, s, a, sink, realCount) * k + a]++] = s;
+            }
+        }
+
+        //初始划分，初始块编号可能任意，先重新映射为连续编号；虚拟死状态单独一个初始块
+        int[] blockOf = new int[n];
+        int blockCount = 0;
+        Map<Integer, Integer> keyToBlock = new HashMap<>();
+        for (int s = 0; s < realCount; s++) {
+            Integer block = keyToBlock.get(initialBlocks[s]);
+            if (block == null) {
+                block = blockCount++;
+                keyToBlock.put(initialBlocks[s], block);
+            }
+            blockOf[s] = block;
+        }
+        if (needSink) {
+            blockOf[sink] = blockCount++;
+        }
+
+        int[] blockStart = new int[n];
+        int[] blockEnd = new int[n];
+        int[] elements = new int[n];
+        int[] location = new int[n];
+        for (int s = 0; s < n; s++) {
+            blockEnd[blockOf[s]]++;
+        }
+        for (int b = 1; b < blockCount; b++) {
+            blockEnd[b] += blockEnd[b - 1];
+        }
+        for (int b = 0; b < blockCount; b++) {
+            blockStart[b] = b == 0 ? 0 : blockEnd[b - 1];
+        }
+        int[] cursor = Arrays.copyOf(blockStart, n);
+        for (int s = 0; s < n; s++) {
+            int position = cursor[blockOf[s]]++;
+            elements[position] = s;
+            location[s] = position;
+        }
+
+        //工作表：除最大的初始块外，其余块与每条路径组成分割者
+        boolean[] inWork = new boolean[n * k];
+        int[] work = new int[n * k];
+        int workSize = 0;
+        int largest = 0;
+        for (int b = 1; b < blockCount; b++) {
+            if (blockEnd[b] - blockStart[b] > blockEnd[largest] - blockStart[largest]) {
+                largest = b;
+            }
+        }
+        for (int b = 0; b < blockCount; b++) {
+            if (b == largest) {
+                continue;
+            }
+            for (int a = 0; a < k; a++) {
+                inWork[b * k + a] = true;
+                work[workSize++] = b * k + a;
+            }
+        }
+
+        int[] predecessors = new int[n];
+        int[] marked = new int[n];
+        int[] touched = new int[n];
+        while (workSize > 0) {
+            int splitter = work[--workSize];
+            inWork[splitter] = false;
+            int splitterBlock = splitter / k;
+            int a = splitter % k;
+
+            //先收集前驱，标记时会交换元素位置，不能边遍历边标记
+            int predecessorCount = 0;
+            for (int i = blockStart[splitterBlock]; i < blockEnd[splitterBlock]; i++) {
+                int key = elements[i] * k + a;
+                for (int j = inverseOffset[key]; j < inverseOffset[key + 1]; j++) {
+                    predecessors[predecessorCount++] = inverse[j];
+                }
+            }
+
+            //标记：把前驱交换到所在块的前部
+            int touchedCount = 0;
+            for (int i = 0; i < predecessorCount; i++) {
+                int s = predecessors[i];
+                int b = blockOf[s];
+                if (marked[b] == 0) {
+                    touched[touchedCount++] = b;
+                }
+                int position = blockStart[b] + marked[b];
+                int other = elements[position];
+                elements[location[s]] = other;
+                location[other] = location[s];
+                elements[position] = s;
+                location[s] = position;
+                marked[b]++;
+            }
+
+            //分割被部分标记的块
+            for (int i = 0; i < touchedCount; i++) {
+                int b = touched[i];
+                int markedCount = marked[b];
+                marked[b] = 0;
+                int size = blockEnd[b] - blockStart[b];
+                if (markedCount == size) {
+                    continue;
+                }
+                int newBlock = blockCount++;
+                //新块取较小的一半
+                if (markedCount <= size - markedCount) {
+                    blockStart[newBlock] = blockStart[b];
+                    blockEnd[newBlock] = blockStart[b] + markedCount;
+                    blockStart[b] = blockEnd[newBlock];
+                } else {
+                    blockStart[newBlock] = blockStart[b] + markedCount;
+                    blockEnd[newBlock] = blockEnd[b];
+                    blockEnd[b] = blockStart[newBlock];
+                }
+                for (int j = blockStart[newBlock]; j < blockEnd[newBlock]; j++) {
+                    blockOf[elements[j]] = newBlock;
+                }
+                for (int c = 0; c < k; c++) {
+                    if (!inWork[newBlock * k + c]) {
+                        inWork[newBlock * k + c] = true;
+                        work[workSize++] = newBlock * k + c;
+                    }
+                }
+            }
+        }
+
+        //按状态下标顺序重新编号，去掉只含虚拟死状态的块，开始状态（下标 0）所在块编号为 0
+        int[] renumber = new int[blockCount];
+        Arrays.fill(renumber, -1);
+        int[] result = new int[realCount];
+        int next = 0;
+        for (int s = 0; s < realCount; s++) {
+            if (renumber[blockOf[s]] < 0) {
+                renumber[blockOf[s]] = next++;
+            }
+            result[s] = renumber[blockOf[s]];
+        }
+        return result;
+    }
+
+    /**
+     * 并行的 Moore 算法。
+     * 每一轮在 ForkJoinPool 中并行计算所有状态的签名（所在块，经过每条路径到达的状态所在块），
+     * 签名相同的状态分到同一个新块，新块编号通过 ConcurrentHashMap 分配；块数不再增加时结束。
+     * 每轮 O(n·k) 且可以完全并行，但轮数最坏为 n（例如长字面量形成的链），状态多、链短时才比 hopcroft 快。
+     * 缺失的转换记为块 -1，相当于单独一块的死状态，与 hopcroft 中的虚拟死状态一致，所以结果与 hopcroft 完全相同。
+     * @param dfa 待最小化的 DFA
+     * @param initialBlocks 初始划分
+     * @param pool 执行并行计算的线程池
+     * @return 每个状态所在的等价类编号，按状态下标顺序从 0 开始连续编号
+     */
+    public static int[] moore(CompactDFA dfa, int[] initialBlocks, ForkJoinPool pool) {
+        int n = dfa.getStateCount();
+        int[] blockOf = new int[n];
+        int blockCount = 0;
+        Map<Integer, Integer> keyToBlock = new HashMap<>();
+        for (int s = 0; s < n; s++) {
+            Integer block = keyToBlock.get(initialBlocks[s]);
+            if (block == null) {
+                block = blockCount++;
+                keyToBlock.put(initialBlocks[s], block);
+            }
+            blockOf[s] = block;
+        }
+        int width = dfa.getPathCount() + 1;
+        int[] signatures = new int[n * width];
+        int chunk = Math.max(256, n / (pool.getParallelism() * 4));
+        while (true) {
+            MooreRound round = new MooreRound(dfa, blockOf, signatures, chunk, blockCount);
+            pool.invoke(round.task(0, n));
+            int newCount = round.counter.get();
+            blockOf = round.next;
+            //每轮只会细分，块数不变说明划分已稳定
+            if (newCount == blockCount) {
+                break;
+            }
+            blockCount = newCount;
+        }
+
+        //按状态下标顺序重新编号
+        int[] renumber = new int[blockCount];
+        Arrays.fill(renumber, -1);
+        int[] result = new int[n];
+        int next = 0;
+        for (int s = 0; s < n; s++) {
+            if (renumber[blockOf[s]] < 0) {
+                renumber[blockOf[s]] = next++;
+            }
+            result[s] = renumber[blockOf[s]];
+        }
+        return result;
+    }
+
+    /**
+     * Moore 算法的一轮，签名写入共享的 signatures，每个状态占 width 个 int
+     */
+    private static class MooreRound {
+
+        private final CompactDFA dfa;
+        private final int[] blockOf;
+        private final int[] signatures;
+        private final int width;
+        private final int chunk;
+        private final int[] next;
+        private final ConcurrentHashMap<Signature, Integer> ids;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        MooreRound(CompactDFA dfa, int[] blockOf, int[] signatures, int chunk, int blockCount) {
+            this.dfa = dfa;
+            this.blockOf = blockOf;
+            this.signatures = signatures;
+            this.width = dfa.getPathCount() + 1;
+            this.chunk = chunk;
+            this.next = new int[blockOf.length];
+            this.ids = new ConcurrentHashMap<>(blockCount * 2);
+        }
+
+        RecursiveAction task(int from, int to) {
+            return new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    if (to - from > chunk) {
+                        int mid = (from + to) >>> 1;
+                        invokeAll(task(from, mid), task(mid, to));
+                        return;
+                    }
+                    for (int s = from; s < to; s++) {
+                        int offset = s * width;
+                        signatures[offset] = blockOf[s];
+                        for (int a = 0; a < width - 1; a++) {
+                            int t = dfa.getTarget(s, a);
+                            signatures[offset + a + 1] = t < 0 ? -1 : blockOf[t];
+                        }
+                        next[s] = ids.computeIfAbsent(new Signature(signatures, offset, width),
+                                key -> counter.getAndIncrement());
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * 指向共享数组中一段签名的键
+     */
+    private static final class Signature {
+
+        private final int[] data;
+        private final int offset;
+        private final int length;
+        private final int hash;
+
+        Signature(int[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for (int i = offset; i < offset + length; i++) {
+                h = h * 31 + data[i];
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            Signature that = (Signature) o;
+            if (that.hash != hash || that.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (data[offset + i] != that.data[that.offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static int target(CompactDFA dfa, int s, int a, int sink, int realCount) {
+        if (s >= realCount) {
+            return sink;
+        }
+        int t = dfa.getTarget(s, a);
+        return t < 0 ? sink : t;
+    }
+}
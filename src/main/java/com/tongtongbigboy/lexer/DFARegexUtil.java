@@ -64,60 +64,94 @@ public class DFARegexUtil {
     }
 
     /**
-     * 从 dfaStates 集合中寻找一个未标记的 DFA 状态节点
-     * @param dfaStates
+     * NFA 转换成 DFA
+     * @param nfaGraph
      * @return
      */
-    public static DFAState getNoTagState(Set<DFAState> dfaStates) {
-        for (DFAState state : dfaStates) {
-            if (!state.isTag()) {
-                return state;
-            }
-        }
-        return null;
+    public static DFAGraph NFAToDFA(NFAGraph nfaGraph) {
+        return NFAToDFA(CompactNFA.create(nfaGraph));
     }
 
     /**
-     * NFA 转换成 DFA
-     * @param nfaGraph
+     * 在数组形式的 NFA 上直接进行子集构造
+     * NFA 状态集合用有序 int[] 表示，并在 StateSetTable 中驻留，集合相同即编号相同；
+     * ε-closure 由 CompactNFA 中缓存的单状态闭包合并得到。
+     * 新发现的集合按编号顺序排队（FIFO 工作表），每个 DFA 状态恰好处理一次。
+     * @param nfa
      * @return
      */
-    public static DFAGraph NFAToDFA(NFAGraph nfaGraph) {
+    public static DFAGraph NFAToDFA(CompactNFA nfa) {
+        return NFAToDFA(nfa, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 子集构造，DFA 状态数超过 maxStates 时报错
+     * @param nfa
+     * @param maxStates DFA 状态数上限
+     * @return
+     */
+    public static DFAGraph NFAToDFA(CompactNFA nfa, int maxStates) {
+        int n = nfa.getStateCount();
+        int labelCount = nfa.getLabelCount();
         //构造paths
         List<String> paths = new ArrayList<>();
-        NFARegexUtil.generateStateListAndPathListFromNFAGraph(new ArrayList<>(),paths,nfaGraph);
-        //移除epsilon
-        paths.remove("epsilon");
+        for (int i = 0; i < labelCount; i++) {
+            paths.add(nfa.getLabel(i));
+        }
+        // 计算闭包时使用的标记数组和缓冲区
+        boolean[] marks = new boolean[n];
+        int[] buffer = new int[n];
+        // 每条路径到达的状态，moveSize[label] 为有效长度
+        int[][] moveTargets = new int[labelCount][4];
+        int[] moveSize = new int[labelCount];
 
         // 创建开始的 DFA 状态
-        DFAState startDFAState = DFAState.create(closure(nfaGraph.getStartState()));
+        StateSetTable table = new StateSetTable();
+        int[] startSet = nfa.closure(new int[]{nfa.getStartState()}, 1, marks, buffer);
+        table.intern(startSet);
+        DFAState startDFAState = DFAState.create(nfa, startSet);
         // 创建 DFAGraph 图
         DFAGraph dfaGraph = DFAGraph.create(startDFAState);
-        // 这个集合记录所有生成的 DFA 状态节点
-        Set<DFAState> dfaStates = new HashSet<>();
-        // 将开始状态节点添加到 dfaStates 中
-        dfaStates.add(startDFAState);
-
-        DFAState TState;
-        // 从 dfaStates 集合中寻找一个未标记的 DFA 状态节点
-        while ((TState = getNoTagState(dfaStates)) != null) {
-            // 进行标记，防止重复遍历
-            TState.setTag(true);
+        // 集合编号 => DFA 状态节点，同时也是工作表：编号小于 next 的状态已处理
+        List<DFAState> idToState = new ArrayList<>();
+        idToState.add(startDFAState);
+
+        for (int next = 0; next < idToState.size(); next++) {
+            DFAState TState = idToState.get(next);
             dfaGraph.addAcceptOrNonStates(TState);
+            // 一次遍历求出所有输入字符能到达的状态
+            Arrays.fill(moveSize, 0);
+            for (int state : TState.getNFAStates()) {
+                for (int j = nfa.getEdgeStart(state); j < nfa.getEdgeEnd(state); j++) {
+                    int label = nfa.getEdgeLabel(j);
+                    if (moveSize[label] == moveTargets[label].length) {
+                        moveTargets[label] = Arrays.copyOf(moveTargets[label], moveSize[label] * 2);
+                    }
+                    moveTargets[label][moveSize[label]++] = nfa.getEdgeTarget(j);
+                }
+            }
             // 遍历输入字符
-            for (String path : paths) {
-                // 创建新的 DFA 状态节点
-                DFAState UState = DFAState.create(closure(edge(TState, path)));
-                // 不包含就添加
-                if (!dfaStates.contains(UState)) {
-                    dfaStates.add(UState);
+            for (int i = 0; i < labelCount; i++) {
+                int[] uSet = nfa.closure(moveTargets[i], moveSize[i], marks, buffer);
+                int id = table.intern(uSet);
+                DFAState UState;
+                // 新集合就创建新的 DFA 状态节点，加入工作表末尾
+                if (id == idToState.size()) {
+                    if (id >= maxStates) {
+                        throw new RuntimeException("DFA 状态数超过上限：" + maxStates);
+                    }
+                    UState = DFAState.create(nfa, uSet);
+                    idToState.add(UState);
+                } else {
+                    UState = idToState.get(id);
                 }
                 // 添加转换表
-                dfaGraph.addStateTable(TState, path, UState);
+                dfaGraph.addStateTable(TState, paths.get(i), UState);
             }
 
         }
         dfaGraph.setPaths(paths);
+        dfaGraph.setAlphabet(nfa.getAlphabet());
         return dfaGraph;
     }
 
@@ -154,67 +188,24 @@ public class DFARegexUtil {
     }
 
     /**
-     * nfa转为c语言代码, 双层case嵌套
+     * dfa转为可以直接编译的c语言词法分析器，见 CCodeGenerator
      * @param dfaGraph
      * @return
      */
     public static String toCCode(DFAGraph dfaGraph){
-        //获取状态转换表，数据源
-        Map<DFAState, Map<String, DFAState>> stateTable = dfaGraph.getStateTable();
-        //需要用数字代表一个状态。构造intToState、stateToInt
-        Map<Integer,DFAState> intToState = new HashMap<>();
-        Map<DFAState,Integer> stateToInt = new HashMap<>();
-        int id = 1;
-        for (DFAState state : stateTable.keySet()) {
-            int a = id;
-            intToState.put(a,state);
-            stateToInt.put(state,a);
-            id++;
-        }
+        return CCodeGenerator.generate(dfaGraph);
+    }
 
-        //确定开始状态的数字id
-        int startId = 0;
-        for (DFAState state : stateTable.keySet()) {
-            if (state.isStart()) {
-                startId = stateToInt.get(state);
-                break;
-            }
-        }
-        //代码简单，不用描述。
-        StringBuilder sum = new StringBuilder();
-        sum.append("int state = "+startId+";\n");
-        sum.append("char input;\n");
-        sum.append("switch(state){\n");
-        sum.append("\tcase -1:\n");
-        sum.append("\t\thandleError();\n");
-        sum.append("\t\tbreak;\n");
-        stateTable.forEach(new BiConsumer<DFAState, Map<String, DFAState>>() {
-            @Override
-            public void accept(DFAState dfaState, Map<String, DFAState> stringDFAStateMap) {
-                StringBuilder sub = new StringBuilder();
-                sub.append("\tcase "+stateToInt.get(dfaState)+":\n");
-                sub.append("\t\tinput = next();\n");
-                sub.append("\t\tswitch(input){\n");
-                stringDFAStateMap.forEach(new BiConsumer<String, DFAState>() {
-                    @Override
-                    public void accept(String s, DFAState dfaState) {
-                        StringBuilder subsub = new StringBuilder();
-                        subsub.append("\t\t\tcase "+s+":\n");
-                        subsub.append("\t\t\t\tstate = "+stateToInt.get(dfaState)+";\n");
-                        subsub.append("\t\t\t\tbreak;\n");
-                        sub.append(subsub.toString());
-                    }
-                });
-                sub.append("\t\t\tdefault:\n");
-                sub.append("\t\t\t\tstate = -1;\n");
-                sub.append("\t\t\t\tbreak;\n");
-                sub.append("\t\t}\n");
-                sub.append("\t\tbreak;\n");
-                sum.append(sub.toString());
-            }
-        });
-        sum.append("}\n");
-        return sum.toString();
+    /**
+     * dfa转为独立的java词法分析器源代码，见 JavaCodeGenerator
+     * @param dfaGraph
+     * @param packageName 包名，null 表示默认包
+     * @param className 类名
+     * @param tokenNames 每条规则的记号类型常量名，null 时使用 RULE_0、RULE_1...
+     * @return
+     */
+    public static String toJavaCode(DFAGraph dfaGraph, String packageName, String className, List<String> tokenNames){
+        return JavaCodeGenerator.generate(CompiledDFA.create(dfaGraph), packageName, className, tokenNames);
     }
 
     //测试
@@ -0,0 +1,278 @@
+package com.tongtongbigboy.lexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * 流式词法分析器，由多规则合并、最小化后的 DFA 驱动。
+ * 输入按块读入一个可复用的滑动缓冲区，每次 nextToken() 采用最长匹配：
+ * 一直走到 DFA 失败为止，再回退到最后一次经过接受态的位置。
+ * 跨越缓冲区边界的记号会把未完成的部分移到缓冲区开头后继续读取，缓冲区放不下时扩容。
+ *
+ * 输入来源有三种：Reader；ReadableByteChannel（按指定字符集解码）；
+ * 以及内存映射的文件区域，此时每个字节当作一个字符（ISO-8859-1），直接在映射内存上匹配，不复制。
+ *
+ * 一个实例只能在一个线程中使用。
+ */
+public class DFAScanner {
+
+    // 输入结束
+    public static final int EOF = -1;
+    // 当前位置没有任何规则能匹配，记号为一个字符
+    public static final int ERROR = -2;
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final CompiledDFA dfa;
+
+    // Reader 来源
+    private Reader reader;
+    // ReadableByteChannel 来源
+    private ReadableByteChannel channel;
+    private CharsetDecoder decoder;
+    private ByteBuffer bytes;
+    private boolean channelEof;
+    private boolean flushed;
+    // 内存映射来源，非 null 时不使用 buffer
+    private ByteBuffer mapped;
+
+    // 滑动缓冲区，[start, limit) 为尚未消耗的字符
+    private char[] buffer;
+    private int start;
+    private int limit;
+    private boolean eof;
+    // buffer[0] 在整个输入中的偏移
+    private long bufferOffset;
+
+    // 当前记号
+    private int tokenType;
+    private long tokenOffset;
+    private int tokenLength;
+    // 当前记号在 buffer 或 mapped 中的开始位置
+    private int tokenStart;
+
+    private DFAScanner(CompiledDFA dfa) {
+        this.dfa = dfa;
+    }
+
+    public DFAScanner(CompiledDFA dfa, Reader reader) {
+        this(dfa);
+        this.reader = reader;
+        this.buffer = new char[DEFAULT_BUFFER_SIZE];
+    }
+
+    public DFAScanner(CompiledDFA dfa, ReadableByteChannel channel, Charset charset) {
+        this(dfa);
+        this.channel = channel;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+        this.bytes.flip();
+        this.buffer = new char[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * 直接在字节缓冲区上匹配，每个字节当作一个字符
+     * @param dfa
+     * @param bytes 一般是 map(..) 得到的内存映射区域，从 position 匹配到 limit
+     */
+    public DFAScanner(CompiledDFA dfa, ByteBuffer bytes) {
+        this(dfa);
+        this.mapped = bytes;
+        this.start = bytes.position();
+        this.limit = bytes.limit();
+        this.eof = true;
+        this.bufferOffset = -bytes.position();
+    }
+
+    /**
+     * 只读映射文件的一个区域
+     * @param fileChannel
+     * @param position 区域开始位置
+     * @param size 区域大小，不超过 Integer.MAX_VALUE
+     * @return
+     * @throws IOException
+     */
+    public static MappedByteBuffer map(FileChannel fileChannel, long position, long size) throws IOException {
+        return fileChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * 读取下一个记号
+     * @return 记号对应的规则编号；输入结束返回 EOF；没有规则能匹配时返回 ERROR，并跳过一个字符
+     * @throws IOException
+     */
+    public int nextToken() throws IOException {
+        if (start == limit && !fill()) {
+            tokenType = EOF;
+            tokenOffset = bufferOffset + start;
+            tokenLength = 0;
+            tokenStart = start;
+            return EOF;
+        }
+        int state = dfa.getStartState();
+        int lastAccept = -1;
+        int lastToken = ERROR;
+        int pos = start;
+        while (true) {
+            if (pos == limit) {
+                //缓冲区用完，保留当前记号已读部分并继续读取
+                int oldStart = start;
+                boolean more = fill();
+                //fill() 可能移动了缓冲区内容
+                int shift = oldStart - start;
+                pos -= shift;
+                if (lastAccept >= 0) {
+                    lastAccept -= shift;
+                }
+                if (!more) {
+                    break;
+                }
+            }
+            char c = mapped != null ? (char) (mapped.get(pos) & 0xff) : buffer[pos];
+            state = dfa.next(state, c);
+            if (state < 0) {
+                break;
+            }
+            pos++;
+            if (dfa.isAccept(state)) {
+                lastAccept = pos;
+                lastToken = dfa.getToken(state);
+            }
+        }
+        tokenStart = start;
+        tokenOffset = bufferOffset + start;
+        //回退到最后一次经过的接受态；没有（或只匹配到空串）时报错并跳过一个字符
+        if (lastAccept <= start) {
+            tokenType = ERROR;
+            tokenLength = 1;
+        } else {
+            tokenType = lastToken;
+            tokenLength = lastAccept - start;
+        }
+        start += tokenLength;
+        return tokenType;
+    }
+
+    /**
+     * 读取更多输入。会把 [start, limit) 移到缓冲区开头，移动后 start 为 0
+     * @return 是否读到了新的字符
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            bufferOffset += start;
+            limit -= start;
+            start = 0;
+        }
+        //至少留出两个字符：补充平面的字符解码为一个代理对，只剩一个位置时解码器一个字符也写不进去
+        if (buffer.length - limit < 2) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int n;
+        do {
+            n = reader != null ? reader.read(buffer, limit, buffer.length - limit) : decode(limit, buffer.length - limit);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * 从通道读取字节并解码到 buffer[off, off+len)
+     * @return 解码得到的字符数，输入结束返回 -1
+     * @throws IOException
+     */
+    private int decode(int off, int len) throws IOException {
+        CharBuffer out = CharBuffer.wrap(buffer, off, len);
+        while (true) {
+            if (channelEof) {
+                if (!flushed) {
+                    CoderResult result = decoder.decode(bytes, out, true);
+                    if (result.isOverflow()) {
+                        return out.position() - off;
+                    }
+                    decoder.flush(out);
+                    flushed = true;
+                }
+                return out.position() > off ? out.position() - off : -1;
+            }
+            decoder.decode(bytes, out, false);
+            if (out.position() > off) {
+                return out.position() - off;
+            }
+            bytes.compact();
+            if (channel.read(bytes) < 0) {
+                channelEof = true;
+            }
+            bytes.flip();
+        }
+    }
+
+    /**
+     * 当前记号的规则编号，或 EOF、ERROR
+     * @return
+     */
+    public int getTokenType() {
+        return tokenType;
+    }
+
+    /**
+     * 当前记号在整个输入中的偏移（字符数，内存映射时为相对映射区域开头的字节数）
+     * @return
+     */
+    public long getTokenOffset() {
+        return tokenOffset;
+    }
+
+    public int getTokenLength() {
+        return tokenLength;
+    }
+
+    /**
+     * 当前记号的文本。会创建新字符串，只在需要时调用
+     * @return
+     */
+    public String getTokenText() {
+        if (mapped != null) {
+            char[] chars = new char[tokenLength];
+            for (int i = 0; i < tokenLength; i++) {
+                chars[i] = (char) (mapped.get(tokenStart + i) & 0xff);
+            }
+            return new String(chars);
+        }
+        return new String(buffer, tokenStart, tokenLength);
+    }
+
+    /**
+     * 把当前记号的文本追加到 sb，不创建中间字符串
+     * @param sb
+     */
+    public void appendTokenText(StringBuilder sb) {
+        if (mapped != null) {
+            for (int i = 0; i < tokenLength; i++) {
+                sb.append((char) (mapped.get(tokenStart + i) & 0xff));
+            }
+        } else {
+            sb.append(buffer, tokenStart, tokenLength);
+        }
+    }
+}
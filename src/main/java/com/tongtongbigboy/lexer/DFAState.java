@@ -1,5 +1,10 @@
 package com.tongtongbigboy.lexer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -10,26 +15,32 @@ public class DFAState{
 
     // 对应的 NFA 转换图中的状态集合
     private Set<NFAState> stateSet;
+    // 由 CompactNFA 生成时，对应的有序 NFA 状态下标集合，stateSet 按需生成
+    private CompactNFA nfa;
+    private int[] nfaStates;
     // NFA 转换图中的状态集合对应的唯一标志，用来两个 DFA 是否相等
     private String statesId;
 
     // 表示当前状态是不是终止状态
     private boolean isEnd;
     private boolean isStart;
-    // 这个 tag 只是辅助作用，
-    private boolean isTag;
+    // 终止状态接受的规则编号，取所含 NFA 终止状态中最小的编号；不是终止状态为 -1
+    private int token;
 
-    private DFAState(Set<NFAState> stateSet, String statesId, boolean isEnd,boolean isStart) {
+    private DFAState(Set<NFAState> stateSet, String statesId, int token,boolean isStart) {
         this.stateSet = stateSet;
         this.statesId = statesId;
-        this.isEnd = isEnd;
+        this.isEnd = token >= 0;
+        this.token = token;
         this.isStart = isStart;
     }
 
     public DFAState(String statesId, boolean isEnd,boolean isStart) {
-        this.statesId = statesId;
-        this.isEnd = isEnd;
-        this.isStart = isStart;
+        this(null, statesId, isEnd ? 0 : -1, isStart);
+    }
+
+    public DFAState(String statesId, int token,boolean isStart) {
+        this(null, statesId, token, isStart);
     }
 
     /**
@@ -41,13 +52,12 @@ public class DFAState{
         StringBuilder idBuilder = new StringBuilder();
         // 生成对应 DFA 状态的 id 标志
         stateSet.stream().sorted().forEach(state -> idBuilder.append(state.getId()+","));
-        boolean isEnd = false;
+        int token = -1;
         for (NFAState state : stateSet) {
             // 如果 stateSet 集合中有一个状态节点是终止状态节点，
-            // 那么这个新生成的 DFA 状态节点也是终止状态节点
-            if (state.isEnd()) {
-                isEnd = true;
-                break;
+            // 那么这个新生成的 DFA 状态节点也是终止状态节点，接受优先级最高（编号最小）的规则
+            if (state.isEnd() && (token < 0 || state.getToken() < token)) {
+                token = state.getToken();
             }
         }
 
@@ -61,7 +71,105 @@ public class DFAState{
             }
         }
 
-        return new DFAState(stateSet, idBuilder.toString(), isEnd,isStart);
+        return new DFAState(stateSet, idBuilder.toString(), token,isStart);
+    }
+
+    /**
+     * 通过数组形式 NFA 中的有序状态下标集合生成对应的 DFA 状态
+     * @param nfa
+     * @param states 有序的状态下标数组
+     * @return
+     */
+    public static DFAState create(CompactNFA nfa, int[] states) {
+        StringBuilder idBuilder = new StringBuilder();
+        int token = -1;
+        boolean isStart = false;
+        // 下标顺序与 id 顺序一致，无需排序
+        for (int state : states) {
+            NFAState nfaState = nfa.getState(state);
+            idBuilder.append(nfaState.getId()).append(',');
+            int stateToken = nfa.getToken(state);
+            if (stateToken >= 0 && (token < 0 || stateToken < token)) {
+                token = stateToken;
+            }
+            isStart |= nfaState.isStart();
+        }
+        DFAState dfaState = new DFAState(null, idBuilder.toString(), token, isStart);
+        dfaState.nfa = nfa;
+        dfaState.nfaStates = states;
+        return dfaState;
+    }
+
+    /**
+     * 合并多个 DFA 状态，新状态对应的 NFA 状态集合为它们的并集
+     * @param states
+     * @return
+     */
+    public static DFAState merge(List<DFAState> states) {
+        CompactNFA nfa = states.get(0).nfa;
+        for (DFAState state : states) {
+            if (state.nfa == null || state.nfa != nfa) {
+                nfa = null;
+                break;
+            }
+        }
+        //都来自同一个 CompactNFA 时，直接合并有序下标数组
+        if (nfa != null) {
+            if (states.size() == 1) {
+                return create(nfa, states.get(0).nfaStates);
+            }
+            int total = 0;
+            for (DFAState state : states) {
+                total += state.nfaStates.length;
+            }
+            int[] all = new int[total];
+            int size = 0;
+            for (DFAState state : states) {
+                System.arraycopy(state.nfaStates, 0, all, size, state.nfaStates.length);
+                size += state.nfaStates.length;
+            }
+            //排序后去重
+            Arrays.sort(all);
+            size = 0;
+            for (int i = 0; i < total; i++) {
+                if (size == 0 || all[size - 1] != all[i]) {
+                    all[size++] = all[i];
+                }
+            }
+            return create(nfa, Arrays.copyOf(all, size));
+        }
+        Set<NFAState> union = new HashSet<>();
+        for (DFAState state : states) {
+            if (state.getNFAStateSet() == null) {
+                return mergeIds(states);
+            }
+            union.addAll(state.getNFAStateSet());
+        }
+        return create(union);
+    }
+
+    /**
+     * 合并不是由 NFA 状态集合生成的状态（例如 IncrementalCompiler 中的乘积状态），
+     * 新状态的标识为各状态标识排序后用 | 连接，规则编号取最小的
+     * @param states
+     * @return
+     */
+    private static DFAState mergeIds(List<DFAState> states) {
+        if (states.size() == 1) {
+            return states.get(0);
+        }
+        List<String> ids = new ArrayList<>();
+        int token = -1;
+        boolean isStart = false;
+        for (DFAState state : states) {
+            ids.add(state.statesId);
+            if (state.token >= 0 && (token < 0 || state.token < token)) {
+                token = state.token;
+            }
+            isStart |= state.isStart;
+        }
+        Collections.sort(ids);
+        return new DFAState(null, String.join("|", ids), token, isStart);
     }
 
     @Override
@@ -77,26 +185,37 @@ public class DFAState{
         return Objects.hash(statesId);
     }
 
-    public void setTag(boolean tag) {
-        isTag = tag;
-    }
-
     public Set<NFAState> getNFAStateSet() {
+        if (stateSet == null && nfa != null) {
+            stateSet = nfa.toStateSet(nfaStates);
+        }
         return stateSet;
     }
 
-    public String getNFAStatesId() {
-        return statesId;
+    /**
+     * 由 CompactNFA 生成时返回有序的 NFA 状态下标集合，否则返回 null
+     * @return
+     */
+    public int[] getNFAStates() {
+        return nfaStates;
     }
 
-    public boolean isTag() {
-        return isTag;
+    public String getNFAStatesId() {
+        return statesId;
     }
 
     public boolean isEnd() {
         return isEnd;
     }
 
+    /**
+     * 终止状态接受的规则编号
+     * @return 不是终止状态返回 -1
+     */
+    public int getToken() {
+        return token;
+    }
+
     public boolean isStart() {
         return isStart;
     }
@@ -110,6 +229,7 @@ public class DFAState{
         final StringBuilder sb = new StringBuilder("DFANFAState{");
         sb.append("statesId='").append(statesId).append('\'');
         sb.append(", isEnd=").append(isEnd);
+        sb.append(", token=").append(token);
         sb.append('}');
         return sb.toString();
     }
@@ -0,0 +1,284 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.*;
+
+/**
+ * 基于 Brzozowski 导数直接由正则表达式构造 DFA，不经过 NFA，也不计算 ε-closure。
+ *
+ * 正则表达式 r 对字符 c 的导数 D_c(r) 是 r 匹配的串中以 c 开头的那些去掉 c 后组成的语言，
+ * 例如 D_a(ab*|ac) = b*|c。DFA 的状态就是正则表达式本身：开始状态为 r，状态 s 经过 c 到达 D_c(s)，
+ * 能匹配空串的状态是接受态，∅ 是死状态。
+ * 导数在 RegexContext 中驻留，并由 RegexSimplifier 按 ACI 规则规范化（选择展平、去重、按编号排序，连接展平，去掉 ε、遇到 ∅ 即为 ∅），
+ * 这样不同的导数只有有限多个，构造一定结束，结果接近最小 DFA。
+ *
+ * 字符先按正则表达式中出现的所有字符集合划分为等价类（Alphabet），同一等价类中的字符导数相同，只需对每个等价类求一次；
+ * 每个表达式对各等价类的导数也会缓存。
+ * 多条词法规则时状态为各规则当前导数组成的元组，只记录不是 ∅ 的规则，接受的规则编号取能匹配空串的规则中最小的。
+ *
+ * 结果与 DFARegexUtil.NFAToDFA 的类型相同，可以继续 translateMinDFA、toMapList、toCCode；状态标识为 规则:表达式编号。
+ */
+public class DerivativeConstruction {
+
+    private final RegexContext context = new RegexContext();
+    private final RegexNode epsilon = context.epsilon();
+    private final RegexNode empty = context.empty();
+    // 规范化用到的化简规则
+    private final RegexSimplifier simplifier = new RegexSimplifier(context);
+    // 表达式 => 各等价类的导数，未计算的为 null
+    private final Map<RegexNode, RegexNode[]> derivatives = new HashMap<>();
+    // 连接 => 去掉第一项后的剩余部分
+    private final Map<RegexNode, RegexNode> tails = new HashMap<>();
+    // DFA 状态中的表达式 => 编号
+    private final Map<RegexNode, Integer> termIds = new HashMap<>();
+    private final List<RegexNode> terms = new ArrayList<>();
+    private Alphabet alphabet;
+    // 等价类 => 其中的一个字符
+    private int[] representatives;
+
+    DerivativeConstruction() {
+    }
+
+    /**
+     * 由一个正则表达式构造 DFA，接受态的规则编号为 0
+     * @param pattern
+     * @return
+     */
+    public static DFAGraph toDFA(String pattern) {
+        return toDFA(Collections.singletonList(pattern), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 由一组词法规则构造 DFA，规则在列表中越靠前优先级越高
+     * @param patterns 正则表达式，至少一个
+     * @param maxStates DFA 状态数上限，超过时报错
+     * @return
+     */
+    public static DFAGraph toDFA(List<String> patterns, int maxStates) {
+        if (patterns.isEmpty()) {
+            throw new RuntimeException("正则表达式为空");
+        }
+        return new DerivativeConstruction().build(patterns, maxStates);
+    }
+
+    private DFAGraph build(List<String> patterns, int maxStates) {
+        int m = patterns.size();
+        RegexNode[] roots = new RegexNode[m];
+        for (int i = 0; i < m; i++) {
+            roots[i] = simplifier.normalize(context.parse(patterns.get(i)));
+        }
+        createAlphabet(roots);
+        int k = alphabet.getClassCount();
+
+        //元组 {规则0, 表达式0, 规则1, 表达式1, ...}，按规则编号排列
+        StateSetTable table = new StateSetTable();
+        int[] start = new int[m * 2];
+        int size = 0;
+        for (int i = 0; i < m; i++) {
+            if (roots[i] != empty) {
+                start[size++] = i;
+                start[size++] = termId(roots[i]);
+            }
+        }
+        table.intern(Arrays.copyOf(start, size));
+        List<int[]> rows = new ArrayList<>();
+        int[] buffer = new int[m * 2];
+        for (int next = 0; next < table.size(); next++) {
+            int[] tuple = table.get(next);
+            int[] row = new int[k];
+            for (int cls = 0; cls < k; cls++) {
+                size = 0;
+                for (int j = 0; j < tuple.length; j += 2) {
+                    RegexNode derivative = derivative(terms.get(tuple[j + 1]), cls);
+                    if (derivative != empty) {
+                        buffer[size++] = tuple[j];
+                        buffer[size++] = termId(derivative);
+                    }
+                }
+                row[cls] = table.intern(Arrays.copyOf(buffer, size));
+            }
+            rows.add(row);
+            if (table.size() > maxStates) {
+                throw new RuntimeException("DFA 状态数超过上限：" + maxStates);
+            }
+        }
+
+        DFAState[] states = new DFAState[table.size()];
+        for (int id = 0; id < states.length; id++) {
+            int[] tuple = table.get(id);
+            StringBuilder idBuilder = new StringBuilder();
+            int token = -1;
+            for (int j = 0; j < tuple.length; j += 2) {
+                idBuilder.append(tuple[j]).append(':').append(tuple[j + 1]).append(',');
+                if (token < 0 && terms.get(tuple[j + 1]).isNullable()) {
+                    token = tuple[j];
+                }
+            }
+            states[id] = new DFAState(idBuilder.toString(), token, id == 0);
+        }
+        List<String> paths = alphabet.getLabels();
+        DFAGraph dfaGraph = DFAGraph.create(states[0]);
+        for (int id = 0; id < states.length; id++) {
+            dfaGraph.addAcceptOrNonStates(states[id]);
+            int[] row = rows.get(id);
+            for (int cls = 0; cls < k; cls++) {
+                dfaGraph.addStateTable(states[id], paths.get(cls), states[row[cls]]);
+            }
+        }
+        dfaGraph.setPaths(paths);
+        dfaGraph.setAlphabet(alphabet);
+        return dfaGraph;
+    }
+
+    /**
+     * 解析并规范化，结果在本对象的上下文中驻留
+     * @param pattern
+     * @return
+     */
+    RegexNode normalize(String pattern) {
+        return simplifier.normalize(context.parse(pattern));
+    }
+
+    /**
+     * 表达式对一个串的导数，依次对每个字符求导，用于检查导数的计算
+     * @param node normalize 的结果
+     * @param word 不在表达式字符集合中的字符导数为 ∅
+     * @return
+     */
+    RegexNode derivative(RegexNode node, String word) {
+        //等价类随表达式变化，按等价类缓存的导数不能沿用
+        derivatives.clear();
+        createAlphabet(new RegexNode[]{node});
+        for (int i = 0; i < word.length() && node != empty; i++) {
+            int cls = alphabet.classOf(word.charAt(i));
+            node = cls < 0 ? empty : derivative(node, cls);
+        }
+        return node;
+    }
+
+    private int termId(RegexNode term) {
+        Integer id = termIds.get(term);
+        if (id == null) {
+            id = terms.size();
+            termIds.put(term, id);
+            terms.add(term);
+        }
+        return id;
+    }
+
+    /**
+     * 所有字符集合划分出的等价类
+     */
+    private void createAlphabet(RegexNode[] roots) {
+        List<int[]> groups = new ArrayList<>();
+        Set<RegexNode> visited = new HashSet<>();
+        Deque<RegexNode> deque = new ArrayDeque<>(Arrays.asList(roots));
+        while (!deque.isEmpty()) {
+            RegexNode node = deque.removeLast();
+            if (!visited.add(node)) {
+                continue;
+            }
+            if (node.getKind() == RegexNode.CHARS) {
+                groups.add(node.getRanges());
+            }
+            for (int i = 0; i < node.getChildCount(); i++) {
+                deque.addLast(node.getChild(i));
+            }
+        }
+        alphabet = Alphabet.create(groups);
+        representatives = new int[alphabet.getClassCount()];
+        for (int cls = 0; cls < representatives.length; cls++) {
+            representatives[cls] = alphabet.getRanges(cls)[0];
+        }
+    }
+
+    /**
+     * 求导数，结果已规范化
+     * @param node 规范化的表达式
+     * @param cls 等价类
+     * @return
+     */
+    private RegexNode derivative(RegexNode node, int cls) {
+        RegexNode[] cached = derivatives.get(node);
+        if (cached == null) {
+            cached = new RegexNode[alphabet.getClassCount()];
+            derivatives.put(node, cached);
+        } else if (cached[cls] != null) {
+            return cached[cls];
+        }
+        RegexNode result;
+        switch (node.getKind()) {
+            case RegexNode.CHARS:
+                result = contains(node.getRanges(), representatives[cls]) ? epsilon : empty;
+                break;
+            case RegexNode.CONCAT: {
+                //D(r s) = D(r) s | (r 匹配空串时) D(s)
+                RegexNode tail = tail(node);
+                RegexNode head = derivative(node.getChild(0), cls);
+                //多数字符的导数是 ∅ 或 ε，不必重新构造连接
+                result = head == empty ? empty : head == epsilon ? tail : simplifier.concat(Arrays.asList(head, tail));
+                if (node.getChild(0).isNullable()) {
+                    result = simplifier.alt(Arrays.asList(result, derivative(tail, cls)));
+                }
+                break;
+            }
+            case RegexNode.ALT: {
+                List<RegexNode> alternatives = new ArrayList<>();
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    alternatives.add(derivative(node.getChild(i), cls));
+                }
+                result = simplifier.alt(alternatives);
+                break;
+            }
+            case RegexNode.STAR:
+                //D(r*) = D(r) r*
+                result = simplifier.concat(Arrays.asList(derivative(node.getChild(0), cls), node));
+                break;
+            case RegexNode.PLUS:
+                //D(r+) = D(r) r*
+                result = simplifier.concat(Arrays.asList(derivative(node.getChild(0), cls),
+                        simplifier.star(node.getChild(0))));
+                break;
+            case RegexNode.OPTIONAL:
+                result = derivative(node.getChild(0), cls);
+                break;
+            case RegexNode.REPEAT: {
+                //D(r{m,n}) = D(r) r{m-1,n-1}，r 匹配空串时同样成立
+                RegexNode child = node.getChild(0);
+                int max = node.getMax() < 0 ? -1 : node.getMax() - 1;
+                result = simplifier.concat(Arrays.asList(derivative(child, cls),
+                        simplifier.repeat(child, Math.max(node.getMin() - 1, 0), max)));
+                break;
+            }
+            default:
+                //ε、∅
+                result = empty;
+        }
+        cached[cls] = result;
+        return result;
+    }
+
+    /**
+     * 连接去掉第一项后的剩余部分
+     */
+    private RegexNode tail(RegexNode node) {
+        RegexNode tail = tails.get(node);
+        if (tail == null) {
+            List<RegexNode> rest = new ArrayList<>();
+            for (int i = 1; i < node.getChildCount(); i++) {
+                rest.add(node.getChild(i));
+            }
+            tail = simplifier.concat(rest);
+            tails.put(node, tail);
+        }
+        return tail;
+    }
+
+    private static boolean contains(int[] ranges, int c) {
+        for (int i = 0; i < ranges.length && ranges[i] <= c; i += 2) {
+            if (c <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,25 @@
+package com.tongtongbigboy.lexer;
+
+/**
+ * 由 MatcherGenerator 在运行时生成的匹配器的父类。
+ * 子类的 matches 和 lookingAt 是一个循环：每读一个字符求出等价类，再按当前状态和等价类两层 tableswitch 得到下一个状态，
+ * 转换表和接受态都是字节码中的常量。
+ */
+public abstract class GeneratedMatcher implements AutomatonMatcher {
+
+    // 字符 => 等价类
+    private final Alphabet alphabet;
+
+    protected GeneratedMatcher(Alphabet alphabet) {
+        this.alphabet = alphabet;
+    }
+
+    /**
+     * 生成的代码调用，方法很小，JIT 会内联
+     * @param c
+     * @return 等价类编号，-1 表示不属于任何等价类
+     */
+    protected final int classOf(char c) {
+        return alphabet.classOf(c);
+    }
+}
@@ -0,0 +1,307 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.*;
+
+/**
+ * 增量编译器，用于编辑器中每次修改后都要重新编译的场合。
+ *
+ * 正则表达式先解析为在 RegexContext 中驻留的语法树，每条规则再按顶层的 | 拆成若干分支。
+ * 每个分支由 RegexSimplifier 化简后单独经过 NFA => 子集构造 => 最小化，得到的 CompiledDFA 以分支的语法树节点为键缓存；
+ * 整组规则的 DFA 是各分支 DFA 的乘积：乘积状态为各分支当前状态组成的元组，接受的规则编号取接受分支中最小的。
+ * 它与合并 NFA 后做子集构造的结果识别相同的语言，最小化后两者相同。
+ *
+ * 修改一条规则（或一个分支）后，只有语法树发生变化的分支需要重新构造 NFA、计算 ε-closure 和子集构造，
+ * 其余分支直接使用缓存的 DFA，只需重新计算乘积和最小化。
+ * 同一次编译中出现多次的子表达式（驻留后是同一个节点）的 NFA 片段只构造一次，之后复制，也跨编译缓存。
+ * 每次编译结束时只保留本次用到的缓存条目，缓存大小不会随编辑次数增长。
+ *
+ * 线程安全：公开方法都是同步的，多个线程的编译依次进行。一般每个编辑器一个实例。
+ * Ui 的按钮统一使用 PatternCache，这个类是供规则编辑器等调用者使用的库接口，仓库中没有调用者。
+ */
+public class IncrementalCompiler {
+
+    private final CompileOptions options;
+    private final RegexContext regexContext = new RegexContext();
+    private final NFAContext nfaContext = new NFAContext();
+    // 正则表达式 => 语法树
+    private Map<String, RegexNode> parsed = new HashMap<>();
+    // 子表达式 => NFA 片段，只作为原型复制，本身不会被修改
+    private Map<RegexNode, NFAGraph> fragments = new HashMap<>();
+    // 分支 => 最小化 DFA
+    private Map<RegexNode, CompiledDFA> branches = new HashMap<>();
+
+    // 最近一次编译的统计
+    private int reusedBranchCount;
+    private int builtBranchCount;
+    private int reusedFragmentCount;
+
+    public IncrementalCompiler() {
+        this(CompileOptions.DEFAULT);
+    }
+
+    public IncrementalCompiler(CompileOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * 编译一个正则表达式
+     * @param pattern
+     * @return 最小化 DFA
+     */
+    public synchronized DFAGraph compile(String pattern) {
+        return compile(Collections.singletonList(pattern));
+    }
+
+    /**
+     * 编译一组词法规则，下标即规则编号，结果与 CompiledPattern.getMinDFA() 识别相同的记号
+     * @param patterns 正则表达式，至少一个
+     * @return 最小化 DFA
+     */
+    public synchronized DFAGraph compile(List<String> patterns) {
+        if (patterns.isEmpty()) {
+            throw new RuntimeException("正则表达式为空");
+        }
+        reusedBranchCount = 0;
+        builtBranchCount = 0;
+        reusedFragmentCount = 0;
+
+        Map<String, RegexNode> roots = new HashMap<>();
+        for (String pattern : patterns) {
+            RegexNode root = parsed.get(pattern);
+            if (root == null) {
+                NFARegexUtil.checkRepeat(pattern, options.getMaxRepeat());
+                root = regexContext.parse(pattern);
+            }
+            roots.put(pattern, root);
+        }
+
+        //拆分分支，同一个分支出现多次时只保留编号最小的
+        List<RegexNode> branchNodes = new ArrayList<>();
+        List<Integer> tokens = new ArrayList<>();
+        Set<RegexNode> seen = new HashSet<>();
+        for (int i = 0; i < patterns.size(); i++) {
+            List<RegexNode> alternatives = new ArrayList<>();
+            collectBranches(roots.get(patterns.get(i)), alternatives);
+            for (RegexNode alternative : alternatives) {
+                if (seen.add(alternative)) {
+                    branchNodes.add(alternative);
+                    tokens.add(i);
+                }
+            }
+        }
+
+        //需要重新构造的分支先化简，其中被引用多次的子表达式构造一次后复制
+        RegexSimplifier simplifier = new RegexSimplifier(regexContext);
+        Map<RegexNode, RegexNode> simplified = new HashMap<>();
+        for (RegexNode branch : branchNodes) {
+            if (!branches.containsKey(branch)) {
+                simplified.put(branch, simplifier.simplify(branch));
+            }
+        }
+        Set<RegexNode> shared = sharedNodes(simplified.values());
+        Map<RegexNode, CompiledDFA> usedBranches = new HashMap<>();
+        List<CompiledDFA> dfas = new ArrayList<>();
+        for (RegexNode branch : branchNodes) {
+            CompiledDFA dfa = branches.get(branch);
+            if (dfa == null) {
+                dfa = compileBranch(simplified.get(branch), shared);
+                builtBranchCount++;
+            } else {
+                reusedBranchCount++;
+            }
+            usedBranches.put(branch, dfa);
+            dfas.add(dfa);
+        }
+        DFAGraph minDFA = product(dfas, tokens).translateMinDFA(options.isParallel());
+
+        //只保留本次用到的缓存条目
+        parsed = roots;
+        branches = usedBranches;
+        List<RegexNode> live = new ArrayList<>(roots.values());
+        live.addAll(simplified.values());
+        regexContext.retain(live);
+        fragments.keySet().removeIf(node -> !regexContext.contains(node));
+        return minDFA;
+    }
+
+    /**
+     * 把顶层的选择拆成分支，a|b|c 拆为 a、b、c
+     */
+    private static void collectBranches(RegexNode node, List<RegexNode> result) {
+        if (node.getKind() == RegexNode.ALT) {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                collectBranches(node.getChild(i), result);
+            }
+        } else {
+            result.add(node);
+        }
+    }
+
+    /**
+     * 求需要构造的分支中被引用不止一次的子表达式
+     */
+    private Set<RegexNode> sharedNodes(Collection<RegexNode> branchNodes) {
+        Map<RegexNode, Integer> uses = new HashMap<>();
+        Set<RegexNode> visited = new HashSet<>();
+        Deque<RegexNode> deque = new ArrayDeque<>(branchNodes);
+        while (!deque.isEmpty()) {
+            RegexNode node = deque.removeLast();
+            if (!visited.add(node)) {
+                continue;
+            }
+            for (int i = 0; i < node.getChildCount(); i++) {
+                RegexNode child = node.getChild(i);
+                uses.merge(child, 1, Integer::sum);
+                deque.addLast(child);
+            }
+        }
+        Set<RegexNode> shared = new HashSet<>(fragments.keySet());
+        for (Map.Entry<RegexNode, Integer> entry : uses.entrySet()) {
+            if (entry.getValue() > 1) {
+                shared.add(entry.getKey());
+            }
+        }
+        return shared;
+    }
+
+    private CompiledDFA compileBranch(RegexNode branch, Set<RegexNode> shared) {
+        NFAGraph graph = fragment(branch, shared);
+        graph.getEndState().setEnd(true);
+        graph.getStartState().setStart(true);
+        //ε-closure 缓存在 CompactNFA 中，整个子集构造过程共用
+        DFAGraph dfaGraph = DFARegexUtil.NFAToDFA(CompactNFA.create(graph), options.getMaxDFAStates());
+        return CompiledDFA.create(dfaGraph.translateMinDFA());
+    }
+
+    /**
+     * 构造子表达式的 NFA 片段，返回的片段归调用者所有，可以修改
+     */
+    private NFAGraph fragment(RegexNode node, Set<RegexNode> shared) {
+        if (shared.contains(node)) {
+            NFAGraph prototype = fragments.get(node);
+            if (prototype == null) {
+                prototype = build(node, shared);
+                fragments.put(node, prototype);
+            } else {
+                reusedFragmentCount++;
+            }
+            return prototype.copy();
+        }
+        return build(node, shared);
+    }
+
+    private NFAGraph build(RegexNode node, Set<RegexNode> shared) {
+        return NFARegexUtil.createNFAGraph(nfaContext, node, child -> fragment(child, shared));
+    }
+
+    /**
+     * 各分支 DFA 的乘积。
+     * 先把各分支的字符等价类合并细化为公共的等价类，乘积状态是各分支状态组成的元组，在 StateSetTable 中驻留；
+     * 所有分支都失败的元组对应子集构造中的空集，标识为空串
+     */
+    private DFAGraph product(List<CompiledDFA> dfas, List<Integer> tokens) {
+        int m = dfas.size();
+        List<int[]> groups = new ArrayList<>();
+        for (CompiledDFA dfa : dfas) {
+            for (int cls = 0; cls < dfa.getClassCount(); cls++) {
+                groups.add(dfa.getAlphabet().getRanges(cls));
+            }
+        }
+        Alphabet alphabet = Alphabet.create(groups);
+        int k = alphabet.getClassCount();
+        //公共等价类 => 各分支的等价类
+        int[][] columns = new int[m][k];
+        for (int cls = 0; cls < k; cls++) {
+            int representative = alphabet.getRanges(cls)[0];
+            for (int i = 0; i < m; i++) {
+                columns[i][cls] = dfas.get(i).getAlphabet().classOf(representative);
+            }
+        }
+
+        //元组只记录未失败的分支，{分支0, 状态0, 分支1, 状态1, ...}，分支按编号排列；词法规则中多数分支很快失败，元组通常很短
+        StateSetTable table = new StateSetTable();
+        int[] start = new int[m * 2];
+        for (int i = 0; i < m; i++) {
+            start[2 * i] = i;
+            start[2 * i + 1] = dfas.get(i).getStartState();
+        }
+        table.intern(start);
+        List<int[]> rows = new ArrayList<>();
+        int[] buffer = new int[m * 2];
+        for (int next = 0; next < table.size(); next++) {
+            int[] tuple = table.get(next);
+            int[] row = new int[k];
+            for (int cls = 0; cls < k; cls++) {
+                int size = 0;
+                for (int j = 0; j < tuple.length; j += 2) {
+                    int i = tuple[j];
+                    int target = columns[i][cls] < 0 ? -1 : dfas.get(i).getTarget(tuple[j + 1], columns[i][cls]);
+                    if (target >= 0) {
+                        buffer[size++] = i;
+                        buffer[size++] = target;
+                    }
+                }
+                row[cls] = table.intern(Arrays.copyOf(buffer, size));
+            }
+            rows.add(row);
+            if (table.size() > options.getMaxDFAStates()) {
+                throw new RuntimeException("DFA 状态数超过上限：" + options.getMaxDFAStates());
+            }
+        }
+
+        DFAState[] states = new DFAState[table.size()];
+        for (int id = 0; id < states.length; id++) {
+            int[] tuple = table.get(id);
+            StringBuilder idBuilder = new StringBuilder();
+            int token = -1;
+            for (int j = 0; j < tuple.length; j += 2) {
+                idBuilder.append(tuple[j]).append(':').append(tuple[j + 1]).append(',');
+                //分支按规则编号排列，第一个接受的分支编号最小
+                if (token < 0 && dfas.get(tuple[j]).isAccept(tuple[j + 1])) {
+                    token = tokens.get(tuple[j]);
+                }
+            }
+            states[id] = new DFAState(idBuilder.toString(), token, id == 0);
+        }
+        List<String> paths = alphabet.getLabels();
+        DFAGraph dfaGraph = DFAGraph.create(states[0]);
+        for (int id = 0; id < states.length; id++) {
+            dfaGraph.addAcceptOrNonStates(states[id]);
+            int[] row = rows.get(id);
+            for (int cls = 0; cls < k; cls++) {
+                dfaGraph.addStateTable(states[id], paths.get(cls), states[row[cls]]);
+            }
+        }
+        dfaGraph.setPaths(paths);
+        dfaGraph.setAlphabet(alphabet);
+        return dfaGraph;
+    }
+
+    /**
+     * 最近一次编译中直接使用缓存 DFA 的分支数
+     * @return
+     */
+    public synchronized int getReusedBranchCount() {
+        return reusedBranchCount;
+    }
+
+    /**
+     * 最近一次编译中重新构造的分支数
+     * @return
+     */
+    public synchronized int getBuiltBranchCount() {
+        return builtBranchCount;
+    }
+
+    /**
+     * 最近一次编译中从缓存复制的 NFA 片段数
+     * @return
+     */
+    public synchronized int getReusedFragmentCount() {
+        return reusedFragmentCount;
+    }
+
+    public CompileOptions getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,330 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 由 DFA 生成独立的 Java 词法分析器源代码（类似 JFlex 的做法）。
+ *
+ * 生成的类运行时不依赖本项目：字符 => 等价类表、转换表、接受表用游程编码压缩为字符串常量，
+ * 类初始化时解压为数组，避免大数组初始化代码超过方法 64KB 的限制，也不需要反射或运行时构造 DFA。
+ * 每条规则生成一个记号类型常量，nextToken() 在字符缓冲区上做最长匹配，与 DFAScanner 的行为相同。
+ * 状态按 CompiledDFA.breadthFirstOrder() 重新编号，同一个 DFA 每次生成的代码相同。
+ */
+public class JavaCodeGenerator {
+
+    // 每个字符串常量最多的字符数，每个字符在常量池中最多占 3 个字节，不超过 65535 字节的上限
+    private static final int CHUNK_SIZE = 16000;
+    // 源代码中每行的字符数
+    private static final int LINE_CHARS = 16;
+    // 游程长度和值都用一个 char 保存
+    private static final int MAX_VALUE = 0xfffe;
+
+    private final CompiledDFA dfa;
+    private final String packageName;
+    private final String className;
+    private final List<String> tokenNames;
+
+    private JavaCodeGenerator(CompiledDFA dfa, String packageName, String className, List<String> tokenNames) {
+        this.dfa = dfa;
+        this.packageName = packageName;
+        this.className = className;
+        this.tokenNames = tokenNames;
+    }
+
+    /**
+     * 生成 Java 源代码
+     * @param dfa
+     * @param packageName 包名，null 或空串表示默认包
+     * @param className 类名
+     * @param tokenNames 每条规则的记号类型常量名，按规则编号排列，每个名字都会生成常量；null 时使用 RULE_0、RULE_1...
+     * @return
+     */
+    public static String generate(CompiledDFA dfa, String packageName, String className, List<String> tokenNames) {
+        if (packageName != null && !packageName.isEmpty()
+                && !packageName.matches("[A-Za-z_$][A-Za-z0-9_$]*(\\.[A-Za-z_$][A-Za-z0-9_$]*)*")) {
+            throw new RuntimeException("不是合法的包名：" + packageName);
+        }
+        if (!className.matches("[A-Za-z_$][A-Za-z0-9_$]*")) {
+            throw new RuntimeException("不是合法的类名：" + className);
+        }
+        if (dfa.getStateCount() > MAX_VALUE || dfa.getClassCount() > MAX_VALUE) {
+            throw new RuntimeException("DFA 太大，无法生成 Java 代码：" + dfa.getStateCount() + "个状态");
+        }
+        int ruleCount = 0;
+        for (int s = 0; s < dfa.getStateCount(); s++) {
+            if (dfa.isAccept(s)) {
+                ruleCount = Math.max(ruleCount, dfa.getToken(s) + 1);
+            }
+        }
+        //被前面的规则完全覆盖的规则在 DFA 中没有接受态，仍然生成常量，使用它的代码可以编译
+        if (tokenNames != null) {
+            ruleCount = Math.max(ruleCount, tokenNames.size());
+        }
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < Math.max(ruleCount, 1); i++) {
+            String name = tokenNames != null && i < tokenNames.size() ? tokenNames.get(i) : "RULE_" + i;
+            if (!name.matches("[A-Za-z_$][A-Za-z0-9_$]*") || "EOF".equals(name) || "ERROR".equals(name)
+                    || names.contains(name)) {
+                throw new RuntimeException("不是合法的记号类型名：" + name);
+            }
+            names.add(name);
+        }
+        return new JavaCodeGenerator(dfa, packageName, className, names).toCode();
+    }
+
+    private String toCode() {
+        int n = dfa.getStateCount();
+        int k = dfa.getClassCount();
+        int[] order = dfa.breadthFirstOrder();
+        int[] renumber = new int[n];
+        for (int i = 0; i < n; i++) {
+            renumber[order[i]] = i;
+        }
+        //表中的值都加 1，使 -1 变为 0
+        int[] cmap = new int[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            cmap[c] = dfa.getAlphabet().classOf(c) + 1;
+        }
+        int[] trans = new int[n * k];
+        int[] accept = new int[n];
+        for (int i = 0; i < n; i++) {
+            int s = order[i];
+            for (int cls = 0; cls < k; cls++) {
+                int t = dfa.getTarget(s, cls);
+                trans[i * k + cls] = t < 0 ? 0 : renumber[t] + 1;
+            }
+            //单个正则表达式的接受态没有规则编号，记为规则 0
+            accept[i] = dfa.isAccept(s) ? Math.max(dfa.getToken(s), 0) + 1 : 0;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("/* 由 DFA 生成的词法分析器，请勿手工修改。").append(n).append(" 个状态，")
+                .append(k).append(" 个字符等价类。 */\n");
+        if (packageName != null && !packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("import java.io.IOException;\n");
+        sb.append("import java.io.Reader;\n");
+        sb.append("import java.util.Arrays;\n\n");
+        sb.append("public class ").append(className).append(" {\n\n");
+        sb.append("    // 输入结束\n");
+        sb.append("    public static final int EOF = -1;\n");
+        sb.append("    // 当前位置没有任何规则能匹配，记号为一个字符\n");
+        sb.append("    public static final int ERROR = -2;\n");
+        sb.append("    // 记号类型，即规则编号\n");
+        for (int i = 0; i < tokenNames.size(); i++) {
+            sb.append("    public static final int ").append(tokenNames.get(i)).append(" = ").append(i).append(";\n");
+        }
+        sb.append('\n');
+        sb.append("    private static final int START_STATE = 0;\n");
+        sb.append("    private static final int CLASS_COUNT = ").append(k).append(";\n");
+        sb.append("    private static final int DEFAULT_BUFFER_SIZE = 8192;\n\n");
+        sb.append("    // 以下各表为游程编码：(长度, 值 + 1) 成对排列\n");
+        sb.append("    // 字符 => 等价类 + 1，0 表示该字符不出现在任何边上\n");
+        appendPacked(sb, "CMAP_PACKED", cmap);
+        sb.append("    // 转换表 TRANS[state * CLASS_COUNT + cls] = 目的状态 + 1，0 表示失败\n");
+        appendPacked(sb, "TRANS_PACKED", trans);
+        sb.append("    // 状态 => 接受的规则编号 + 1，0 表示非接受态\n");
+        appendPacked(sb, "ACCEPT_PACKED", accept);
+        sb.append("    private static final char[] CMAP = unpack(CMAP_PACKED, ").append(cmap.length).append(");\n");
+        sb.append("    private static final char[] TRANS = unpack(TRANS_PACKED, ").append(trans.length).append(");\n");
+        sb.append("    private static final char[] ACCEPT = unpack(ACCEPT_PACKED, ").append(accept.length).append(");\n");
+        sb.append(SCANNER.replace("$CLASS", className));
+        return sb.toString();
+    }
+
+    /**
+     * 游程编码后按 CHUNK_SIZE 分为多个字符串常量
+     */
+    private static void appendPacked(StringBuilder sb, String name, int[] values) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        int i = 0;
+        while (i < values.length) {
+            int j = i;
+            while (j < values.length && values[j] == values[i] && j - i < MAX_VALUE) {
+                j++;
+            }
+            chunk.add(escape(j - i));
+            chunk.add(escape(values[i]));
+            if (chunk.size() >= CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+            i = j;
+        }
+        if (!chunk.isEmpty() || chunks.isEmpty()) {
+            chunks.add(chunk);
+        }
+        sb.append("    private static final String[] ").append(name).append(" = {\n");
+        for (int c = 0; c < chunks.size(); c++) {
+            List<String> chars = chunks.get(c);
+            sb.append("        \"");
+            for (int m = 0; m < chars.size(); m++) {
+                if (m > 0 && m % LINE_CHARS == 0) {
+                    sb.append("\"\n        + \"");
+                }
+                sb.append(chars.get(m));
+            }
+            sb.append(c + 1 < chunks.size() ? "\",\n" : "\"\n");
+        }
+        sb.append("    };\n\n");
+    }
+
+    /**
+     * 字符在 Java 字符串字面量中的转义形式。
+     * 不超过 0377 的用八进制转义，其余用 \\uXXXX；\\u000a 之类在编译时会先被替换为换行、引号，不能用于小的值
+     */
+    private static String escape(int c) {
+        if (c <= 0377) {
+            return String.format("\\%03o", c);
+        }
+        return String.format("\\u%04x", c);
+    }
+
+    // 与 DFA 无关的扫描代码
+    private static final String SCANNER = String.join("\n",
+            "",
+            "    private static char[] unpack(String[] packed, int size) {",
+            "        char[] result = new char[size];",
+            "        int j = 0;",
+            "        for (String s : packed) {",
+            "            for (int i = 0; i < s.length(); i += 2) {",
+            "                int count = s.charAt(i);",
+            "                char value = s.charAt(i + 1);",
+            "                Arrays.fill(result, j, j + count, value);",
+            "                j += count;",
+            "            }",
+            "        }",
+            "        return result;",
+            "    }",
+            "",
+            "    private final Reader reader;",
+            "    // 滑动缓冲区，[start, limit) 为尚未消耗的字符",
+            "    private char[] buffer = new char[DEFAULT_BUFFER_SIZE];",
+            "    private int start;",
+            "    private int limit;",
+            "    private boolean eof;",
+            "    // buffer[0] 在整个输入中的偏移",
+            "    private long bufferOffset;",
+            "",
+            "    // 当前记号",
+            "    private int tokenType;",
+            "    private long tokenOffset;",
+            "    private int tokenStart;",
+            "    private int tokenLength;",
+            "",
+            "    public $CLASS(Reader reader) {",
+            "        this.reader = reader;",
+            "    }",
+            "",
+            "    /**",
+            "     * 读取下一个记号。最长匹配：一直走到 DFA 失败为止，再回退到最后一次经过接受态的位置",
+            "     * @return 记号类型，输入结束返回 EOF，没有规则能匹配时返回 ERROR 并跳过一个字符",
+            "     * @throws IOException",
+            "     */",
+            "    public int nextToken() throws IOException {",
+            "        if (start == limit && !fill()) {",
+            "            tokenType = EOF;",
+            "            tokenOffset = bufferOffset + start;",
+            "            tokenStart = start;",
+            "            tokenLength = 0;",
+            "            return EOF;",
+            "        }",
+            "        int state = START_STATE;",
+            "        int lastAccept = -1;",
+            "        int lastToken = ERROR;",
+            "        int pos = start;",
+            "        while (true) {",
+            "            if (pos == limit) {",
+            "                //缓冲区用完，fill() 可能移动缓冲区内容",
+            "                int oldStart = start;",
+            "                boolean more = fill();",
+            "                int shift = oldStart - start;",
+            "                pos -= shift;",
+            "                if (lastAccept >= 0) {",
+            "                    lastAccept -= shift;",
+            "                }",
+            "                if (!more) {",
+            "                    break;",
+            "                }",
+            "            }",
+            "            int cls = CMAP[buffer[pos]] - 1;",
+            "            if (cls < 0) {",
+            "                break;",
+            "            }",
+            "            state = TRANS[state * CLASS_COUNT + cls] - 1;",
+            "            if (state < 0) {",
+            "                break;",
+            "            }",
+            "            pos++;",
+            "            if (ACCEPT[state] != 0) {",
+            "                lastAccept = pos;",
+            "                lastToken = ACCEPT[state] - 1;",
+            "            }",
+            "        }",
+            "        tokenStart = start;",
+            "        tokenOffset = bufferOffset + start;",
+            "        if (lastAccept <= start) {",
+            "            tokenType = ERROR;",
+            "            tokenLength = 1;",
+            "        } else {",
+            "            tokenType = lastToken;",
+            "            tokenLength = lastAccept - start;",
+            "        }",
+            "        start += tokenLength;",
+            "        return tokenType;",
+            "    }",
+            "",
+            "    /**",
+            "     * 读取更多输入。会把 [start, limit) 移到缓冲区开头，移动后 start 为 0",
+            "     * @return 是否读到了新的字符",
+            "     * @throws IOException",
+            "     */",
+            "    private boolean fill() throws IOException {",
+            "        if (eof) {",
+            "            return false;",
+            "        }",
+            "        if (start > 0) {",
+            "            System.arraycopy(buffer, start, buffer, 0, limit - start);",
+            "            bufferOffset += start;",
+            "            limit -= start;",
+            "            start = 0;",
+            "        }",
+            "        if (limit == buffer.length) {",
+            "            buffer = Arrays.copyOf(buffer, buffer.length * 2);",
+            "        }",
+            "        int n;",
+            "        do {",
+            "            n = reader.read(buffer, limit, buffer.length - limit);",
+            "        } while (n == 0);",
+            "        if (n < 0) {",
+            "            eof = true;",
+            "            return false;",
+            "        }",
+            "        limit += n;",
+            "        return true;",
+            "    }",
+            "",
+            "    public int getTokenType() {",
+            "        return tokenType;",
+            "    }",
+            "",
+            "    /**",
+            "     * 当前记号在整个输入中的偏移（字符数）",
+            "     */",
+            "    public long getTokenOffset() {",
+            "        return tokenOffset;",
+            "    }",
+            "",
+            "    public int getTokenLength() {",
+            "        return tokenLength;",
+            "    }",
+            "",
+            "    public String getTokenText() {",
+            "        return new String(buffer, tokenStart, tokenLength);",
+            "    }",
+            "}",
+            "");
+}
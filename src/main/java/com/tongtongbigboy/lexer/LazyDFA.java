@@ -0,0 +1,239 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.Arrays;
+
+/**
+ * 延迟构造的 DFA（类似 RE2 的做法）。
+ * 不预先进行完整的子集构造，匹配时遇到还没有计算过的转换，才由 NFA 状态集合求出目的状态并缓存。
+ * 只有输入真正到达的 DFA 状态才会被构造，对 (a|b)*a(a|b)(a|b)... 这类完整 DFA 呈指数增长的正则表达式，
+ * 构造的状态数不超过输入长度。
+ *
+ * 缓存的状态数有上限，满了就清空缓存，从当前状态重新开始构造，所以内存占用有界。
+ * 缓存会在匹配时被修改，匹配方法加锁，可以在多个线程间共享。
+ */
+public class LazyDFA implements AutomatonMatcher {
+
+    // 默认缓存状态数上限
+    public static final int DEFAULT_MAX_STATES = 4096;
+    // 转换还没有计算
+    private static final int UNKNOWN = -2;
+    // 失败，即到达空集
+    private static final int DEAD = -1;
+
+    private final CompactNFA nfa;
+    private final Alphabet alphabet;
+    private final int classCount;
+    private final int maxStates;
+    // 开始状态对应的 NFA 状态集合
+    private final int[] startSet;
+
+    // 已构造的 DFA 状态，编号 => NFA 状态集合
+    private StateSetTable sets;
+    // 转换表，table[state * classCount + cls]
+    private int[] table;
+    // 状态 => 接受的规则编号，-1 表示非接受态
+    private int[] tokens;
+    // 缓存清空的次数
+    private int flushCount;
+
+    // 计算转换时使用的缓冲区
+    private final boolean[] marks;
+    private final int[] buffer;
+    private final boolean[] moveMarks;
+    private final int[] move;
+
+    private LazyDFA(CompactNFA nfa, int maxStates) {
+        this.nfa = nfa;
+        this.alphabet = nfa.getAlphabet();
+        this.classCount = alphabet.getClassCount();
+        this.maxStates = maxStates;
+        int n = nfa.getStateCount();
+        this.marks = new boolean[n];
+        this.buffer = new int[n];
+        this.moveMarks = new boolean[n];
+        this.move = new int[n];
+        this.startSet = nfa.closure(new int[]{nfa.getStartState()}, 1, marks, buffer);
+        this.table = new int[Math.min(maxStates, 64) * classCount];
+        this.tokens = new int[Math.min(maxStates, 64)];
+        reset();
+    }
+
+    public static LazyDFA create(NFAGraph nfaGraph) {
+        return create(CompactNFA.create(nfaGraph), DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * @param nfa
+     * @param maxStates 缓存状态数上限，至少为 2
+     * @return
+     */
+    public static LazyDFA create(CompactNFA nfa, int maxStates) {
+        if (maxStates < 2) {
+            throw new RuntimeException("缓存状态数上限至少为2：" + maxStates);
+        }
+        return new LazyDFA(nfa, maxStates);
+    }
+
+    /**
+     * 清空缓存，只保留开始状态（编号 0）
+     */
+    private void reset() {
+        sets = new StateSetTable();
+        addState(startSet);
+    }
+
+    /**
+     * 加入一个新的 DFA 状态
+     * @param set 有序的 NFA 状态下标集合，不在缓存中
+     * @return 状态编号
+     */
+    private int addState(int[] set) {
+        int id = sets.intern(set);
+        if (id == tokens.length) {
+            int capacity = Math.min(tokens.length * 2, maxStates);
+            tokens = Arrays.copyOf(tokens, capacity);
+            table = Arrays.copyOf(table, capacity * classCount);
+        }
+        Arrays.fill(table, id * classCount, (id + 1) * classCount, UNKNOWN);
+        int token = -1;
+        for (int state : set) {
+            int t = nfa.getToken(state);
+            if (t >= 0 && (token < 0 || t < token)) {
+                token = t;
+            }
+        }
+        tokens[id] = token;
+        return id;
+    }
+
+    /**
+     * 单步转换，转换没有计算过时计算并缓存。
+     * 注意缓存满时会被清空，除了返回值和开始状态，之前得到的状态编号都会失效。
+     * @param state 当前状态
+     * @param c 输入字符
+     * @return 下一个状态，-1 表示失败
+     */
+    public synchronized int next(int state, char c) {
+        return step(state, c);
+    }
+
+    private int step(int state, char c) {
+        int cls = alphabet.classOf(c);
+        if (cls < 0) {
+            return DEAD;
+        }
+        int target = table[state * classCount + cls];
+        return target != UNKNOWN ? target : computeNext(state, cls);
+    }
+
+    private int computeNext(int state, int cls) {
+        //当前状态集合经过等价类 cls 到达的 NFA 状态，去重
+        int size = 0;
+        for (int s : sets.get(state)) {
+            for (int j = nfa.getEdgeStart(s); j < nfa.getEdgeEnd(s); j++) {
+                int t = nfa.getEdgeTarget(j);
+                if (nfa.getEdgeLabel(j) == cls && !moveMarks[t]) {
+                    moveMarks[t] = true;
+                    move[size++] = t;
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            moveMarks[move[i]] = false;
+        }
+        int target;
+        if (size == 0) {
+            target = DEAD;
+        } else {
+            int[] set = nfa.closure(move, size, marks, buffer);
+            target = sets.find(set);
+            if (target < 0) {
+                if (sets.size() >= maxStates) {
+                    //缓存已满，清空后从目的状态继续，当前状态的这条转换不再记录
+                    flushCount++;
+                    reset();
+                    return addState(set);
+                }
+                target = addState(set);
+            }
+        }
+        table[state * classCount + cls] = target;
+        return target;
+    }
+
+    @Override
+    public synchronized boolean matches(CharSequence input) {
+        int state = 0;
+        int length = input.length();
+        for (int i = 0; i < length && state >= 0; i++) {
+            state = step(state, input.charAt(i));
+        }
+        return state >= 0 && tokens[state] >= 0;
+    }
+
+    @Override
+    public synchronized int lookingAt(CharSequence input, int from) {
+        return longestMatch(input, from);
+    }
+
+    private int longestMatch(CharSequence input, int from) {
+        int state = 0;
+        int lastAccept = tokens[state] >= 0 ? from : -1;
+        int length = input.length();
+        for (int i = from; i < length; i++) {
+            state = step(state, input.charAt(i));
+            if (state < 0) {
+                break;
+            }
+            if (tokens[state] >= 0) {
+                lastAccept = i + 1;
+            }
+        }
+        return lastAccept;
+    }
+
+    /**
+     * 整个查找只加一次锁，查找过程见 AutomatonMatcher.find
+     */
+    @Override
+    public synchronized long find(CharSequence input, int from) {
+        return AutomatonMatcher.super.find(input, from);
+    }
+
+    public synchronized boolean isAccept(int state) {
+        return tokens[state] >= 0;
+    }
+
+    /**
+     * 接受态接受的规则编号
+     * @param state
+     * @return 非接受态返回 -1
+     */
+    public synchronized int getToken(int state) {
+        return tokens[state];
+    }
+
+    public int getStartState() {
+        return 0;
+    }
+
+    public int getMaxStates() {
+        return maxStates;
+    }
+
+    /**
+     * 当前缓存的状态数
+     * @return
+     */
+    public synchronized int getCachedStateCount() {
+        return sets.size();
+    }
+
+    /**
+     * 缓存清空的次数，次数很多说明上限太小，或者该正则表达式不适合用 DFA 匹配
+     * @return
+     */
+    public synchronized int getFlushCount() {
+        return flushCount;
+    }
+}
@@ -0,0 +1,122 @@
+package com.tongtongbigboy.lexer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 词法规则文件（.xlex），格式：
+ * <pre>
+ * # 注释
+ * %package com.example.lexer
+ * %class MyLexer
+ * IF      if
+ * IDENT   [a-zA-Z_][a-zA-Z0-9_]*
+ * NUMBER  [0-9]+
+ * </pre>
+ * 每条规则一行，记号类型名和正则表达式之间用空白分隔，正则表达式为该行剩余部分（去掉首尾空白）。
+ * 规则按出现顺序编号，同样长度的匹配编号小的优先。
+ * %class 省略时使用文件名，%package 省略时为默认包。
+ */
+public class LexerSpec {
+
+    private final String packageName;
+    private final String className;
+    private final List<String> tokenNames;
+    private final List<String> patterns;
+
+    private LexerSpec(String packageName, String className, List<String> tokenNames, List<String> patterns) {
+        this.packageName = packageName;
+        this.className = className;
+        this.tokenNames = tokenNames;
+        this.patterns = patterns;
+    }
+
+    /**
+     * 读取规则文件，文件为 UTF-8 编码
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static LexerSpec read(Path path) throws IOException {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String defaultClassName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        try {
+            return parse(Files.readAllLines(path, StandardCharsets.UTF_8), defaultClassName);
+        } catch (RuntimeException e) {
+            throw new RuntimeException(path + "：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解析规则文件的内容
+     * @param lines
+     * @param defaultClassName 没有 %class 时使用的类名
+     * @return
+     */
+    public static LexerSpec parse(List<String> lines, String defaultClassName) {
+        String packageName = null;
+        String className = defaultClassName;
+        List<String> tokenNames = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 2);
+            if (parts.length < 2) {
+                throw new RuntimeException("第" + (i + 1) + "行缺少正则表达式：" + line);
+            }
+            if ("%package".equals(parts[0])) {
+                packageName = parts[1];
+            } else if ("%class".equals(parts[0])) {
+                className = parts[1];
+            } else if (parts[0].startsWith("%")) {
+                throw new RuntimeException("第" + (i + 1) + "行无法识别的指令：" + parts[0]);
+            } else if (tokenNames.contains(parts[0])) {
+                throw new RuntimeException("第" + (i + 1) + "行记号类型重复：" + parts[0]);
+            } else {
+                tokenNames.add(parts[0]);
+                patterns.add(parts[1]);
+            }
+        }
+        if (patterns.isEmpty()) {
+            throw new RuntimeException("没有任何规则");
+        }
+        return new LexerSpec(packageName, className, Collections.unmodifiableList(tokenNames),
+                Collections.unmodifiableList(patterns));
+    }
+
+    /**
+     * @return 包名，默认包为 null
+     */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * 记号类型名，下标即规则编号
+     * @return
+     */
+    public List<String> getTokenNames() {
+        return tokenNames;
+    }
+
+    /**
+     * 正则表达式，下标即规则编号
+     * @return
+     */
+    public List<String> getPatterns() {
+        return patterns;
+    }
+}
@@ -0,0 +1,290 @@
+package com.tongtongbigboy.lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 编译后 DFA 的二进制文件格式，以及直接在文件内容上匹配的匹配器。
+ *
+ * 规则集只需编译一次写入文件，之后用 FileChannel 内存映射加载，不需要解析、也不重建任何对象，
+ * 匹配时直接读映射内存中的表，加载时间与 DFA 大小无关（校验和除外）。
+ *
+ * 文件格式，所有字段都是大端的 int：
+ * <pre>
+ * 0    魔数 0x58444641（"XDFA"）
+ * 4    版本号
+ * 8    状态数 n
+ * 12   等价类数 k
+ * 16   开始状态
+ * 20   字符区间数 r
+ * 24   0..255 的直接查找表，256 项，-1 表示不属于任何等价类
+ *      区间开始 starts[r]、区间结束 ends[r]、区间所属的等价类 classes[r]，按开始字符排序
+ *      接受表 tokens[n]，接受的规则编号，-1 表示非接受态
+ *      转换表 table[n * k]，-1 表示失败
+ *      CRC32 校验和，覆盖之前的所有字节
+ * </pre>
+ * 匹配器不可变，可以在多个线程间共享。
+ */
+public class MappedDFA implements AutomatonMatcher {
+
+    public static final int MAGIC = 0x58444641;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 6;
+    private static final int DIRECT_SIZE = 256;
+
+    // 整个文件内容按 int 访问
+    private final IntBuffer data;
+    private final int stateCount;
+    private final int classCount;
+    private final int startState;
+    private final int rangeCount;
+    // 各部分在 data 中的位置
+    private final int startsOffset;
+    private final int endsOffset;
+    private final int classesOffset;
+    private final int tokensOffset;
+    private final int tableOffset;
+
+    private MappedDFA(IntBuffer data) {
+        this.data = data;
+        this.stateCount = data.get(2);
+        this.classCount = data.get(3);
+        this.startState = data.get(4);
+        this.rangeCount = data.get(5);
+        this.startsOffset = HEADER_INTS + DIRECT_SIZE;
+        this.endsOffset = startsOffset + rangeCount;
+        this.classesOffset = endsOffset + rangeCount;
+        this.tokensOffset = classesOffset + rangeCount;
+        this.tableOffset = tokensOffset + stateCount;
+    }
+
+    /**
+     * 把 DFA 写入文件
+     * @param dfaGraph 一般是 translateMinDFA() 的结果
+     * @param path
+     * @throws IOException
+     */
+    public static void write(DFAGraph dfaGraph, Path path) throws IOException {
+        write(CompiledDFA.create(dfaGraph), path);
+    }
+
+    public static void write(CompiledDFA dfa, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(toBytes(dfa));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * 序列化为字节数组
+     * @param dfa
+     * @return
+     */
+    public static byte[] toBytes(CompiledDFA dfa) {
+        int n = dfa.getStateCount();
+        int k = dfa.getClassCount();
+        Alphabet alphabet = dfa.getAlphabet();
+        //收集所有等价类的区间，按开始字符排序
+        List<int[]> ranges = new ArrayList<>();
+        for (int cls = 0; cls < k; cls++) {
+            int[] r = alphabet.getRanges(cls);
+            for (int i = 0; i < r.length; i += 2) {
+                ranges.add(new int[]{r[i], r[i + 1], cls});
+            }
+        }
+        ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int r = ranges.size();
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (HEADER_INTS + DIRECT_SIZE + 3 * r + n + n * k + 1));
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(n);
+        buffer.putInt(k);
+        buffer.putInt(dfa.getStartState());
+        buffer.putInt(r);
+        for (int c = 0; c < DIRECT_SIZE; c++) {
+            buffer.putInt(alphabet.classOf(c));
+        }
+        for (int[] range : ranges) {
+            buffer.putInt(range[0]);
+        }
+        for (int[] range : ranges) {
+            buffer.putInt(range[1]);
+        }
+        for (int[] range : ranges) {
+            buffer.putInt(range[2]);
+        }
+        for (int s = 0; s < n; s++) {
+            //单个正则表达式的接受态没有规则编号，记为规则 0
+            buffer.putInt(dfa.isAccept(s) ? Math.max(dfa.getToken(s), 0) : -1);
+        }
+        for (int s = 0; s < n; s++) {
+            for (int cls = 0; cls < k; cls++) {
+                buffer.putInt(dfa.getTarget(s, cls));
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * 内存映射加载，并检查校验和
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static MappedDFA load(Path path) throws IOException {
+        return load(path, true);
+    }
+
+    /**
+     * 内存映射加载。映射在文件关闭后仍然有效，直到匹配器被回收
+     * @param path
+     * @param verify 是否检查校验和，需要读一遍整个文件；文件可信时可以跳过
+     * @return
+     * @throws IOException
+     */
+    public static MappedDFA load(Path path, boolean verify) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), verify);
+        }
+    }
+
+    /**
+     * 直接在缓冲区上匹配，不复制
+     * @param buffer 从 position 到 limit 为文件内容
+     * @param verify 是否检查校验和
+     * @return
+     */
+    public static MappedDFA wrap(ByteBuffer buffer, boolean verify) {
+        ByteBuffer bytes = buffer.slice();
+        int size = bytes.remaining();
+        if (size < 4 * (HEADER_INTS + DIRECT_SIZE + 1) || size % 4 != 0) {
+            throw new RuntimeException("DFA 文件已损坏：长度为" + size);
+        }
+        IntBuffer data = bytes.asIntBuffer();
+        if (data.get(0) != MAGIC) {
+            throw new RuntimeException("不是 DFA 文件");
+        }
+        if (data.get(1) != VERSION) {
+            throw new RuntimeException("不支持的 DFA 文件版本：" + data.get(1));
+        }
+        long n = data.get(2);
+        long k = data.get(3);
+        long r = data.get(5);
+        if (n <= 0 || k < 0 || r < 0 || data.get(4) < 0 || data.get(4) >= n
+                || 4 * (HEADER_INTS + DIRECT_SIZE + 3 * r + n + n * k + 1) != size) {
+            throw new RuntimeException("DFA 文件已损坏：长度与头部不符");
+        }
+        if (verify) {
+            CRC32 crc = new CRC32();
+            ByteBuffer content = bytes.duplicate();
+            content.limit(size - 4);
+            crc.update(content);
+            if ((int) crc.getValue() != data.get(size / 4 - 1)) {
+                throw new RuntimeException("DFA 文件已损坏：校验和不符");
+            }
+        }
+        return new MappedDFA(data);
+    }
+
+    /**
+     * 获取字符所属的等价类，0..255 直接查表，其余字符二分查找
+     * @param c
+     * @return 等价类编号，-1 表示该字符不出现在任何边上
+     */
+    public int classOf(int c) {
+        if (c < DIRECT_SIZE) {
+            return data.get(HEADER_INTS + c);
+        }
+        int lo = 0;
+        int hi = rangeCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (c < data.get(startsOffset + mid)) {
+                hi = mid - 1;
+            } else if (c > data.get(endsOffset + mid)) {
+                lo = mid + 1;
+            } else {
+                return data.get(classesOffset + mid);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 单步转换
+     * @param state 当前状态
+     * @param c 输入字符
+     * @return 下一个状态，-1 表示失败
+     */
+    public int next(int state, char c) {
+        int cls = classOf(c);
+        return cls < 0 ? -1 : data.get(tableOffset + state * classCount + cls);
+    }
+
+    public boolean isAccept(int state) {
+        return data.get(tokensOffset + state) >= 0;
+    }
+
+    /**
+     * 接受态接受的规则编号
+     * @param state
+     * @return 非接受态返回 -1
+     */
+    public int getToken(int state) {
+        return data.get(tokensOffset + state);
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        int state = startState;
+        int length = input.length();
+        for (int i = 0; i < length && state >= 0; i++) {
+            state = next(state, input.charAt(i));
+        }
+        return state >= 0 && isAccept(state);
+    }
+
+    @Override
+    public int lookingAt(CharSequence input, int from) {
+        int state = startState;
+        int lastAccept = isAccept(state) ? from : -1;
+        int length = input.length();
+        for (int i = from; i < length; i++) {
+            state = next(state, input.charAt(i));
+            if (state < 0) {
+                break;
+            }
+            if (isAccept(state)) {
+                lastAccept = i + 1;
+            }
+        }
+        return lastAccept;
+    }
+
+    public int getStartState() {
+        return startState;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+}
@@ -0,0 +1,271 @@
+package com.tongtongbigboy.lexer;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * 把最小化后的 DFA 编译为 JVM 字节码，用 ASM 生成 GeneratedMatcher 的子类，
+ * 并通过 MethodHandles.Lookup.defineHiddenClass 加载为隐藏类（需要 JDK 15 以上）。
+ *
+ * 生成的方法是一个紧凑的循环：读一个字符、求等价类，再按当前状态和等价类两层 tableswitch 得到下一个状态，
+ * 转换表和接受态都编译为常量，不需要访问数组。
+ * 单个方法的字节码不能超过 64KB；超过 8000 字节的方法 HotSpot 默认不做 JIT 编译（-XX:-DontCompileHugeMethods），
+ * 解释执行反而比查表慢，所以 DFA 较大时 compile 返回 CompiledDFA 本身。
+ */
+public class MatcherGenerator implements Opcodes {
+
+    private static final String SUPER_NAME = "com/tongtongbigboy/lexer/GeneratedMatcher";
+    private static final String CLASS_NAME = "com/tongtongbigboy/lexer/GeneratedMatcher$Impl";
+    private static final String ALPHABET_DESC = "Lcom/tongtongbigboy/lexer/Alphabet;";
+    // 留一些余量，方法字节码上限为 65535
+    private static final int MAX_CODE_SIZE = 60000;
+    // HotSpot 的 HugeMethodLimit，超过时方法不会被 JIT 编译
+    private static final int HUGE_METHOD_LIMIT = 8000;
+
+    /**
+     * 编译匹配器，生成的方法太大、不会被 JIT 编译时返回 dfa 本身
+     * @param dfa
+     * @return
+     */
+    public static AutomatonMatcher compile(CompiledDFA dfa) {
+        if (estimateCodeSize(dfa) > HUGE_METHOD_LIMIT) {
+            return dfa;
+        }
+        return generate(dfa);
+    }
+
+    /**
+     * 生成字节码匹配器，不论大小，只要不超过方法字节码的上限
+     * @param dfa
+     * @return
+     */
+    public static GeneratedMatcher generate(CompiledDFA dfa) {
+        if (estimateCodeSize(dfa) > MAX_CODE_SIZE) {
+            throw new RuntimeException("DFA 太大，无法生成字节码：" + dfa.getStateCount() + "个状态");
+        }
+        byte[] bytes = toBytecode(dfa);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class, Alphabet.class));
+            return (GeneratedMatcher) constructor.invoke(dfa.getAlphabet());
+        } catch (Throwable e) {
+            throw new RuntimeException("加载生成的匹配器失败", e);
+        }
+    }
+
+    /**
+     * 估计较大的那个方法的字节码长度：每个状态两个 tableswitch 表项、一段内层 tableswitch 和一段进入代码
+     * @param dfa
+     * @return
+     */
+    private static long estimateCodeSize(CompiledDFA dfa) {
+        return 128 + (long) dfa.getStateCount() * (40 + 4L * dfa.getClassCount());
+    }
+
+    /**
+     * 生成类文件
+     * @param dfa
+     * @return
+     */
+    public static byte[] toBytecode(CompiledDFA dfa) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(V15, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, CLASS_NAME, null, SUPER_NAME,
+                new String[]{"com/tongtongbigboy/lexer/AutomatonMatcher"});
+
+        MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + ALPHABET_DESC + ")V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitVarInsn(ALOAD, 1);
+        init.visitMethodInsn(INVOKESPECIAL, SUPER_NAME, "<init>", "(" + ALPHABET_DESC + ")V", false);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        generateMatches(cw, dfa);
+        generateLookingAt(cw, dfa);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * boolean matches(CharSequence input)
+     * 局部变量：1 input，2 length，3 i，4 state
+     */
+    private static void generateMatches(ClassWriter cw, CompiledDFA dfa) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "matches", "(Ljava/lang/CharSequence;)Z", null, null);
+        mv.visitCode();
+        Label loop = new Label();
+        Label end = new Label();
+        Label fail = new Label();
+
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEINTERFACE, "java/lang/CharSequence", "length", "()I", true);
+        mv.visitVarInsn(ISTORE, 2);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 3);
+        pushInt(mv, dfa.getStartState());
+        mv.visitVarInsn(ISTORE, 4);
+
+        mv.visitLabel(loop);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitJumpInsn(IF_ICMPGE, end);
+        readClass(mv, 1, 3);
+        transitions(mv, dfa, 4, -1, -1, loop, fail);
+
+        //读完时返回是否为接受态
+        mv.visitLabel(end);
+        int n = dfa.getStateCount();
+        Label accept = new Label();
+        Label[] results = new Label[n];
+        for (int s = 0; s < n; s++) {
+            results[s] = dfa.isAccept(s) ? accept : fail;
+        }
+        mv.visitVarInsn(ILOAD, 4);
+        mv.visitTableSwitchInsn(0, n - 1, fail, results);
+        mv.visitLabel(accept);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(fail);
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * int lookingAt(CharSequence input, int from)
+     * 局部变量：1 input，2 from，3 length，4 i，5 lastAccept，6 state
+     */
+    private static void generateLookingAt(ClassWriter cw, CompiledDFA dfa) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "lookingAt", "(Ljava/lang/CharSequence;I)I", null, null);
+        mv.visitCode();
+        Label loop = new Label();
+        Label done = new Label();
+
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEINTERFACE, "java/lang/CharSequence", "length", "()I", true);
+        mv.visitVarInsn(ISTORE, 3);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitVarInsn(ISTORE, 4);
+        //开始状态是接受态时空串也是匹配
+        if (dfa.isAccept(dfa.getStartState())) {
+            mv.visitVarInsn(ILOAD, 2);
+        } else {
+            mv.visitInsn(ICONST_M1);
+        }
+        mv.visitVarInsn(ISTORE, 5);
+        pushInt(mv, dfa.getStartState());
+        mv.visitVarInsn(ISTORE, 6);
+
+        mv.visitLabel(loop);
+        mv.visitVarInsn(ILOAD, 4);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitJumpInsn(IF_ICMPGE, done);
+        readClass(mv, 1, 4);
+        transitions(mv, dfa, 6, 4, 5, loop, done);
+
+        mv.visitLabel(done);
+        mv.visitVarInsn(ILOAD, 5);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 栈顶留下 classOf(input.charAt(i))，并且 i++
+     */
+    private static void readClass(MethodVisitor mv, int inputVar, int indexVar) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, inputVar);
+        mv.visitVarInsn(ILOAD, indexVar);
+        mv.visitMethodInsn(INVOKEINTERFACE, "java/lang/CharSequence", "charAt", "(I)C", true);
+        mv.visitMethodInsn(INVOKEVIRTUAL, SUPER_NAME, "classOf", "(C)I", false);
+        mv.visitIincInsn(indexVar, 1);
+    }
+
+    /**
+     * 按状态、等价类两层 tableswitch 求下一个状态，写入 stateVar 后跳回 loop，没有转换时跳到 fail。
+     * 只有一个循环入口，JIT 可以正常编译（每个状态一段代码互相跳转会形成不可归约的控制流，C2 不编译）。
+     * @param stateVar 状态变量
+     * @param indexVar 下标变量，进入接受态时把它写入 acceptVar；-1 表示不记录
+     * @param acceptVar 最后一次接受的位置
+     */
+    private static void transitions(MethodVisitor mv, CompiledDFA dfa, int stateVar, int indexVar, int acceptVar,
+                                    Label loop, Label fail) {
+        int n = dfa.getStateCount();
+        int k = dfa.getClassCount();
+        //栈顶为等价类，先存起来
+        int classVar = stateVar + 1;
+        mv.visitVarInsn(ISTORE, classVar);
+        if (k == 0) {
+            mv.visitJumpInsn(GOTO, fail);
+            return;
+        }
+        Label[] states = newLabels(n);
+        mv.visitVarInsn(ILOAD, stateVar);
+        mv.visitTableSwitchInsn(0, n - 1, fail, states);
+        // 进入目的状态 t 的代码，全方法共用
+        Label[] enter = new Label[n];
+        for (int s = 0; s < n; s++) {
+            mv.visitLabel(states[s]);
+            Label[] targets = new Label[k];
+            for (int cls = 0; cls < k; cls++) {
+                int target = dfa.getTarget(s, cls);
+                if (target < 0) {
+                    targets[cls] = fail;
+                } else {
+                    if (enter[target] == null) {
+                        enter[target] = new Label();
+                    }
+                    targets[cls] = enter[target];
+                }
+            }
+            mv.visitVarInsn(ILOAD, classVar);
+            mv.visitTableSwitchInsn(0, k - 1, fail, targets);
+        }
+        for (int t = 0; t < n; t++) {
+            if (enter[t] == null) {
+                continue;
+            }
+            mv.visitLabel(enter[t]);
+            pushInt(mv, t);
+            mv.visitVarInsn(ISTORE, stateVar);
+            if (indexVar >= 0 && dfa.isAccept(t)) {
+                mv.visitVarInsn(ILOAD, indexVar);
+                mv.visitVarInsn(ISTORE, acceptVar);
+            }
+            mv.visitJumpInsn(GOTO, loop);
+        }
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static Label[] newLabels(int n) {
+        Label[] labels = new Label[n];
+        for (int i = 0; i < n; i++) {
+            labels[i] = new Label();
+        }
+        return labels;
+    }
+}
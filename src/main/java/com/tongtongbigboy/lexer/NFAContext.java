@@ -0,0 +1,25 @@
+package com.tongtongbigboy.lexer;
+
+/**
+ * 一次编译的上下文，负责为 NFA 状态分配编号。
+ * 每次由正则表达式生成 NFA 时新建一个上下文，状态编号从 1 开始，互不影响，
+ * 因此多个线程可以同时编译不同的正则表达式。同一个上下文只能在一个线程中使用。
+ */
+public class NFAContext {
+
+    // 下一个状态编号
+    private int idGenerate = 1;
+
+    // 创建状态节点
+    public NFAState createState() {
+        return NFAState.create(idGenerate++);
+    }
+
+    /**
+     * 已经创建的状态个数
+     * @return
+     */
+    public int getStateCount() {
+        return idGenerate - 1;
+    }
+}
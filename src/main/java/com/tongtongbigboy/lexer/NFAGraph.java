@@ -1,6 +1,6 @@
 package com.tongtongbigboy.lexer;
 
-import java.util.List;
+import java.util.*;
 
 /**
  * 表示 NFA 对应的转换图
@@ -11,44 +11,79 @@ public class NFAGraph {
     // 结束状态节点，注意它不一定是终止状态，
     // 一般过程图的结束状态节点就不是终止状态，一般最后大转换图的结束状态才是终止状态。
     private NFAState endState;
+    // 所属的编译上下文，新状态节点都由它创建
+    private NFAContext context;
 
     private NFAGraph() {
     }
 
-    private NFAGraph(NFAState startState, NFAState endState) {
+    private NFAGraph(NFAContext context, NFAState startState, NFAState endState) {
+        this.context = context;
         this.startState = startState;
         this.endState = endState;
     }
 
     // 对应 Thompson 算法基础规则中的，遇到字符 a
-    public static NFAGraph createByPath(String path) {
+    public static NFAGraph createByPath(NFAContext context, String path) {
         // 创建开始和终止状态节点
-        NFAState newStart = NFAState.create();
-        NFAState newEnd = NFAState.create();
+        NFAState newStart = context.createState();
+        NFAState newEnd = context.createState();
         // 添加一条开始到终止状态节点的有向边
         newStart.addEdge(path, newEnd);
-        return new NFAGraph(newStart, newEnd);
+        return new NFAGraph(context, newStart, newEnd);
     }
 
 
     /**
      * 对应运算符[], [abA-C]
-     * @param charList 例子[abA-Z]对应charList{'a','b','A','B','C'}
+     * 只用两个状态，开始状态到终止状态之间每个字符区间一条边，标签为 "a" 或 "A-C"，
+     * 不再为每个字符创建一条边，[\u4e00-\u9fa5] 这样的大字符集合也只有一条边
+     * @param context 编译上下文
+     * @param ranges 字符区间 {lo0, hi0, lo1, hi1, ...}，闭区间，例子[abA-C]对应{'a','a','b','b','A','C'}
      * @return 返回字符范围对应的nfa
      */
-    public static NFAGraph createRange(List<Character> charList){
-        NFAState newStart = NFAState.create();
-        NFAState newEnd = NFAState.create();
-        for (Character ch : charList) {
-            NFAGraph nfaGraph = NFAGraph.createByPath(ch + "");
-            newStart.addEdge(NFAState.EPSILON,nfaGraph.getStartState());
-            nfaGraph.getEndState().addEdge(NFAState.EPSILON,newEnd);
+    public static NFAGraph createRange(NFAContext context, int[] ranges){
+        NFAState newStart = context.createState();
+        NFAState newEnd = context.createState();
+        for (int i = 0; i < ranges.length; i += 2) {
+            newStart.addEdge(rangeLabel(ranges[i], ranges[i + 1]), newEnd);
         }
-        return new NFAGraph(newStart,newEnd);
+        return new NFAGraph(context, newStart, newEnd);
+    }
+
+    /**
+     * 字符区间对应的边标签，单个字符就是字符本身，否则形如 a-z
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public static String rangeLabel(int lo, int hi) {
+        return lo == hi ? String.valueOf((char) lo) : (char) lo + "-" + (char) hi;
+    }
+
+    /**
+     * 把多条词法规则的 NFA 合并为一个：新建开始状态，用 ε有向边 连接每条规则的开始状态，
+     * 每条规则的结束状态设为终止状态，并记录规则编号（即在 rules 中的下标，越小优先级越高）。
+     * 合并后的转换图有多个终止状态，所以没有结束状态节点，getEndState() 返回 null。
+     * @param context 编译上下文，各条规则的 NFA 必须都属于它
+     * @param rules 各条规则的 NFA
+     * @return
+     */
+    public static NFAGraph createLexer(NFAContext context, List<NFAGraph> rules) {
+        NFAState newStart = context.createState();
+        for (int i = 0; i < rules.size(); i++) {
+            NFAGraph rule = rules.get(i);
+            checkContext(context, rule);
+            newStart.addEdge(NFAState.EPSILON, rule.startState);
+            rule.endState.setEnd(true);
+            rule.endState.setToken(i);
+        }
+        return new NFAGraph(context, newStart, null);
     }
 
     // 对应操作符 &; 对应 Thompson 算法归纳规则中的连接操作
     public void addSerial(NFAGraph nextGraph) {
+        checkContext(context, nextGraph);
         // 将本转换图的结束状态节点，添加一个 ε有向边 连接到下一个本转换图开始节点
         this.endState.addEdge(NFAState.EPSILON, nextGraph.startState);
         // 更新一个本转换图的结束状态节点，就得到一个新的转换图了。
@@ -57,9 +92,10 @@ public class NFAGraph {
 
     // 对应操作符 |; 对应 Thompson 算法归纳规则中的并操作
     public void addParallel(NFAGraph nextGraph) {
+        checkContext(context, nextGraph);
         // 创建新的开始和终止状态节点
-        NFAState newStart = NFAState.create();
-        NFAState newEnd = NFAState.create();
+        NFAState newStart = context.createState();
+        NFAState newEnd = context.createState();
         // 根据 Thompson 算法，我们要添加四条 ε有向边
         newStart.addEdge(NFAState.EPSILON, this.startState);
         newStart.addEdge(NFAState.EPSILON, nextGraph.startState);
@@ -81,8 +117,8 @@ public class NFAGraph {
     // 对应操作符 + 即一次以上
     public void repeatPlus() {
         // 创建新的开始和终止状态节点
-        NFAState newStart = NFAState.create();
-        NFAState newEnd = NFAState.create();
+        NFAState newStart = context.createState();
+        NFAState newEnd = context.createState();
         // 根据 Thompson 算法，我们要添加三条 ε有向边
         newStart.addEdge(NFAState.EPSILON, this.startState);
         this.endState.addEdge(NFAState.EPSILON, newEnd);
@@ -93,6 +129,110 @@ public class NFAGraph {
         this.endState = newEnd;
     }
 
+    /**
+     * 对应运算符 {m,n}，即 m 次到 n 次。
+     * 前 m 份串联；其余 n-m 份组成一条可选链，每一份之前都有 ε有向边 直接通往共同的结束状态，
+     * 即 x{2,4} 构造为 xx(ε|x(ε|x)) 而不是 xxx?x? ，状态数与 n 成线性关系，ε-closure 也不会随 n 变大。
+     * 需要的副本由 copy() 生成，最后一份使用本转换图自身。
+     * @param min 最少次数
+     * @param max 最多次数，-1 表示不限，即 {m,}
+     */
+    public void repeat(int min, int max) {
+        if (max == 0) {
+            //只能匹配空串
+            NFAState newStart = context.createState();
+            NFAState newEnd = context.createState();
+            newStart.addEdge(NFAState.EPSILON, newEnd);
+            this.startState = newStart;
+            this.endState = newEnd;
+            return;
+        }
+        int count = max < 0 ? Math.max(min, 1) : max;
+        //先复制，再修改
+        List<NFAGraph> pieces = new ArrayList<>();
+        for (int i = 0; i < count - 1; i++) {
+            pieces.add(copy());
+        }
+        pieces.add(new NFAGraph(context, startState, endState));
+        if (max < 0) {
+            //不限次数时最后一份改为闭包
+            NFAGraph last = pieces.get(count - 1);
+            if (min == 0) {
+                last.repeatStar();
+            } else {
+                last.repeatPlus();
+            }
+        }
+        //必须出现的部分串联
+        int mandatory = max < 0 ? count : min;
+        NFAState newStart;
+        NFAState current;
+        if (mandatory == 0) {
+            newStart = context.createState();
+            current = newStart;
+        } else {
+            newStart = pieces.get(0).startState;
+            for (int i = 1; i < mandatory; i++) {
+                pieces.get(i - 1).endState.addEdge(NFAState.EPSILON, pieces.get(i).startState);
+            }
+            current = pieces.get(mandatory - 1).endState;
+        }
+        //可选部分，每一份之前都可以直接跳到结束状态
+        if (max > min) {
+            NFAState newEnd = context.createState();
+            for (int i = min; i < max; i++) {
+                current.addEdge(NFAState.EPSILON, newEnd);
+                current.addEdge(NFAState.EPSILON, pieces.get(i).startState);
+                current = pieces.get(i).endState;
+            }
+            current.addEdge(NFAState.EPSILON, newEnd);
+            current = newEnd;
+        }
+        this.startState = newStart;
+        this.endState = current;
+    }
+
+    /**
+     * 复制本转换图，新状态节点由同一个编译上下文创建
+     * @return
+     */
+    public NFAGraph copy() {
+        Map<NFAState, NFAState> copies = new HashMap<>();
+        Deque<NFAState> deque = new ArrayDeque<>();
+        copies.put(startState, copyState(startState));
+        deque.addLast(startState);
+        while (!deque.isEmpty()) {
+            NFAState state = deque.removeFirst();
+            NFAState stateCopy = copies.get(state);
+            for (Map.Entry<String, Set<NFAState>> entry : state.getEdges().entrySet()) {
+                //按 id 顺序复制，编号与原转换图的顺序一致
+                List<NFAState> targets = new ArrayList<>(entry.getValue());
+                Collections.sort(targets);
+                for (NFAState target : targets) {
+                    NFAState targetCopy = copies.get(target);
+                    if (targetCopy == null) {
+                        targetCopy = copyState(target);
+                        copies.put(target, targetCopy);
+                        deque.addLast(target);
+                    }
+                    stateCopy.addEdge(entry.getKey(), targetCopy);
+                }
+            }
+        }
+        NFAState endCopy = copies.get(endState);
+        if (endCopy == null) {
+            endCopy = copyState(endState);
+        }
+        return new NFAGraph(context, copies.get(startState), endCopy);
+    }
+
+    private NFAState copyState(NFAState state) {
+        NFAState stateCopy = context.createState();
+        stateCopy.setEnd(state.isEnd());
+        stateCopy.setToken(state.getToken());
+        return stateCopy;
+    }
+
     // 对应0次
     public void zero() {
         // 添加 ε有向边
@@ -111,6 +251,17 @@ public class NFAGraph {
     }
 
 
+    // 不同上下文的状态编号会重复，不能合并到一个转换图中
+    private static void checkContext(NFAContext context, NFAGraph graph) {
+        if (graph.context != context) {
+            throw new RuntimeException("不能合并属于不同编译上下文的 NFA");
+        }
+    }
+
+    public NFAContext getContext() {
+        return context;
+    }
+
     public NFAState getStartState() {
         return startState;
     }
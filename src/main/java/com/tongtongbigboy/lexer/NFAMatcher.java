@@ -0,0 +1,173 @@
+package com.tongtongbigboy.lexer;
+
+/**
+ * NFA 模拟匹配器（Thompson 算法 / Pike VM），不需要子集构造。
+ * 每读入一个字符，把当前活动的 NFA 状态集合整体推进一步，推进时沿 ε 边深度优先遍历求 ε-closure。
+ * 活动状态集合用两个 SparseSet 交替保存，集合本身就是遍历的访问标记，每一步中每个状态最多加入、展开一次，
+ * 所以时间复杂度为 O(n·m)（n 为输入长度，m 为 NFA 状态数和边数），
+ * 匹配过程中除每次调用开始时创建的两个集合和遍历用的栈外不分配任何对象。
+ *
+ * 匹配器本身不可变，可以在多个线程间共享。
+ */
+public class NFAMatcher implements AutomatonMatcher {
+
+    private final CompactNFA nfa;
+    private final Alphabet alphabet;
+
+    private NFAMatcher(CompactNFA nfa) {
+        this.nfa = nfa;
+        this.alphabet = nfa.getAlphabet();
+    }
+
+    public static NFAMatcher create(NFAGraph nfaGraph) {
+        return new NFAMatcher(CompactNFA.create(nfaGraph));
+    }
+
+    public static NFAMatcher create(CompactNFA nfa) {
+        return new NFAMatcher(nfa);
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        SparseSet current = new SparseSet(nfa.getStateCount());
+        SparseSet next = new SparseSet(nfa.getStateCount());
+        int[] stack = new int[nfa.getStateCount()];
+        addClosure(current, stack, nfa.getStartState(), 0);
+        int length = input.length();
+        for (int i = 0; i < length && current.size() > 0; i++) {
+            step(current, next, stack, input.charAt(i));
+            SparseSet temp = current;
+            current = next;
+            next = temp;
+        }
+        return acceptIndex(current) >= 0;
+    }
+
+    @Override
+    public int lookingAt(CharSequence input, int from) {
+        SparseSet current = new SparseSet(nfa.getStateCount());
+        SparseSet next = new SparseSet(nfa.getStateCount());
+        int[] stack = new int[nfa.getStateCount()];
+        addClosure(current, stack, nfa.getStartState(), from);
+        int lastAccept = acceptIndex(current) >= 0 ? from : -1;
+        int length = input.length();
+        for (int i = from; i < length && current.size() > 0; i++) {
+            step(current, next, stack, input.charAt(i));
+            SparseSet temp = current;
+            current = next;
+            next = temp;
+            if (acceptIndex(current) >= 0) {
+                lastAccept = i + 1;
+            }
+        }
+        return lastAccept;
+    }
+
+    /**
+     * 从 from 开始查找最左的最长匹配。
+     * 每个活动状态附带到达它的匹配的开始位置；集合按开始位置从小到大的顺序加入，
+     * 同一个状态只保留开始位置最小的那一个，所以不会重复推进。
+     * 找到匹配后不再从新位置开始，并丢弃开始位置更靠后的状态。
+     */
+    @Override
+    public long find(CharSequence input, int from) {
+        SparseSet current = new SparseSet(nfa.getStateCount());
+        SparseSet next = new SparseSet(nfa.getStateCount());
+        int[] stack = new int[nfa.getStateCount()];
+        int length = input.length();
+        int matchStart = -1;
+        int matchEnd = -1;
+        for (int i = from; ; i++) {
+            //还没有找到匹配时，从位置 i 开始一个新的匹配，它的开始位置最大，排在最后
+            if (matchStart < 0) {
+                addClosure(current, stack, nfa.getStartState(), i);
+            }
+            int accept = acceptIndex(current);
+            if (accept >= 0) {
+                int start = current.getValue(accept);
+                if (matchStart < 0 || start < matchStart || (start == matchStart && i > matchEnd)) {
+                    matchStart = start;
+                    matchEnd = i;
+                }
+            }
+            if (i == length || current.size() == 0) {
+                break;
+            }
+            char c = input.charAt(i);
+            int cls = alphabet.classOf(c);
+            next.clear();
+            for (int k = 0; k < current.size(); k++) {
+                int start = current.getValue(k);
+                if (matchStart >= 0 && start > matchStart) {
+                    continue;
+                }
+                advance(next, stack, current.get(k), cls, start);
+            }
+            SparseSet temp = current;
+            current = next;
+            next = temp;
+        }
+        return matchStart < 0 ? -1 : ((long) matchStart << 32) | matchEnd;
+    }
+
+    /**
+     * 当前集合推进一个字符，结果放入 next
+     */
+    private void step(SparseSet current, SparseSet next, int[] stack, char c) {
+        next.clear();
+        int cls = alphabet.classOf(c);
+        if (cls < 0) {
+            return;
+        }
+        for (int k = 0; k < current.size(); k++) {
+            advance(next, stack, current.get(k), cls, current.getValue(k));
+        }
+    }
+
+    private void advance(SparseSet next, int[] stack, int state, int cls, int start) {
+        if (cls < 0) {
+            return;
+        }
+        for (int j = nfa.getEdgeStart(state); j < nfa.getEdgeEnd(state); j++) {
+            if (nfa.getEdgeLabel(j) == cls) {
+                addClosure(next, stack, nfa.getEdgeTarget(j), start);
+            }
+        }
+    }
+
+    /**
+     * 把 state 及其 ε-closure 中不在集合中的状态加入集合。
+     * 已在集合中的状态不再展开：它的闭包在它加入时已经加入，闭包互相重叠的目的状态也不会重复扫描
+     * @param stack 长度为状态数的栈，每个状态最多入栈一次
+     */
+    private void addClosure(SparseSet set, int[] stack, int state, int start) {
+        if (!set.add(state, start)) {
+            return;
+        }
+        int top = 0;
+        stack[top++] = state;
+        while (top > 0) {
+            int current = stack[--top];
+            for (int j = nfa.getEpsilonStart(current); j < nfa.getEpsilonEnd(current); j++) {
+                int target = nfa.getEpsilonTarget(j);
+                if (set.add(target, start)) {
+                    stack[top++] = target;
+                }
+            }
+        }
+    }
+
+    /**
+     * 集合中第一个终止状态的位置
+     * @param set
+     * @return 没有终止状态返回 -1
+     */
+    private int acceptIndex(SparseSet set) {
+        for (int k = 0; k < set.size(); k++) {
+            if (nfa.isEnd(set.get(k))) {
+                return k;
+            }
+        }
+        return -1;
+    }
+}
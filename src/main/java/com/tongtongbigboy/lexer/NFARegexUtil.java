@@ -3,6 +3,7 @@ package com.tongtongbigboy.lexer;
 import java.io.IOException;
 import java.util.*;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * 正则转nfa
@@ -22,159 +23,170 @@ public class NFARegexUtil {
     }};
 
     /**
-     * 后置单操作数运算符，例如闭包 (a)*,后置单操作数运算符不用考虑括号，遇到可直接计算
-     * 前置单操作数运算符，例如取反 !flag
+     * 通过 pattern 生成对应的 NFAGraph 转换图，使用新的编译上下文，状态编号从 1 开始
+     * @param pattern
+     * @return
      */
-    private static Set<Character> backSingleOps = new HashSet<Character>(){{
-        add('*');
-        add('?');
-        add('+');
-    }};
+    public static NFAGraph createNFAGraph(String pattern) {
+        return createNFAGraph(new NFAContext(), pattern);
+    }
 
     /**
-     * 通过 pattern 生成对应的 NFAGraph 转换图, 核心代码，代码逻辑类似处理算术表达式
+     * 通过 pattern 生成对应的 NFAGraph 转换图。
+     * 先由 RegexContext 解析为语法树，经 RegexSimplifier 化简（合并字符集合、嵌套的重复，提取公共前缀）后，
+     * 再按 Thompson 算法构造，化简减少的状态数见 RegexSimplifier.main
+     * @param context 编译上下文，状态节点由它创建
      * @param pattern
      * @return
      */
-    public static NFAGraph createNFAGraph(String pattern) {
-        char[] cs = pattern.toCharArray();
-        int n = pattern.length();
-        //运算符栈
-        Deque<Character> ops = new LinkedList<>();
-        //nfa栈
-        Deque<NFAGraph> graphs = new LinkedList<>();
-        for (int i = 0; i < n; i++) {
-            char ch = cs[i];
-            if (ch=='('){
-                /*
-                    例如(a)(b) => (a)&(b)
-                        a*()  => a*&(b)
-                        a()   => a&(b)
-                    可有可无
-                 */
-                if (i>0&&(cs[i-1]==')'||cs[i-1]=='*'||isNormalChar(cs[i-1]))){
-                    ops.addLast('&');
-                }
-                ops.addLast('(');
-            } else if (ch==')'){
-                /*
-                如果是)，从运算符栈中取出运算符，如果是(停下，否则进行计算。
-                 */
-                while (!ops.isEmpty()){
-                    char cha = ops.peekLast();
-                    if (cha=='('){
-                        ops.removeLast();
-                        break;
-                    } else {
-                        calc(graphs,ops);
-                    }
-                }
-            } else if (ch=='['){
-                List<Character> charList = new ArrayList<>();
-                int state = 0;
-                int index = i;
-                //一直读，直到]或已读完
-                while (++index<n&&(ch=cs[index])!=']'){
-                    switch (state){
-                        case 0:
-                            if (ch!='-'){
-                                state = 0;
-                                charList.add(ch);
-                            } else {//读到'-'，进入状态1
-                                state = 1;
-                            }
-                            break;
-                        case 1:
-                            //例如A-C，这里会将B、C加入charList
-                            char pre = charList.get(charList.size() - 1);
-                            for (int j = pre+1; j <= ch; j++) {
-                                charList.add((char)j);
-                            }
-                            state = 0;
-                            break;
-                    }
+    public static NFAGraph createNFAGraph(NFAContext context, String pattern) {
+        RegexContext regexContext = new RegexContext();
+        RegexNode node = new RegexSimplifier(regexContext).simplify(regexContext.parse(pattern));
+        return createNFAGraph(context, node);
+    }
+
+    /**
+     * 由语法树构造 NFA，不做化简
+     * @param context 编译上下文，状态节点由它创建
+     * @param node
+     * @return
+     */
+    public static NFAGraph createNFAGraph(NFAContext context, RegexNode node) {
+        return createNFAGraph(context, node, child -> createNFAGraph(context, child));
+    }
+
+    /**
+     * 由子节点的 NFA 构造语法树节点的 NFA，对应 Thompson 算法的基础规则和归纳规则
+     * @param context 编译上下文
+     * @param node
+     * @param children 构造子节点的 NFA，每次调用都要返回新的、归调用者所有的 NFA
+     * @return
+     */
+    static NFAGraph createNFAGraph(NFAContext context, RegexNode node, Function<RegexNode, NFAGraph> children) {
+        switch (node.getKind()) {
+            case RegexNode.CHARS:
+                return NFAGraph.createRange(context, node.getRanges());
+            case RegexNode.EPSILON:
+            case RegexNode.EMPTY: {
+                //没有边的两个状态，ε 再加一条 ε有向边
+                NFAGraph graph = NFAGraph.createRange(context, new int[0]);
+                if (node.getKind() == RegexNode.EPSILON) {
+                    graph.zero();
                 }
-                //读到字符串尾仍然未找到], 报错
-                if (index>=n){
-                    throw new RuntimeException("正则表达式缺少]");
-                } else {
-                    i=index;
-                    graphs.addLast(NFAGraph.createRange(charList));
+                return graph;
+            }
+            default:
+        }
+        NFAGraph graph = children.apply(node.getChild(0));
+        switch (node.getKind()) {
+            case RegexNode.CONCAT:
+                for (int i = 1; i < node.getChildCount(); i++) {
+                    graph.addSerial(children.apply(node.getChild(i)));
                 }
-            } else {
-                //是运算符
-                if (rank.containsKey(ch)){
-                    //后置单操作数运算符，直接运算
-                    if (backSingleOps.contains(ch)){
-                        ops.addLast(ch);
-                        calc(graphs,ops);
-                    } else {//双操作数运算符，若栈内运算符优先级>=当前运算符优先级，取出来进行运算
-                        while (!ops.isEmpty()&&ops.peekLast()!='('){
-                            char pre = ops.peekLast();
-                            if (rank.get(pre)>=rank.get(ch)){
-                                calc(graphs,ops);
-                            } else {
-                                break;
-                            }
-                        }
-                        ops.addLast(ch);
-                    }
-                } else {//是非运算符
-                    //如果上一个字符是非运算符，例如当前字符是b, ab -> a&b
-                    if (i>=1&&isNormalChar(cs[i-1])){
-                        ops.addLast('&');
-                    }
-                    NFAGraph grapha = NFAGraph.createByPath(ch+"");
-                    graphs.addLast(grapha);
+                break;
+            case RegexNode.ALT:
+                for (int i = 1; i < node.getChildCount(); i++) {
+                    graph.addParallel(children.apply(node.getChild(i)));
                 }
+                break;
+            case RegexNode.STAR:
+                graph.repeatStar();
+                break;
+            case RegexNode.PLUS:
+                graph.repeatPlus();
+                break;
+            case RegexNode.OPTIONAL:
+                graph.addOptional();
+                break;
+            default:
+                graph.repeat(node.getMin(), node.getMax());
+        }
+        return graph;
+    }
 
-            }
+    /**
+     * 通过多条词法规则生成一个合并的 NFAGraph，终止状态记录规则编号，规则在列表中越靠前优先级越高
+     * @param patterns 每条规则的正则表达式
+     * @return
+     */
+    public static NFAGraph createNFAGraph(List<String> patterns) {
+        //所有规则共用一个上下文，状态编号不会重复
+        NFAContext context = new NFAContext();
+        List<NFAGraph> rules = new ArrayList<>();
+        for (String pattern : patterns) {
+            rules.add(createNFAGraph(context, pattern));
         }
+        NFAGraph nfaGraph = NFAGraph.createLexer(context, rules);
+        nfaGraph.getStartState().setStart(true);
+        return nfaGraph;
+    }
 
-        //若运算符栈不空，进行运算
-        while (!ops.isEmpty()){
-            calc(graphs,ops);
+    /**
+     * 解析计数重复
+     * @param repeat 形如 {m}、{m,}、{m,n}
+     * @return {m, n}，n 为 -1 表示不限
+     */
+    static int[] parseRepeat(String repeat) {
+        String body = repeat.substring(1, repeat.length() - 1);
+        int comma = body.indexOf(',');
+        String minText = comma < 0 ? body : body.substring(0, comma);
+        String maxText = comma < 0 ? body : body.substring(comma + 1);
+        if (!minText.matches("[0-9]{1,9}") || !(maxText.isEmpty() || maxText.matches("[0-9]{1,9}"))) {
+            throw new RuntimeException("重复次数格式错误：" + repeat);
         }
-        //若nfa栈大小>1，不断取出进行连接操作
-        while (graphs.size()>1){
-            NFAGraph b = graphs.removeLast(), a = graphs.removeLast();
-            a.addSerial(b);
-            graphs.addLast(a);
+        int min = Integer.parseInt(minText);
+        int max = maxText.isEmpty() ? -1 : Integer.parseInt(maxText);
+        if (max >= 0 && max < min) {
+            throw new RuntimeException("重复次数上限小于下限：" + repeat);
         }
-        return graphs.peekLast();
+        return new int[]{min, max};
     }
 
     /**
-     * 根据不同运算符符进行运算
-     * @param graphs
-     * @param ops
+     * 编译前检查计数重复的次数。
+     * 每个 {m,n} 会把前一个表达式复制 max(m,n) 份，嵌套时份数相乘，例如 ((a{10}){10}){10} 要复制 1000 份 a。
+     * 这里不构造 NFA，只估计复制的总份数，超过上限时报错。
+     * @param pattern 正则表达式
+     * @param maxRepeat 允许的最多份数
      */
-    public static void calc(Deque<NFAGraph> graphs, Deque<Character> ops){
-        if (ops.isEmpty() || (ops.peekLast()=='*'&&graphs.size()<1)){
-            return;
-        }
-        //取出运算符
-        char ch = ops.removeLast();
-        NFAGraph a = null;
-        if (ch=='*'){
-            a = graphs.removeLast();
-            a.repeatStar();
-        } else if (ch=='?'){
-            a = graphs.removeLast();
-            a.addOptional();
-        }else if (ch=='+'){
-            a = graphs.removeLast();
-            a.repeatPlus();
-        } else if (ch=='|'){
-            NFAGraph b = graphs.removeLast();
-            a = graphs.removeLast();
-            a.addParallel(b);
-        } else if (ch=='&'){
-            NFAGraph b = graphs.removeLast();
-            a = graphs.removeLast();
-            a.addSerial(b);
+    public static void checkRepeat(String pattern, int maxRepeat) {
+        //每层括号内出现过的最大份数
+        Deque<Long> factors = new LinkedList<>();
+        factors.addLast(1L);
+        //前一个表达式的份数
+        long last = 1;
+        int n = pattern.length();
+        for (int i = 0; i < n; i++) {
+            char ch = pattern.charAt(i);
+            if (ch=='('){
+                factors.addLast(1L);
+            } else if (ch==')'){
+                if (factors.size() > 1) {
+                    last = factors.removeLast();
+                    factors.addLast(Math.max(factors.removeLast(), last));
+                }
+            } else if (ch=='['){
+                int index = pattern.indexOf(']', i);
+                i = index < 0 ? n : index;
+                last = 1;
+            } else if (ch=='{'){
+                int index = pattern.indexOf('}', i);
+                if (index < 0) {
+                    throw new RuntimeException("正则表达式缺少}");
+                }
+                String repeat = pattern.substring(i, index + 1);
+                int[] bounds = parseRepeat(repeat);
+                long total = last * Math.max(bounds[0], Math.max(bounds[1], 1));
+                if (total > maxRepeat) {
+                    throw new RuntimeException("重复次数过大：" + repeat + "，共需复制" + total + "份，上限为" + maxRepeat);
+                }
+                factors.addLast(Math.max(factors.removeLast(), total));
+                last = total;
+                i = index;
+            } else if (isNormalChar(ch)){
+                last = 1;
+            }
         }
-        graphs.addLast(a);
     }
 
     /**
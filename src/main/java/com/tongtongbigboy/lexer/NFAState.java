@@ -13,7 +13,6 @@ public class NFAState implements Comparable<NFAState> {
 
     // 表示 ε 空串
     public static final String EPSILON = "epsilon";
-    public static int idGenerate = 1;
     // 标志是状态几
     private int id;
     // NFA 转换图中，当前状态通往下一个状态所有有向边
@@ -21,14 +20,16 @@ public class NFAState implements Comparable<NFAState> {
     // 表示当前状态是不是终止状态
     private boolean isEnd;
     private boolean isStart;
+    // 终止状态接受的词法规则编号，多条规则同时接受时编号小的优先
+    private int token;
 
     public NFAState() {
     }
 
-    // 创建状态节点
-    public static NFAState create() {
+    // 创建状态节点，编号由 NFAContext 分配
+    static NFAState create(int id) {
         NFAState state = new NFAState();
-        state.id = idGenerate++;
+        state.id = id;
         state.edges = new HashMap<>();
         return state;
     }
@@ -59,6 +60,14 @@ public class NFAState implements Comparable<NFAState> {
         isEnd = end;
     }
 
+    public int getToken() {
+        return token;
+    }
+
+    public void setToken(int token) {
+        this.token = token;
+    }
+
     public boolean isStart() {
         return isStart;
     }
@@ -0,0 +1,205 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行子集构造。
+ * 按层进行：同一层（工作表中同一批新发现）的 DFA 状态互不依赖，在 ForkJoinPool 中并行计算它们经过每个等价类到达的 NFA 状态集合，
+ * 新集合通过 ConcurrentHashMap 驻留（computeIfAbsent 只锁住一个桶），编号由原子计数器分配，每个集合只有一个线程能成功加入。
+ * 一层处理完后，新加入的集合就是下一层。
+ *
+ * 编号与处理顺序有关，不同次运行可能不同；DFAGraph 中的状态以 NFA 状态集合标识，所以得到的 DFAGraph 与
+ * DFARegexUtil.NFAToDFA 的结果相同。
+ * DFAGraph 不是线程安全的，最后在调用线程中统一构造。
+ */
+public class ParallelSubsetConstruction {
+
+    // 每个子任务至少处理的状态数，太小时任务调度的开销超过计算本身
+    private static final int MIN_CHUNK = 16;
+
+    private final CompactNFA nfa;
+    private final int maxStates;
+    private final int labelCount;
+    // 集合 => 编号
+    private final ConcurrentHashMap<StateSet, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger counter = new AtomicInteger();
+    // 编号 => 集合、编号 => 各等价类的目的状态编号，每层结束时扩容
+    private int[][] sets = new int[16][];
+    private int[][] transitions = new int[16][];
+
+    private ParallelSubsetConstruction(CompactNFA nfa, int maxStates) {
+        this.nfa = nfa;
+        this.maxStates = maxStates;
+        this.labelCount = nfa.getLabelCount();
+    }
+
+    /**
+     * 在公共 ForkJoinPool 中进行子集构造
+     * @param nfa
+     * @param maxStates DFA 状态数上限，超过时报错
+     * @return
+     */
+    public static DFAGraph NFAToDFA(CompactNFA nfa, int maxStates) {
+        return NFAToDFA(nfa, maxStates, ForkJoinPool.commonPool());
+    }
+
+    public static DFAGraph NFAToDFA(CompactNFA nfa, int maxStates, ForkJoinPool pool) {
+        return new ParallelSubsetConstruction(nfa, maxStates).run(pool);
+    }
+
+    private DFAGraph run(ForkJoinPool pool) {
+        int n = nfa.getStateCount();
+        int[] startSet = nfa.closure(new int[]{nfa.getStartState()}, 1, new boolean[n], new int[n]);
+        ids.put(new StateSet(startSet), counter.getAndIncrement());
+        sets[0] = startSet;
+
+        int levelStart = 0;
+        int levelEnd = 1;
+        while (levelStart < levelEnd) {
+            int chunk = Math.max(MIN_CHUNK, (levelEnd - levelStart) / (pool.getParallelism() * 4));
+            List<List<int[]>> discovered = new ArrayList<>();
+            pool.invoke(new Expand(levelStart, levelEnd, chunk, discovered));
+            //本层新发现的集合编号为 [levelEnd, counter)
+            int size = counter.get();
+            if (size > maxStates) {
+                throw new RuntimeException("DFA 状态数超过上限：" + maxStates);
+            }
+            if (size > sets.length) {
+                int capacity = Math.max(size, sets.length * 2);
+                sets = Arrays.copyOf(sets, capacity);
+                transitions = Arrays.copyOf(transitions, capacity);
+            }
+            for (List<int[]> list : discovered) {
+                for (int[] set : list) {
+                    sets[ids.get(new StateSet(set))] = set;
+                }
+            }
+            levelStart = levelEnd;
+            levelEnd = size;
+        }
+        return buildGraph(counter.get());
+    }
+
+    /**
+     * 按编号顺序构造 DFAGraph
+     */
+    private DFAGraph buildGraph(int size) {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < labelCount; i++) {
+            paths.add(nfa.getLabel(i));
+        }
+        DFAState[] states = new DFAState[size];
+        for (int id = 0; id < size; id++) {
+            states[id] = DFAState.create(nfa, sets[id]);
+        }
+        DFAGraph dfaGraph = DFAGraph.create(states[0]);
+        for (int id = 0; id < size; id++) {
+            dfaGraph.addAcceptOrNonStates(states[id]);
+            for (int i = 0; i < labelCount; i++) {
+                dfaGraph.addStateTable(states[id], paths.get(i), states[transitions[id][i]]);
+            }
+        }
+        dfaGraph.setPaths(paths);
+        dfaGraph.setAlphabet(nfa.getAlphabet());
+        return dfaGraph;
+    }
+
+    /**
+     * 处理编号为 [from, to) 的状态，过多时二分为子任务。
+     * 新发现的集合记录在各自的列表中，子任务只写自己负责的 transitions[id]，不需要加锁
+     */
+    private class Expand extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final List<List<int[]>> discovered;
+
+        Expand(int from, int to, int chunk, List<List<int[]>> discovered) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.discovered = discovered;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunk) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Expand(from, mid, chunk, discovered), new Expand(mid, to, chunk, discovered));
+                return;
+            }
+            int n = nfa.getStateCount();
+            boolean[] marks = new boolean[n];
+            int[] buffer = new int[n];
+            int[][] moveTargets = new int[labelCount][4];
+            int[] moveSize = new int[labelCount];
+            List<int[]> found = new ArrayList<>();
+            for (int id = from; id < to; id++) {
+                Arrays.fill(moveSize, 0);
+                for (int state : sets[id]) {
+                    for (int j = nfa.getEdgeStart(state); j < nfa.getEdgeEnd(state); j++) {
+                        int label = nfa.getEdgeLabel(j);
+                        if (moveSize[label] == moveTargets[label].length) {
+                            moveTargets[label] = Arrays.copyOf(moveTargets[label], moveSize[label] * 2);
+                        }
+                        moveTargets[label][moveSize[label]++] = nfa.getEdgeTarget(j);
+                    }
+                }
+                int[] row = new int[labelCount];
+                for (int i = 0; i < labelCount; i++) {
+                    int[] uSet = nfa.closure(moveTargets[i], moveSize[i], marks, buffer);
+                    StateSet key = new StateSet(uSet);
+                    Integer target = ids.get(key);
+                    if (target == null) {
+                        target = ids.computeIfAbsent(key, k -> {
+                            found.add(k.set);
+                            return counter.getAndIncrement();
+                        });
+                    }
+                    row[i] = target;
+                }
+                transitions[id] = row;
+                if (counter.get() > maxStates) {
+                    //超过上限后尽快结束，由 run 报错
+                    break;
+                }
+            }
+            synchronized (discovered) {
+                discovered.add(found);
+            }
+        }
+    }
+
+    /**
+     * 有序 NFA 状态集合作为散列表的键，哈希值预先计算
+     */
+    private static final class StateSet {
+
+        private final int[] set;
+        private final int hash;
+
+        StateSet(int[] set) {
+            this.set = set;
+            this.hash = Arrays.hashCode(set);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateSet && ((StateSet) o).hash == hash && Arrays.equals(((StateSet) o).set, set);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 编译结果缓存，键为正则表达式和编译选项。
+ * 条目数有上限，超过时淘汰最久未使用的条目（LRU）。
+ * 可以被多个线程同时使用：查找和淘汰在锁内进行，编译在 CompiledPattern 中按阶段延迟进行，不占用缓存的锁。
+ */
+public class PatternCache {
+
+    // 默认条目数上限
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final PatternCache DEFAULT = new PatternCache(DEFAULT_MAX_SIZE);
+
+    private final int maxSize;
+    // 按访问顺序排列，最久未使用的在最前面
+    private final LinkedHashMap<Key, CompiledPattern> map;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public PatternCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new RuntimeException("缓存大小必须大于0：" + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<Key, CompiledPattern>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompiledPattern> eldest) {
+                if (size() > PatternCache.this.maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 全局共享的缓存
+     * @return
+     */
+    public static PatternCache getDefault() {
+        return DEFAULT;
+    }
+
+    public CompiledPattern get(String pattern) {
+        return get(Collections.singletonList(pattern), CompileOptions.DEFAULT);
+    }
+
+    public CompiledPattern get(String pattern, CompileOptions options) {
+        return get(Collections.singletonList(pattern), options);
+    }
+
+    /**
+     * 获取编译结果，不存在时创建
+     * @param patterns 正则表达式，多于一个时按词法规则合并
+     * @param options 编译选项
+     * @return
+     */
+    public CompiledPattern get(List<String> patterns, CompileOptions options) {
+        Key key = new Key(new ArrayList<>(patterns), options);
+        synchronized (map) {
+            CompiledPattern compiled = map.get(key);
+            if (compiled != null) {
+                hitCount.incrementAndGet();
+                return compiled;
+            }
+            missCount.incrementAndGet();
+            compiled = CompiledPattern.create(key.patterns, options);
+            map.put(key, compiled);
+            return compiled;
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("PatternCache{");
+        sb.append("size=").append(size());
+        sb.append(", maxSize=").append(maxSize);
+        sb.append(", hit=").append(getHitCount());
+        sb.append(", miss=").append(getMissCount());
+        sb.append(", eviction=").append(getEvictionCount());
+        sb.append('}');
+        return sb.toString();
+    }
+
+    // 缓存的键
+    private static final class Key {
+        private final List<String> patterns;
+        private final CompileOptions options;
+
+        private Key(List<String> patterns, CompileOptions options) {
+            this.patterns = patterns;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return patterns.equals(key.patterns) && options.equals(key.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(patterns, options);
+        }
+    }
+}
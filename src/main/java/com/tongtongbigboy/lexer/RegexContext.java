@@ -0,0 +1,274 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.*;
+
+/**
+ * 语法树节点的驻留表（hash-consing），负责创建 RegexNode 并解析正则表达式。
+ * 结构相同的节点只创建一次，之后返回同一个对象，因此可以用节点本身（按引用）作为编译结果的缓存键。
+ * 同一个上下文只能在一个线程中使用。
+ */
+public class RegexContext {
+
+    // 节点 => 驻留的节点
+    private Map<RegexNode, RegexNode> table = new HashMap<>();
+    // 下一个节点编号
+    private int idGenerate;
+
+    /**
+     * 字符集合
+     * @param ranges 闭区间 {lo0, hi0, lo1, hi1, ...}，可以无序、相交，驻留前排序合并，[ba] 与 [ab] 是同一个节点
+     * @return
+     */
+    public RegexNode chars(int[] ranges) {
+        return intern(new RegexNode(RegexNode.CHARS, Alphabet.normalize(ranges), new RegexNode[0], 0, 0));
+    }
+
+    public RegexNode chars(char ch) {
+        return chars(new int[]{ch, ch});
+    }
+
+    public RegexNode concat(RegexNode a, RegexNode b) {
+        return intern(new RegexNode(RegexNode.CONCAT, null, new RegexNode[]{a, b}, 0, 0));
+    }
+
+    public RegexNode alt(RegexNode a, RegexNode b) {
+        return intern(new RegexNode(RegexNode.ALT, null, new RegexNode[]{a, b}, 0, 0));
+    }
+
+    /**
+     * 多个子节点的连接，不做任何化简
+     * @param parts 至少两个
+     * @return
+     */
+    public RegexNode concat(List<RegexNode> parts) {
+        return intern(new RegexNode(RegexNode.CONCAT, null, parts.toArray(new RegexNode[0]), 0, 0));
+    }
+
+    /**
+     * 多个子节点的选择，不做任何化简，子节点的顺序有意义：[a, b] 与 [b, a] 是不同的节点
+     * @param alternatives 至少两个
+     * @return
+     */
+    public RegexNode alt(List<RegexNode> alternatives) {
+        return intern(new RegexNode(RegexNode.ALT, null, alternatives.toArray(new RegexNode[0]), 0, 0));
+    }
+
+    /**
+     * 空串 ε
+     * @return
+     */
+    public RegexNode epsilon() {
+        return intern(new RegexNode(RegexNode.EPSILON, null, new RegexNode[0], 0, 0));
+    }
+
+    /**
+     * 空集 ∅
+     * @return
+     */
+    public RegexNode empty() {
+        return intern(new RegexNode(RegexNode.EMPTY, null, new RegexNode[0], 0, 0));
+    }
+
+    public RegexNode star(RegexNode a) {
+        return intern(new RegexNode(RegexNode.STAR, null, new RegexNode[]{a}, 0, 0));
+    }
+
+    public RegexNode plus(RegexNode a) {
+        return intern(new RegexNode(RegexNode.PLUS, null, new RegexNode[]{a}, 0, 0));
+    }
+
+    public RegexNode optional(RegexNode a) {
+        return intern(new RegexNode(RegexNode.OPTIONAL, null, new RegexNode[]{a}, 0, 0));
+    }
+
+    /**
+     * 计数重复
+     * @param a
+     * @param min 最少次数
+     * @param max 最多次数，-1 表示不限
+     * @return
+     */
+    public RegexNode repeat(RegexNode a, int min, int max) {
+        return intern(new RegexNode(RegexNode.REPEAT, null, new RegexNode[]{a}, min, max));
+    }
+
+    private RegexNode intern(RegexNode node) {
+        RegexNode existing = table.get(node);
+        if (existing != null) {
+            return existing;
+        }
+        node.setId(idGenerate++);
+        table.put(node, node);
+        return node;
+    }
+
+    /**
+     * 解析正则表达式，代码逻辑类似处理算术表达式：运算符栈 + 节点栈。
+     * 运算符优先级 | 最低，连接 & 其次，后置的 *、?、+ 遇到即运算；{m,n} 作用于前一个表达式。
+     * 连接是隐式的：( 前面是 )、* 或普通字符，以及普通字符前面是普通字符时插入 &，
+     * 其余情况（例如 (a)b、a+b）相邻的表达式留在节点栈中，最后依次连接
+     * @param pattern
+     * @return
+     */
+    public RegexNode parse(String pattern) {
+        char[] cs = pattern.toCharArray();
+        int n = pattern.length();
+        //运算符栈
+        Deque<Character> ops = new ArrayDeque<>();
+        //节点栈
+        Deque<RegexNode> nodes = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            char ch = cs[i];
+            if (ch == '(') {
+                if (i > 0 && (cs[i - 1] == ')' || cs[i - 1] == '*' || NFARegexUtil.isNormalChar(cs[i - 1]))) {
+                    ops.addLast('&');
+                }
+                ops.addLast('(');
+            } else if (ch == ')') {
+                while (!ops.isEmpty()) {
+                    if (ops.peekLast() == '(') {
+                        ops.removeLast();
+                        break;
+                    }
+                    calc(nodes, ops);
+                }
+            } else if (ch == '[') {
+                List<Integer> ranges = new ArrayList<>();
+                boolean dash = false;
+                int index = i;
+                while (++index < n && (ch = cs[index]) != ']') {
+                    if (!dash) {
+                        //开头的'-'当作普通字符
+                        if (ch == '-' && !ranges.isEmpty()) {
+                            dash = true;
+                        } else {
+                            ranges.add((int) ch);
+                            ranges.add((int) ch);
+                        }
+                    } else {
+                        int last = ranges.size() - 1;
+                        ranges.set(last, Math.max(ranges.get(last), ch));
+                        dash = false;
+                    }
+                }
+                if (index >= n) {
+                    throw new RuntimeException("正则表达式缺少]");
+                }
+                i = index;
+                int[] rangeArray = new int[ranges.size()];
+                for (int j = 0; j < rangeArray.length; j++) {
+                    rangeArray[j] = ranges.get(j);
+                }
+                nodes.addLast(chars(rangeArray));
+            } else if (ch == '{') {
+                int index = pattern.indexOf('}', i);
+                if (index < 0) {
+                    throw new RuntimeException("正则表达式缺少}");
+                }
+                if (nodes.isEmpty()) {
+                    throw new RuntimeException("重复次数前缺少表达式：" + pattern.substring(i, index + 1));
+                }
+                int[] bounds = NFARegexUtil.parseRepeat(pattern.substring(i, index + 1));
+                nodes.addLast(repeat(nodes.removeLast(), bounds[0], bounds[1]));
+                i = index;
+            } else if (ch == '*' || ch == '?' || ch == '+') {
+                //后置单操作数运算符，直接运算
+                ops.addLast(ch);
+                calc(nodes, ops);
+            } else if (ch == '|') {
+                //优先级最低，栈内所有运算符（到左括号为止）都先运算
+                while (!ops.isEmpty() && ops.peekLast() != '(') {
+                    calc(nodes, ops);
+                }
+                ops.addLast(ch);
+            } else if (ch == '&') {
+                while (!ops.isEmpty() && ops.peekLast() != '(' && ops.peekLast() != '|') {
+                    calc(nodes, ops);
+                }
+                ops.addLast(ch);
+            } else {
+                if (i >= 1 && NFARegexUtil.isNormalChar(cs[i - 1])) {
+                    ops.addLast('&');
+                }
+                nodes.addLast(chars(ch));
+            }
+        }
+        while (!ops.isEmpty()) {
+            calc(nodes, ops);
+        }
+        if (nodes.isEmpty()) {
+            throw new RuntimeException("正则表达式为空");
+        }
+        //剩余的节点依次连接
+        while (nodes.size() > 1) {
+            RegexNode b = nodes.removeLast();
+            RegexNode a = nodes.removeLast();
+            nodes.addLast(concat(a, b));
+        }
+        return nodes.peekLast();
+    }
+
+    private void calc(Deque<RegexNode> nodes, Deque<Character> ops) {
+        char ch = ops.removeLast();
+        if (ch == '(') {
+            throw new RuntimeException("正则表达式缺少)");
+        }
+        boolean binary = ch == '|' || ch == '&';
+        if (nodes.size() < (binary ? 2 : 1)) {
+            throw new RuntimeException("运算符缺少操作数：" + ch);
+        }
+        RegexNode a = nodes.removeLast();
+        switch (ch) {
+            case '*':
+                nodes.addLast(star(a));
+                break;
+            case '?':
+                nodes.addLast(optional(a));
+                break;
+            case '+':
+                nodes.addLast(plus(a));
+                break;
+            case '|':
+                nodes.addLast(alt(nodes.removeLast(), a));
+                break;
+            default:
+                nodes.addLast(concat(nodes.removeLast(), a));
+        }
+    }
+
+    /**
+     * 只保留从 roots 可以到达的节点，其余节点从驻留表中删除，之后再创建结构相同的节点会得到新的对象。
+     * 长期使用的上下文（例如编辑器每次按键都重新解析）用它防止驻留表无限增长
+     * @param roots
+     */
+    public void retain(Collection<RegexNode> roots) {
+        Map<RegexNode, RegexNode> retained = new HashMap<>();
+        Deque<RegexNode> deque = new ArrayDeque<>(roots);
+        while (!deque.isEmpty()) {
+            RegexNode node = deque.removeLast();
+            if (retained.put(node, node) == null) {
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    deque.addLast(node.getChild(i));
+                }
+            }
+        }
+        table = retained;
+    }
+
+    /**
+     * 节点是否驻留在本上下文中
+     * @param node
+     * @return
+     */
+    public boolean contains(RegexNode node) {
+        return table.get(node) == node;
+    }
+
+    /**
+     * 驻留的节点个数
+     * @return
+     */
+    public int size() {
+        return table.size();
+    }
+}
@@ -0,0 +1,223 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.Arrays;
+
+/**
+ * 正则表达式的语法树节点，不可变。
+ * 节点只能由 RegexContext 创建，并在其中驻留（hash-consing）：同一个上下文中结构相同的子表达式是同一个对象，
+ * 所以比较子节点时只需比较引用，相同的子表达式也只需编译一次。
+ */
+public class RegexNode {
+
+    // 字符集合，例如 a、[a-z]
+    public static final int CHARS = 0;
+    // 连接
+    public static final int CONCAT = 1;
+    // 选择 |
+    public static final int ALT = 2;
+    // 闭包 *
+    public static final int STAR = 3;
+    // 正闭包 +
+    public static final int PLUS = 4;
+    // 可选 ?
+    public static final int OPTIONAL = 5;
+    // 计数重复 {m,n}
+    public static final int REPEAT = 6;
+    // 空串 ε，解析正则表达式时不会产生，由化简、求导得到
+    public static final int EPSILON = 7;
+    // 空集 ∅，不匹配任何串
+    public static final int EMPTY = 8;
+
+    private final int kind;
+    // CHARS 的有序、互不相交的字符区间 {lo0, hi0, lo1, hi1, ...}，其余为 null
+    private final int[] ranges;
+    // 子节点，CHARS 为空数组
+    private final RegexNode[] children;
+    // REPEAT 的次数，max 为 -1 表示不限
+    private final int min;
+    private final int max;
+    // 是否匹配空串
+    private final boolean nullable;
+    private final int hash;
+    // 驻留时由上下文分配的编号，按创建顺序递增
+    private int id = -1;
+
+    RegexNode(int kind, int[] ranges, RegexNode[] children, int min, int max) {
+        this.kind = kind;
+        this.ranges = ranges;
+        this.children = children;
+        this.min = min;
+        this.max = max;
+        this.nullable = computeNullable();
+        int h = kind;
+        h = 31 * h + Arrays.hashCode(ranges);
+        for (RegexNode child : children) {
+            h = 31 * h + System.identityHashCode(child);
+        }
+        h = 31 * h + min;
+        h = 31 * h + max;
+        this.hash = h;
+    }
+
+    private boolean computeNullable() {
+        switch (kind) {
+            case CHARS:
+            case EMPTY:
+                return false;
+            case CONCAT:
+                for (RegexNode child : children) {
+                    if (!child.nullable) {
+                        return false;
+                    }
+                }
+                return true;
+            case ALT:
+                for (RegexNode child : children) {
+                    if (child.nullable) {
+                        return true;
+                    }
+                }
+                return false;
+            case PLUS:
+                return children[0].nullable;
+            case REPEAT:
+                return min == 0 || children[0].nullable;
+            default:
+                //STAR、OPTIONAL、EPSILON
+                return true;
+        }
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * @return 字符区间的副本，不是 CHARS 时为 null
+     */
+    public int[] getRanges() {
+        return ranges == null ? null : ranges.clone();
+    }
+
+    public int getChildCount() {
+        return children.length;
+    }
+
+    public RegexNode getChild(int index) {
+        return children[index];
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * 是否匹配空串
+     * @return
+     */
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    /**
+     * 子节点已经驻留，按引用比较即可
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RegexNode that = (RegexNode) o;
+        if (hash != that.hash || kind != that.kind || min != that.min || max != that.max
+                || !Arrays.equals(ranges, that.ranges) || children.length != that.children.length) {
+            return false;
+        }
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] != that.children[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * 转回正则表达式，所有的连接、选择都加括号
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    private void appendTo(StringBuilder sb) {
+        switch (kind) {
+            case CHARS:
+                if (ranges.length == 2 && ranges[0] == ranges[1]) {
+                    sb.append((char) ranges[0]);
+                } else {
+                    sb.append('[');
+                    for (int i = 0; i < ranges.length; i += 2) {
+                        sb.append(NFAGraph.rangeLabel(ranges[i], ranges[i + 1]));
+                    }
+                    sb.append(']');
+                }
+                break;
+            case CONCAT:
+            case ALT:
+                sb.append('(');
+                for (int i = 0; i < children.length; i++) {
+                    if (i > 0 && kind == ALT) {
+                        sb.append('|');
+                    }
+                    children[i].appendTo(sb);
+                }
+                sb.append(')');
+                break;
+            case STAR:
+                children[0].appendTo(sb);
+                sb.append('*');
+                break;
+            case PLUS:
+                children[0].appendTo(sb);
+                sb.append('+');
+                break;
+            case OPTIONAL:
+                children[0].appendTo(sb);
+                sb.append('?');
+                break;
+            case EPSILON:
+                sb.append('ε');
+                break;
+            case EMPTY:
+                sb.append('∅');
+                break;
+            default:
+                children[0].appendTo(sb);
+                sb.append('{').append(min);
+                if (max != min) {
+                    sb.append(',');
+                    if (max >= 0) {
+                        sb.append(max);
+                    }
+                }
+                sb.append('}');
+        }
+    }
+}
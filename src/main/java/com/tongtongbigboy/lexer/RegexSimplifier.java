@@ -0,0 +1,317 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.*;
+
+/**
+ * 语法树的化简，在构造 NFA 之前缩小表达式，减少 Thompson 构造产生的 ε有向边 和状态。
+ *
+ * 化简规则由各个构造方法完成，自底向上重新构造语法树时逐个节点应用（normalize）：
+ * <ul>
+ *     <li>连接展平，去掉 ε，含有 ∅ 时为 ∅</li>
+ *     <li>选择展平、去重，单个字符和字符集合的分支合并为一个字符集合：(a|b|c) => [abc]，(a|a) => a</li>
+ *     <li>嵌套的重复合并：a** => a*，(a+)* => a*，(a?)* => a*，(a?)+ => a*，(a*)? => a*，(a{2}){3} => a{6}</li>
+ *     <li>计数重复退化为普通运算符：a{0,} => a*，a{1,} => a+，a{0,1} => a?，a{1} => a</li>
+ * </ul>
+ * simplify 在此基础上再提取选择分支的公共前缀：(ab|ac) => a[bc]，(abc|ab) => abc?。
+ *
+ * 选择的分支按节点编号排序，所以规范化的结果与分支顺序无关，DerivativeConstruction 依赖这一点保证导数只有有限多个。
+ */
+public class RegexSimplifier {
+
+    private final RegexContext context;
+    private final RegexNode epsilon;
+    private final RegexNode empty;
+
+    /**
+     * @param context 化简得到的节点都在这个上下文中驻留，输入的节点也必须属于它
+     */
+    public RegexSimplifier(RegexContext context) {
+        this.context = context;
+        this.epsilon = context.epsilon();
+        this.empty = context.empty();
+    }
+
+    /**
+     * 应用所有化简规则，包括提取公共前缀
+     * @param node
+     * @return
+     */
+    public RegexNode simplify(RegexNode node) {
+        return rebuild(node, true, new HashMap<>());
+    }
+
+    /**
+     * 自底向上按各构造方法的规则重新构造，不提取公共前缀
+     * @param node
+     * @return
+     */
+    public RegexNode normalize(RegexNode node) {
+        return rebuild(node, false, new HashMap<>());
+    }
+
+    private RegexNode rebuild(RegexNode node, boolean factor, Map<RegexNode, RegexNode> done) {
+        RegexNode result = done.get(node);
+        if (result != null) {
+            return result;
+        }
+        List<RegexNode> children = new ArrayList<>();
+        for (int i = 0; i < node.getChildCount(); i++) {
+            children.add(rebuild(node.getChild(i), factor, done));
+        }
+        switch (node.getKind()) {
+            case RegexNode.CONCAT:
+                result = concat(children);
+                break;
+            case RegexNode.ALT:
+                result = factor ? factorPrefixes(children) : alt(children);
+                break;
+            case RegexNode.STAR:
+                result = star(children.get(0));
+                break;
+            case RegexNode.PLUS:
+                result = plus(children.get(0));
+                break;
+            case RegexNode.OPTIONAL:
+                result = optional(children.get(0));
+                break;
+            case RegexNode.REPEAT:
+                result = repeat(children.get(0), node.getMin(), node.getMax());
+                break;
+            default:
+                result = node;
+        }
+        done.put(node, result);
+        return result;
+    }
+
+    /**
+     * 选择，并把第一项相同的分支合并：x s1 | x s2 | t => x (s1|s2) | t，剩余部分递归处理
+     */
+    private RegexNode factorPrefixes(List<RegexNode> alternatives) {
+        RegexNode node = alt(alternatives);
+        if (node.getKind() != RegexNode.ALT) {
+            return node;
+        }
+        //第一项 => 剩余部分，保持第一次出现的顺序
+        Map<RegexNode, List<RegexNode>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < node.getChildCount(); i++) {
+            RegexNode alternative = node.getChild(i);
+            RegexNode head = alternative;
+            RegexNode rest = epsilon;
+            if (alternative.getKind() == RegexNode.CONCAT) {
+                head = alternative.getChild(0);
+                List<RegexNode> tail = new ArrayList<>();
+                for (int j = 1; j < alternative.getChildCount(); j++) {
+                    tail.add(alternative.getChild(j));
+                }
+                rest = concat(tail);
+            }
+            groups.computeIfAbsent(head, k -> new ArrayList<>()).add(rest);
+        }
+        if (groups.size() == node.getChildCount()) {
+            return node;
+        }
+        List<RegexNode> factored = new ArrayList<>();
+        for (Map.Entry<RegexNode, List<RegexNode>> entry : groups.entrySet()) {
+            List<RegexNode> rests = entry.getValue();
+            RegexNode rest = rests.size() == 1 ? rests.get(0) : factorPrefixes(rests);
+            factored.add(concat(Arrays.asList(entry.getKey(), rest)));
+        }
+        return alt(factored);
+    }
+
+    /**
+     * 连接：展平嵌套的连接，去掉 ε，含有 ∅ 时为 ∅
+     * @param parts
+     * @return
+     */
+    public RegexNode concat(List<RegexNode> parts) {
+        List<RegexNode> flat = new ArrayList<>();
+        for (RegexNode part : parts) {
+            if (part == empty) {
+                return empty;
+            }
+            if (part.getKind() == RegexNode.CONCAT) {
+                for (int i = 0; i < part.getChildCount(); i++) {
+                    flat.add(part.getChild(i));
+                }
+            } else if (part != epsilon) {
+                flat.add(part);
+            }
+        }
+        if (flat.isEmpty()) {
+            return epsilon;
+        }
+        return flat.size() == 1 ? flat.get(0) : context.concat(flat);
+    }
+
+    /**
+     * 选择：展平嵌套的选择和可选，去掉 ∅，字符集合合并为一个，去重后按编号排序；
+     * 有 ε 时，其他分支能匹配空串就去掉 ε，否则改为可选：(ε|a|b) => (a|b)?，(a?|b) => (a|b)?
+     * @param alternatives
+     * @return
+     */
+    public RegexNode alt(List<RegexNode> alternatives) {
+        if (alternatives.size() == 2) {
+            RegexNode a = alternatives.get(0);
+            RegexNode b = alternatives.get(1);
+            if (a == empty || a == b) {
+                return b;
+            }
+            if (b == empty) {
+                return a;
+            }
+        }
+        List<RegexNode> flat = new ArrayList<>();
+        List<Integer> ranges = new ArrayList<>();
+        boolean hasEpsilon = false;
+        Deque<RegexNode> deque = new ArrayDeque<>(alternatives);
+        while (!deque.isEmpty()) {
+            RegexNode node = deque.removeFirst();
+            if (node.getKind() == RegexNode.ALT) {
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    deque.addLast(node.getChild(i));
+                }
+            } else if (node.getKind() == RegexNode.OPTIONAL) {
+                //a? 当作 ε|a 展开，化简后的选择中不会出现可选
+                hasEpsilon = true;
+                deque.addLast(node.getChild(0));
+            } else if (node.getKind() == RegexNode.CHARS) {
+                for (int range : node.getRanges()) {
+                    ranges.add(range);
+                }
+            } else if (node == epsilon) {
+                hasEpsilon = true;
+            } else if (node != empty) {
+                flat.add(node);
+            }
+        }
+        if (!ranges.isEmpty()) {
+            int[] rangeArray = new int[ranges.size()];
+            for (int i = 0; i < rangeArray.length; i++) {
+                rangeArray[i] = ranges.get(i);
+            }
+            flat.add(context.chars(rangeArray));
+        }
+        flat.sort(Comparator.comparingInt(RegexNode::getId));
+        int size = 0;
+        for (RegexNode node : flat) {
+            if (size == 0 || flat.get(size - 1) != node) {
+                flat.set(size++, node);
+            }
+        }
+        RegexNode result;
+        if (size == 0) {
+            result = hasEpsilon ? epsilon : empty;
+        } else {
+            result = size == 1 ? flat.get(0) : context.alt(flat.subList(0, size));
+        }
+        return hasEpsilon ? optional(result) : result;
+    }
+
+    /**
+     * 闭包 a*
+     * @param a
+     * @return
+     */
+    public RegexNode star(RegexNode a) {
+        switch (a.getKind()) {
+            case RegexNode.EMPTY:
+            case RegexNode.EPSILON:
+                return epsilon;
+            case RegexNode.STAR:
+                return a;
+            case RegexNode.PLUS:
+            case RegexNode.OPTIONAL:
+                return star(a.getChild(0));
+            default:
+                return context.star(a);
+        }
+    }
+
+    /**
+     * 正闭包 a+
+     * @param a
+     * @return
+     */
+    public RegexNode plus(RegexNode a) {
+        switch (a.getKind()) {
+            case RegexNode.EMPTY:
+            case RegexNode.EPSILON:
+            case RegexNode.STAR:
+            case RegexNode.PLUS:
+                return a;
+            case RegexNode.OPTIONAL:
+                return star(a.getChild(0));
+            default:
+                return context.plus(a);
+        }
+    }
+
+    /**
+     * 可选 a?，a 本身能匹配空串时就是 a
+     * @param a
+     * @return
+     */
+    public RegexNode optional(RegexNode a) {
+        if (a == empty || a == epsilon) {
+            return epsilon;
+        }
+        return a.isNullable() ? a : context.optional(a);
+    }
+
+    /**
+     * 计数重复 a{min,max}
+     * @param a
+     * @param min
+     * @param max -1 表示不限
+     * @return
+     */
+    public RegexNode repeat(RegexNode a, int min, int max) {
+        if (max == 0 || a == epsilon) {
+            return epsilon;
+        }
+        if (a == empty) {
+            return min == 0 ? epsilon : empty;
+        }
+        if (min == 1 && max == 1) {
+            return a;
+        }
+        if (max < 0 && min <= 1) {
+            return min == 0 ? star(a) : plus(a);
+        }
+        if (min == 0 && max == 1) {
+            return optional(a);
+        }
+        //固定次数的嵌套：(a{m}){n} => a{mn}
+        if (min == max && a.getKind() == RegexNode.REPEAT && a.getMin() == a.getMax()
+                && (long) min * a.getMin() <= Integer.MAX_VALUE) {
+            return repeat(a.getChild(0), min * a.getMin(), min * a.getMin());
+        }
+        return context.repeat(a, min, max);
+    }
+
+    /**
+     * 打印化简前后 Thompson 构造得到的 NFA 状态数
+     * @param args 正则表达式，没有时使用几个例子
+     */
+    public static void main(String[] args) {
+        String[] patterns = args.length > 0 ? args
+                : new String[]{"a**", "(a|a)", "(a|b|c)", "(x)?*", "(if|int|in)[a-z]*", "((ab)|c)*[dA-B]e"};
+        System.out.println(String.format("%-30s%10s%10s", "pattern", "before", "after"));
+        int totalBefore = 0;
+        int totalAfter = 0;
+        for (String pattern : patterns) {
+            RegexContext context = new RegexContext();
+            RegexNode node = context.parse(pattern);
+            NFAContext before = new NFAContext();
+            NFARegexUtil.createNFAGraph(before, node);
+            NFAContext after = new NFAContext();
+            NFARegexUtil.createNFAGraph(after, new RegexSimplifier(context).simplify(node));
+            System.out.println(String.format("%-30s%10d%10d", pattern, before.getStateCount(), after.getStateCount()));
+            totalBefore += before.getStateCount();
+            totalAfter += after.getStateCount();
+        }
+        System.out.println(String.format("%-30s%10d%10d", "total", totalBefore, totalAfter));
+    }
+}
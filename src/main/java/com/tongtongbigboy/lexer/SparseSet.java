@@ -0,0 +1,71 @@
+package com.tongtongbigboy.lexer;
+
+/**
+ * 稀疏集合（Briggs &amp; Torczon），元素为 0..capacity-1 的整数。
+ * 加入、查询、清空都是 O(1)，遍历按加入顺序进行，不需要初始化数组内容。
+ * 每个元素另外附带一个 int 值。
+ */
+public class SparseSet {
+
+    // 按加入顺序排列的元素
+    private final int[] dense;
+    // 元素 => 在 dense 中的位置
+    private final int[] sparse;
+    // 元素附带的值，与 dense 对应
+    private final int[] values;
+    private int size;
+
+    public SparseSet(int capacity) {
+        dense = new int[capacity];
+        sparse = new int[capacity];
+        values = new int[capacity];
+    }
+
+    public boolean contains(int element) {
+        int index = sparse[element];
+        return index < size && dense[index] == element;
+    }
+
+    /**
+     * 加入元素，已存在时不做任何事
+     * @param element
+     * @param value 附带的值
+     * @return 是否为新加入的元素
+     */
+    public boolean add(int element, int value) {
+        if (contains(element)) {
+            return false;
+        }
+        sparse[element] = size;
+        dense[size] = element;
+        values[size] = value;
+        size++;
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 第 index 个加入的元素
+     * @param index
+     * @return
+     */
+    public int get(int index) {
+        return dense[index];
+    }
+
+    /**
+     * 第 index 个加入的元素附带的值
+     * @param index
+     * @return
+     */
+    public int getValue(int index) {
+        return values[index];
+    }
+}
@@ -0,0 +1,114 @@
+package com.tongtongbigboy.lexer;
+
+import java.util.Arrays;
+
+/**
+ * NFA 状态集合的驻留表，开放寻址（线性探测）。
+ * 每个有序的 int[] 集合第一次出现时分配一个从 0 开始的连续编号，之后相同内容的集合得到同一个编号。
+ */
+public class StateSetTable {
+
+    // 编号 => 集合
+    private int[][] sets;
+    // 编号 => 集合的哈希值
+    private int[] hashes;
+    // 槽位，存 编号+1，0 表示空
+    private int[] slots;
+    private int size;
+
+    public StateSetTable() {
+        this(16);
+    }
+
+    public StateSetTable(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        sets = new int[capacity / 2][];
+        hashes = new int[capacity / 2];
+        slots = new int[capacity];
+    }
+
+    /**
+     * 查找集合的编号，不存在则加入
+     * @param set 有序的状态下标数组，加入后不能再修改
+     * @return 集合编号
+     */
+    public int intern(int[] set) {
+        int hash = hash(set);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        int id;
+        while ((id = slots[slot]) != 0) {
+            if (hashes[id - 1] == hash && Arrays.equals(sets[id - 1], set)) {
+                return id - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == sets.length) {
+            sets = Arrays.copyOf(sets, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        sets[size] = set;
+        hashes[size] = hash;
+        slots[slot] = ++size;
+        //装载因子超过 1/2 时扩容
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * 查找集合的编号
+     * @param set 有序的状态下标数组
+     * @return 集合编号，不存在返回 -1
+     */
+    public int find(int[] set) {
+        int hash = hash(set);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        int id;
+        while ((id = slots[slot]) != 0) {
+            if (hashes[id - 1] == hash && Arrays.equals(sets[id - 1], set)) {
+                return id - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int[] get(int id) {
+        return sets[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        int[] newSlots = new int[slots.length * 2];
+        int mask = newSlots.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hashes[i] & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = i + 1;
+        }
+        slots = newSlots;
+    }
+
+    private static int hash(int[] set) {
+        int h = set.length;
+        for (int value : set) {
+            h = h * 31 + value;
+        }
+        //打散低位，线性探测对低位聚集敏感
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
@@ -116,17 +116,8 @@ public class Ui {
             return;
         }
 
-        //设置起始状态id
-        NFAState.idGenerate = 1;
-        //正则转nfa
-        NFAGraph nfaGraph = NFARegexUtil.createNFAGraph(pattern);
-        //设置终态、开始状态
-        nfaGraph.getEndState().setEnd(true);
-        nfaGraph.getStartState().setStart(true);
-        // nfa转dfa
-        DFAGraph dfaGraph = DFARegexUtil.NFAToDFA(nfaGraph);
-        // dfa最小化
-        DFAGraph minDFA = dfaGraph.translateMinDFA();
+        //正则转nfa、nfa转dfa、dfa最小化，同一正则表达式的结果从缓存中获取
+        DFAGraph minDFA = PatternCache.getDefault().get(pattern).getMinDFA();
         // dfa转c语言代码
         String s = DFARegexUtil.toCCode(minDFA);
         //设置输出文本区内容
@@ -169,10 +160,7 @@ public class Ui {
             JOptionPane.showMessageDialog(null,"正则表达式为空");
             return;
         }
-        NFAState.idGenerate = 1;
-        NFAGraph graph = NFARegexUtil.createNFAGraph(pattern);
-        graph.getEndState().setEnd(true);
-        graph.getStartState().setStart(true);
+        NFAGraph graph = PatternCache.getDefault().get(pattern).getNFAGraph();
         Map<String, List<String>> mapList = NFARegexUtil.toMapList(graph);
         try {
             //生成图片
@@ -200,12 +188,7 @@ public class Ui {
             JOptionPane.showMessageDialog(null,"正则表达式为空");
             return;
         }
-        NFAState.idGenerate = 1;
-        NFAGraph nfaGraph = NFARegexUtil.createNFAGraph(pattern);
-        nfaGraph.getEndState().setEnd(true);
-        nfaGraph.getStartState().setStart(true);
-
-        DFAGraph dfaGraph = DFARegexUtil.NFAToDFA(nfaGraph);
+        DFAGraph dfaGraph = PatternCache.getDefault().get(pattern).getDFAGraph();
         Map<String, List<String>> mapList = DFARegexUtil.toMapList(dfaGraph);
         try {
             GraphvizUtil.createStateGraph(mapList,path);
@@ -230,13 +213,7 @@ public class Ui {
             JOptionPane.showMessageDialog(null,"正则表达式为空");
             return;
         }
-        NFAState.idGenerate = 1;
-        NFAGraph nfaGraph = NFARegexUtil.createNFAGraph(pattern);
-        nfaGraph.getEndState().setEnd(true);
-        nfaGraph.getStartState().setStart(true);
-
-        DFAGraph dfaGraph = DFARegexUtil.NFAToDFA(nfaGraph);
-        DFAGraph minDFA = dfaGraph.translateMinDFA();
+        DFAGraph minDFA = PatternCache.getDefault().get(pattern).getMinDFA();
         Map<String, List<String>> mapList = DFARegexUtil.toMapList(minDFA);
         try {
             GraphvizUtil.createStateGraph(mapList,path);
@@ -0,0 +1,91 @@
+package com.tongtongbigboy.lexer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 构建时编译词法规则文件的命令行工具，由 build.gradle 中的 generateLexers 任务调用。
+ *
+ * 用法：XlexCompiler --java 源代码目录 --tables 表目录 --state 状态目录 --base 规则文件根目录 规则文件...
+ *
+ * 每个规则文件经过 正则 => NFA => DFA => 最小化 DFA，生成两个文件：
+ * 源代码目录下独立的扫描器源代码（JavaCodeGenerator），表目录下的 DFA 二进制文件（MappedDFA），都按包名分目录。
+ * 状态目录下与规则文件相对路径相同、扩展名为 .outputs 的文件记录生成的文件，规则文件修改或删除时据此删除旧的输出。
+ */
+public class XlexCompiler {
+
+    public static void main(String[] args) throws IOException {
+        Path javaDir = null;
+        Path tablesDir = null;
+        Path stateDir = null;
+        Path baseDir = null;
+        List<Path> specs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--java":
+                    javaDir = Paths.get(args[++i]);
+                    break;
+                case "--tables":
+                    tablesDir = Paths.get(args[++i]);
+                    break;
+                case "--state":
+                    stateDir = Paths.get(args[++i]);
+                    break;
+                case "--base":
+                    baseDir = Paths.get(args[++i]);
+                    break;
+                default:
+                    specs.add(Paths.get(args[i]));
+            }
+        }
+        if (javaDir == null || tablesDir == null || stateDir == null || baseDir == null) {
+            System.err.println("用法：XlexCompiler --java 源代码目录 --tables 表目录 --state 状态目录 --base 规则文件根目录 规则文件...");
+            System.exit(2);
+        }
+        for (Path spec : specs) {
+            compile(spec, baseDir.relativize(spec), javaDir, tablesDir, stateDir);
+        }
+    }
+
+    /**
+     * 编译一个规则文件
+     * @param spec 规则文件
+     * @param relativePath 规则文件相对于根目录的路径
+     * @return 生成的文件
+     * @throws IOException
+     */
+    public static List<Path> compile(Path spec, Path relativePath, Path javaDir, Path tablesDir, Path stateDir)
+            throws IOException {
+        LexerSpec lexerSpec = LexerSpec.read(spec);
+        CompiledPattern pattern = CompiledPattern.create(lexerSpec.getPatterns(), CompileOptions.DEFAULT);
+        CompiledDFA dfa = pattern.getCompiledDFA();
+
+        String packagePath = lexerSpec.getPackageName() == null ? "" : lexerSpec.getPackageName().replace('.', '/');
+        Path javaFile = javaDir.resolve(packagePath).resolve(lexerSpec.getClassName() + ".java");
+        Path tableFile = tablesDir.resolve(packagePath).resolve(lexerSpec.getClassName() + ".dfa");
+        Files.createDirectories(javaFile.getParent());
+        Files.createDirectories(tableFile.getParent());
+        String source = JavaCodeGenerator.generate(dfa, lexerSpec.getPackageName(), lexerSpec.getClassName(),
+                lexerSpec.getTokenNames());
+        Files.write(javaFile, source.getBytes(StandardCharsets.UTF_8));
+        MappedDFA.write(dfa, tableFile);
+
+        List<Path> outputs = new ArrayList<>();
+        outputs.add(javaFile.toAbsolutePath());
+        outputs.add(tableFile.toAbsolutePath());
+        Path stateFile = stateDir.resolve(relativePath.toString() + ".outputs");
+        Files.createDirectories(stateFile.getParent());
+        List<String> lines = new ArrayList<>();
+        for (Path output : outputs) {
+            lines.add(output.toString());
+        }
+        Files.write(stateFile, lines, StandardCharsets.UTF_8);
+        System.out.println(spec + "：" + lexerSpec.getPatterns().size() + "条规则，" + dfa.getStateCount() + "个状态");
+        return outputs;
+    }
+}
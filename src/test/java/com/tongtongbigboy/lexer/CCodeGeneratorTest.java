@@ -0,0 +1,205 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 用本机的 C 编译器编译生成的扫描器，记号序列与 DFAScanner 按字节匹配的结果比较。
+ * 没有 C 编译器时跳过；吞吐量由基准测试衡量
+ */
+public class CCodeGeneratorTest {
+
+    private static final List<String> RULES = Arrays.asList(
+            "if|else|while", "[a-zA-Z_][a-zA-Z0-9_]*", "[0-9]+", "[ \t\n]+", "==|=|<|<=", "[(){};]");
+
+    private static String compiler;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void findCompiler() {
+        for (String candidate : new String[]{"cc", "gcc", "clang"}) {
+            try {
+                Process process = new ProcessBuilder(candidate, "--version").redirectErrorStream(true).start();
+                drain(process);
+                if (process.waitFor() == 0) {
+                    compiler = candidate;
+                    return;
+                }
+            } catch (IOException | InterruptedException e) {
+                //没有这个编译器
+            }
+        }
+    }
+
+    private static String drain(Process process) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = process.getInputStream().read(chunk)) > 0) {
+            out.write(chunk, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 运行命令，返回标准输出（合并标准错误），退出码不为 0 时失败
+     */
+    private static String run(File input, String... command) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        if (input != null) {
+            builder.redirectInput(input);
+        }
+        Process process = builder.start();
+        String output = drain(process);
+        assertTrue(String.join(" ", command) + " 超时", process.waitFor(120, TimeUnit.SECONDS));
+        assertEquals(String.join(" ", command) + "\n" + output, 0, process.exitValue());
+        return output;
+    }
+
+    private static CompiledDFA compile() {
+        return CompiledPattern.create(RULES, CompileOptions.DEFAULT).getCompiledDFA();
+    }
+
+    /**
+     * 随机的程序文本，含有不能匹配的字节和超过缓冲区大小的标识符
+     */
+    private static byte[] input(int size, long seed) {
+        Random random = new Random(seed);
+        String[] words = {"if", "else", "while", "x", "count_1", "42", "007", " ", "\n", "\t", "==", "=", "<=", "<",
+                "(", ")", "{", "}", ";", "@", "#"};
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < size) {
+            sb.append(words[random.nextInt(words.length)]);
+            if (random.nextInt(1000) == 0) {
+                for (int i = 0; i < 10000; i++) {
+                    sb.append((char) ('a' + random.nextInt(26)));
+                }
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * DFAScanner 直接在字节上匹配得到的记号序列，每行 规则编号 偏移 长度
+     */
+    private static List<String> scanWithJava(CompiledDFA dfa, byte[] bytes) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        DFAScanner scanner = new DFAScanner(dfa, ByteBuffer.wrap(bytes));
+        while (scanner.nextToken() != DFAScanner.EOF) {
+            tokens.add(scanner.getTokenType() + " " + scanner.getTokenOffset() + " " + scanner.getTokenLength());
+        }
+        return tokens;
+    }
+
+    private File writeScanner(CompiledDFA dfa) throws IOException {
+        File source = folder.newFile("lexer.c");
+        Files.write(source.toPath(), CCodeGenerator.generate(dfa, "yy").getBytes(StandardCharsets.UTF_8));
+        return source;
+    }
+
+    @Test
+    public void tokenStreamMatchesDFAScanner() throws Exception {
+        assumeTrue("没有 C 编译器", compiler != null);
+        CompiledDFA dfa = compile();
+        File source = writeScanner(dfa);
+        //输出每个记号的驱动程序，包含生成的代码
+        File driver = folder.newFile("trace.c");
+        Files.write(driver.toPath(), String.join("\n",
+                "#include \"lexer.c\"",
+                "",
+                "int main(void)",
+                "{",
+                "    yy_scanner s;",
+                "    int token;",
+                "    if (yy_init(&s, yy_file_refill, stdin) != 0) {",
+                "        return 1;",
+                "    }",
+                "    while ((token = yy_next_token(&s)) != YY_EOF) {",
+                "        printf(\"%d %llu %lu\\n\", token, s.offset, (unsigned long) s.leng);",
+                "    }",
+                "    yy_destroy(&s);",
+                "    return 0;",
+                "}",
+                "").getBytes(StandardCharsets.UTF_8));
+        File binary = new File(folder.getRoot(), "trace");
+        run(null, compiler, "-std=c99", "-Wall", "-Werror", "-O2", "-I", source.getParent(),
+                "-o", binary.getPath(), driver.getPath());
+
+        byte[] bytes = input(200000, 5);
+        File inputFile = folder.newFile("input.txt");
+        Files.write(inputFile.toPath(), bytes);
+        String output = run(inputFile, binary.getPath());
+        List<String> expected = scanWithJava(dfa, bytes);
+        List<String> actual = output.isEmpty() ? Collections.emptyList() : Arrays.asList(output.split("\n"));
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * 定义 YY_MAIN 时生成的 main 函数统计的记号数、错误数、字节数与 DFAScanner 相同
+     */
+    @Test
+    public void mainReportsTokenCounts() throws Exception {
+        assumeTrue("没有 C 编译器", compiler != null);
+        CompiledDFA dfa = compile();
+        File source = writeScanner(dfa);
+        File binary = new File(folder.getRoot(), "lexer");
+        run(null, compiler, "-std=c99", "-Wall", "-Werror", "-O2", "-DYY_MAIN", "-o", binary.getPath(), source.getPath());
+
+        byte[] bytes = input(1 << 20, 6);
+        File inputFile = folder.newFile("input.txt");
+        Files.write(inputFile.toPath(), bytes);
+        String output = run(inputFile, binary.getPath());
+        Matcher matcher = Pattern.compile(
+                "tokens=(\\d+) errors=(\\d+) bytes=(\\d+) seconds=([0-9.]+) MB/s=([0-9.]+)").matcher(output);
+        assertTrue(output, matcher.find());
+
+        long tokens = 0;
+        long errors = 0;
+        DFAScanner scanner = new DFAScanner(dfa, ByteBuffer.wrap(bytes));
+        int token;
+        while ((token = scanner.nextToken()) != DFAScanner.EOF) {
+            if (token == DFAScanner.ERROR) {
+                errors++;
+            } else {
+                tokens++;
+            }
+        }
+        assertTrue(errors > 0);
+        assertEquals(tokens, Long.parseLong(matcher.group(1)));
+        assertEquals(errors, Long.parseLong(matcher.group(2)));
+        assertEquals(bytes.length, Long.parseLong(matcher.group(3)));
+    }
+
+    @Test
+    public void customPrefixCompiles() throws Exception {
+        assumeTrue("没有 C 编译器", compiler != null);
+        File source = folder.newFile("calc.c");
+        Files.write(source.toPath(), CCodeGenerator.generate(compile(), "calc").getBytes(StandardCharsets.UTF_8));
+        run(null, compiler, "-std=c99", "-Wall", "-Werror", "-DCALC_MAIN", "-o",
+                new File(folder.getRoot(), "calc").getPath(), source.getPath());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsInvalidPrefix() {
+        CCodeGenerator.generate(compile(), "1yy");
+    }
+}
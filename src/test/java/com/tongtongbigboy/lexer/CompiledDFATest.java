@@ -0,0 +1,114 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompiledDFATest {
+
+    private static CompiledDFA compile(String... patterns) {
+        return CompiledPattern.create(Arrays.asList(patterns), CompileOptions.DEFAULT).getCompiledDFA();
+    }
+
+    @Test
+    public void matches() {
+        CompiledDFA dfa = compile("(a|b)*abb");
+        assertTrue(dfa.matches("abb"));
+        assertTrue(dfa.matches("babaabb"));
+        assertFalse(dfa.matches("ab"));
+        assertFalse(dfa.matches("abbc"));
+        assertFalse(dfa.matches(""));
+        assertTrue(compile("a*").matches(""));
+    }
+
+    @Test
+    public void lookingAtReturnsLongestMatch() {
+        CompiledDFA dfa = compile("a+b?");
+        assertEquals(4, dfa.lookingAt("aaabc", 0));
+        assertEquals(4, dfa.lookingAt("aaabc", 1));
+        assertEquals(-1, dfa.lookingAt("aaabc", 4));
+        //能匹配空串时至少返回开始位置
+        assertEquals(2, compile("x*").lookingAt("abc", 2));
+    }
+
+    @Test
+    public void lookingAtStopsAtDeadState() {
+        //b 之后不可能再到达接受态，最长匹配回退到最后一个接受位置
+        CompiledDFA dfa = compile("ab|abcd");
+        assertEquals(2, dfa.lookingAt("abcx", 0));
+        assertEquals(4, dfa.lookingAt("abcd", 0));
+    }
+
+    @Test
+    public void findReturnsLeftmostLongest() {
+        CompiledDFA dfa = compile("[0-9]+");
+        long match = dfa.find("ab123c45", 0);
+        assertEquals(2, CompiledDFA.matchStart(match));
+        assertEquals(5, CompiledDFA.matchEnd(match));
+        match = dfa.find("ab123c45", 5);
+        assertEquals(6, CompiledDFA.matchStart(match));
+        assertEquals(8, CompiledDFA.matchEnd(match));
+        assertEquals(-1, dfa.find("abc", 0));
+        //空匹配
+        match = compile("a*").find("bc", 1);
+        assertEquals(1, CompiledDFA.matchStart(match));
+        assertEquals(1, CompiledDFA.matchEnd(match));
+    }
+
+    /**
+     * 各实现共用 AutomatonMatcher.find；最坏情况下每个位置都读到末尾，与一遍扫描的 NFAMatcher 结果相同
+     */
+    @Test
+    public void findAgreesWithNFAMatcherOnWorstCase() {
+        CompiledPattern compiled = CompiledPattern.create(Collections.singletonList("a*b"), CompileOptions.DEFAULT);
+        NFAMatcher nfaMatcher = NFAMatcher.create(compiled.getNFAGraph());
+        CompiledDFA dfa = compiled.getCompiledDFA();
+        char[] chars = new char[2000];
+        Arrays.fill(chars, 'a');
+        String noMatch = new String(chars);
+        assertEquals(-1, dfa.find(noMatch, 0));
+        assertEquals(nfaMatcher.find(noMatch, 0), dfa.find(noMatch, 0));
+        String match = noMatch + "b";
+        assertEquals(2001, CompiledDFA.matchEnd(dfa.find(match, 0)));
+        assertEquals(nfaMatcher.find(match, 7), dfa.find(match, 7));
+    }
+
+    @Test
+    public void charactersOutsideAlphabetFail() {
+        CompiledDFA dfa = compile("[a-c]+");
+        assertEquals(-1, dfa.next(dfa.getStartState(), 'z'));
+        assertEquals(-1, dfa.next(dfa.getStartState(), '中'));
+        assertEquals(3, dfa.lookingAt("abc中", 0));
+    }
+
+    @Test
+    public void agreesWithDFAGraph() {
+        Random random = new Random(1);
+        String[] patterns = {"(a|b)*abb", "a(b|c)*d?", "(ab|ba)+c*", "[a-c]d|d[a-c]*", "((a|b)(c|d))*"};
+        for (String pattern : patterns) {
+            DFAGraph graph = CompiledPattern.create(Collections.singletonList(pattern), CompileOptions.DEFAULT).getMinDFA();
+            CompiledDFA dfa = CompiledDFA.create(graph);
+            for (int t = 0; t < 200; t++) {
+                StringBuilder sb = new StringBuilder();
+                int length = random.nextInt(8);
+                for (int i = 0; i < length; i++) {
+                    sb.append("abcdx".charAt(random.nextInt(5)));
+                }
+                String input = sb.toString();
+                assertEquals(pattern + " " + input, walk(graph, input), dfa.matches(input));
+            }
+        }
+    }
+
+    private static boolean walk(DFAGraph graph, String input) {
+        DFAState state = graph.getStart();
+        for (int i = 0; i < input.length() && state != null; i++) {
+            state = graph.getStateByMove(state, String.valueOf(input.charAt(i)));
+        }
+        return state != null && state.isEnd();
+    }
+}
@@ -0,0 +1,83 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 多个线程同时编译。NFA 状态编号由每次编译各自的 NFAContext 分配，
+ * 所以并发编译得到的 NFA、DFA（包括状态标识）与单线程编译的结果完全相同
+ */
+public class ConcurrentCompileTest {
+
+    private static final String[] PATTERNS = {
+            "(a|b)*abb", "l(l|d)*", "[0-9]+(.[0-9]+)?", "(ab|ba)+c*d?", "x{2,4}y", "((a|b)(c|d))*e", "[a-z]+|[A-Z]+"
+    };
+
+    /**
+     * 每次新建 CompiledPattern，不经过缓存
+     */
+    private static List<Map<String, List<String>>> compile(String pattern) {
+        CompiledPattern compiled = CompiledPattern.create(Collections.singletonList(pattern), CompileOptions.DEFAULT);
+        return Arrays.asList(sorted(NFARegexUtil.toMapList(compiled.getNFAGraph())),
+                sorted(DFARegexUtil.toMapList(compiled.getDFAGraph())),
+                sorted(DFARegexUtil.toMapList(compiled.getMinDFA())));
+    }
+
+    /**
+     * 同一状态的边存放在 HashSet 中，顺序不固定，排序后再比较
+     */
+    private static Map<String, List<String>> sorted(Map<String, List<String>> mapList) {
+        Map<String, List<String>> result = new TreeMap<>();
+        for (Map.Entry<String, List<String>> entry : mapList.entrySet()) {
+            List<String> edges = new ArrayList<>(entry.getValue());
+            Collections.sort(edges);
+            result.put(entry.getKey(), edges);
+        }
+        return result;
+    }
+
+    @Test(timeout = 60000)
+    public void parallelCompilationsAreIndependent() throws Exception {
+        Map<String, List<Map<String, List<String>>>> expected = new HashMap<>();
+        for (String pattern : PATTERNS) {
+            expected.put(pattern, compile(pattern));
+        }
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch ready = new CountDownLatch(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int i = 0; i < 200; i++) {
+                        String pattern = PATTERNS[(i + offset) % PATTERNS.length];
+                        assertEquals(pattern, expected.get(pattern), compile(pattern));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void stateIdsStartFromOneInEveryContext() {
+        NFAContext first = new NFAContext();
+        NFAContext second = new NFAContext();
+        NFARegexUtil.createNFAGraph(first, "(a|b)*c");
+        NFARegexUtil.createNFAGraph(second, "(a|b)*c");
+        assertEquals(first.getStateCount(), second.getStateCount());
+        assertEquals(1, new NFAContext().createState().getId());
+    }
+}
@@ -0,0 +1,180 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * 并行的 Moore 算法与 Hopcroft 算法得到相同的划分，translateMinDFA(true) 与 translateMinDFA(false) 的结果相同
+ */
+public class DFAMinimizerTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void createPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * 状态标识@规则编号 => 排序后的 路径>目的状态标识
+     */
+    private static Map<String, List<String>> describe(DFAGraph dfaGraph) {
+        Map<String, List<String>> result = new TreeMap<>();
+        CompactDFA dfa = CompactDFA.create(dfaGraph);
+        for (int s = 0; s < dfa.getStateCount(); s++) {
+            List<String> edges = new ArrayList<>();
+            for (int p = 0; p < dfa.getPathCount(); p++) {
+                int target = dfa.getTarget(s, p);
+                if (target >= 0) {
+                    edges.add(dfa.getPath(p) + ">" + dfa.getState(target).getNFAStatesId());
+                }
+            }
+            Collections.sort(edges);
+            result.put(dfa.getState(s).getNFAStatesId() + "@" + dfa.getToken(s), edges);
+        }
+        return result;
+    }
+
+    private static void assertSamePartition(String message, DFAGraph dfaGraph) {
+        CompactDFA dfa = CompactDFA.create(dfaGraph);
+        int[] initialBlocks = new int[dfa.getStateCount()];
+        for (int s = 0; s < dfa.getStateCount(); s++) {
+            initialBlocks[s] = dfa.getToken(s);
+        }
+        //两者都按状态下标顺序编号，划分相同时数组也相同
+        assertArrayEquals(message, DFAMinimizer.hopcroft(dfa, initialBlocks), DFAMinimizer.moore(dfa, initialBlocks, pool));
+
+        DFAGraph sequential = dfaGraph.translateMinDFA(false);
+        DFAGraph parallel = dfaGraph.translateMinDFA(true);
+        assertEquals(message, sequential.getStart().getNFAStatesId(), parallel.getStart().getNFAStatesId());
+        assertEquals(message, describe(sequential), describe(parallel));
+        CompiledDFA expected = CompiledDFA.create(sequential);
+        CompiledDFA actual = CompiledDFA.create(parallel);
+        assertEquals(message, expected.getStateCount(), actual.getStateCount());
+        for (int s = 0; s < expected.getStateCount(); s++) {
+            assertEquals(message, expected.getToken(s), actual.getToken(s));
+        }
+    }
+
+    private static String randomPattern(Random random) {
+        String[] atoms = {"a", "b", "c", "[a-c]", "(ab)", "(a|b)", "x", "if", "[0-9]"};
+        StringBuilder sb = new StringBuilder();
+        int parts = 1 + random.nextInt(4);
+        for (int i = 0; i < parts; i++) {
+            sb.append('(').append(atoms[random.nextInt(atoms.length)]);
+            if (random.nextBoolean()) {
+                sb.append('|').append(atoms[random.nextInt(atoms.length)]);
+            }
+            sb.append(')');
+            if (random.nextInt(3) > 0) {
+                sb.append("*+?".charAt(random.nextInt(3)));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void randomRuleSets() {
+        Random random = new Random(12);
+        for (int t = 0; t < 200; t++) {
+            List<String> patterns = new ArrayList<>();
+            int ruleCount = 1 + random.nextInt(5);
+            for (int i = 0; i < ruleCount; i++) {
+                patterns.add(randomPattern(random));
+            }
+            CompactNFA nfa = CompactNFA.create(NFARegexUtil.createNFAGraph(patterns));
+            assertSamePartition(patterns.toString(), DFARegexUtil.NFAToDFA(nfa, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void patternFamilies() {
+        for (String family : new String[]{"literal", "charClass", "nestedStar", "blowup8"}) {
+            List<String> patterns = Collections.singletonList(PatternFamilies.create(family));
+            CompactNFA nfa = CompactNFA.create(NFARegexUtil.createNFAGraph(patterns));
+            assertSamePartition(family, DFARegexUtil.NFAToDFA(nfa, Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * 随机的 DFA，约三分之一的转换缺失，缺失的转换都指向虚拟的死状态，其中也有不可达的状态
+     */
+    private static DFAGraph randomPartialDFA(Random random) {
+        int n = 1 + random.nextInt(40);
+        String[] paths = {"a", "b", "c"};
+        DFAState[] states = new DFAState[n];
+        for (int s = 0; s < n; s++) {
+            states[s] = new DFAState("s" + s, random.nextInt(4) - 1, s == 0);
+        }
+        DFAGraph dfaGraph = DFAGraph.create(states[0]);
+        for (int s = 0; s < n; s++) {
+            dfaGraph.addAcceptOrNonStates(states[s]);
+            for (String path : paths) {
+                if (random.nextInt(3) > 0) {
+                    dfaGraph.addStateTable(states[s], path, states[random.nextInt(n)]);
+                }
+            }
+        }
+        dfaGraph.setPaths(new ArrayList<>(Arrays.asList(paths)));
+        return dfaGraph;
+    }
+
+    @Test
+    public void missingTransitions() {
+        Random random = new Random(13);
+        for (int t = 0; t < 500; t++) {
+            assertSamePartition("dfa " + t, randomPartialDFA(random));
+        }
+    }
+
+    /**
+     * s1 与 s2 只差一个转换：s1 缺少 b 的转换（到虚拟死状态），s2 经过 b 到达还能接受的 s4，两者不等价；
+     * s0 与 s4 的转换完全相同，合并为一个状态
+     */
+    @Test
+    public void missingTransitionGoesToSink() {
+        DFAState s0 = new DFAState("s0", -1, true);
+        DFAState s1 = new DFAState("s1", -1, false);
+        DFAState s2 = new DFAState("s2", -1, false);
+        DFAState s3 = new DFAState("s3", 0, false);
+        DFAState s4 = new DFAState("s4", -1, false);
+        DFAGraph dfaGraph = DFAGraph.create(s0);
+        for (DFAState state : new DFAState[]{s0, s1, s2, s3, s4}) {
+            dfaGraph.addAcceptOrNonStates(state);
+        }
+        dfaGraph.addStateTable(s0, "a", s1);
+        dfaGraph.addStateTable(s0, "b", s2);
+        dfaGraph.addStateTable(s1, "c", s3);
+        dfaGraph.addStateTable(s2, "c", s3);
+        dfaGraph.addStateTable(s2, "b", s4);
+        dfaGraph.addStateTable(s4, "a", s1);
+        dfaGraph.addStateTable(s4, "b", s2);
+        dfaGraph.setPaths(new ArrayList<>(Arrays.asList("a", "b", "c")));
+        assertSamePartition("sink", dfaGraph);
+
+        CompactDFA dfa = CompactDFA.create(dfaGraph);
+        int[] initialBlocks = new int[dfa.getStateCount()];
+        Map<String, Integer> index = new HashMap<>();
+        for (int s = 0; s < dfa.getStateCount(); s++) {
+            initialBlocks[s] = dfa.getToken(s);
+            index.put(dfa.getState(s).getNFAStatesId(), s);
+        }
+        for (int[] blockOf : new int[][]{DFAMinimizer.hopcroft(dfa, initialBlocks),
+                DFAMinimizer.moore(dfa, initialBlocks, pool)}) {
+            assertNotEquals(blockOf[index.get("s1")], blockOf[index.get("s2")]);
+            assertEquals(blockOf[index.get("s0")], blockOf[index.get("s4")]);
+            assertEquals(4, Arrays.stream(blockOf).max().getAsInt() + 1);
+        }
+    }
+}
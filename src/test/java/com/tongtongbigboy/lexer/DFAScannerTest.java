@@ -0,0 +1,113 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DFAScannerTest {
+
+    private static CompiledDFA compile(String... patterns) {
+        return CompiledPattern.create(Arrays.asList(patterns), CompileOptions.DEFAULT).getCompiledDFA();
+    }
+
+    /**
+     * 扫描全部输入，每个记号记为 规则编号:文本
+     */
+    private static List<String> scan(DFAScanner scanner) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        while (scanner.nextToken() != DFAScanner.EOF) {
+            tokens.add(scanner.getTokenType() + ":" + scanner.getTokenText());
+        }
+        return tokens;
+    }
+
+    private static String repeat(char c, int n) {
+        char[] chars = new char[n];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void longestMatchAndPriority() throws IOException {
+        CompiledDFA dfa = compile("if", "[a-z]+", "[0-9]+", " ");
+        List<String> tokens = scan(new DFAScanner(dfa, new StringReader("if iff 42 x")));
+        assertEquals(Arrays.asList("0:if", "3: ", "1:iff", "3: ", "2:42", "3: ", "1:x"), tokens);
+    }
+
+    @Test
+    public void errorSkipsOneCharacter() throws IOException {
+        CompiledDFA dfa = compile("ab");
+        DFAScanner scanner = new DFAScanner(dfa, new StringReader("a?ab"));
+        assertEquals(DFAScanner.ERROR, scanner.nextToken());
+        assertEquals("a", scanner.getTokenText());
+        assertEquals(DFAScanner.ERROR, scanner.nextToken());
+        assertEquals(1, scanner.getTokenOffset());
+        assertEquals(0, scanner.nextToken());
+        assertEquals(2, scanner.getTokenOffset());
+        assertEquals(DFAScanner.EOF, scanner.nextToken());
+    }
+
+    @Test
+    public void tokensSpanningReads() throws IOException {
+        CompiledDFA dfa = compile("[a-z]+", " ");
+        String word = repeat('x', 20000);
+        String input = "ab " + word + " cd";
+        //每次最多读 3 个字符
+        Reader reader = new StringReader(input) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 3));
+            }
+        };
+        assertEquals(Arrays.asList("0:ab", "1: ", "0:" + word, "1: ", "0:cd"), scan(new DFAScanner(dfa, reader)));
+    }
+
+    @Test
+    public void decodesChannel() throws IOException {
+        CompiledDFA dfa = compile("[中文]+", "[a-z]+");
+        byte[] bytes = "abc中文中de".getBytes(StandardCharsets.UTF_8);
+        DFAScanner scanner = new DFAScanner(dfa, Channels.newChannel(new ByteArrayInputStream(bytes)), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("1:abc", "0:中文中", "1:de"), scan(scanner));
+    }
+
+    /**
+     * 记号填满缓冲区只剩一个位置时，下一个字符是补充平面字符，曾经无限循环
+     */
+    @Test(timeout = 10000)
+    public void supplementaryCharacterAtBufferBoundary() throws IOException {
+        for (int n = 8189; n <= 8192; n++) {
+            String input = repeat('a', n) + new String(Character.toChars(0x1F600));
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            DFAScanner scanner = new DFAScanner(compile("a*"), Channels.newChannel(new ByteArrayInputStream(bytes)),
+                    StandardCharsets.UTF_8);
+            assertEquals(0, scanner.nextToken());
+            assertEquals(n, scanner.getTokenLength());
+            //代理对的两个字符各报一次错
+            assertEquals(DFAScanner.ERROR, scanner.nextToken());
+            assertEquals(Character.highSurrogate(0x1F600), scanner.getTokenText().charAt(0));
+            assertEquals(DFAScanner.ERROR, scanner.nextToken());
+            assertEquals(Character.lowSurrogate(0x1F600), scanner.getTokenText().charAt(0));
+            assertEquals(DFAScanner.EOF, scanner.nextToken());
+        }
+    }
+
+    @Test
+    public void scansMappedBytes() throws IOException {
+        CompiledDFA dfa = compile("[0-9]+", ",");
+        ByteBuffer bytes = ByteBuffer.wrap("xx12,345".getBytes(StandardCharsets.ISO_8859_1));
+        bytes.position(2);
+        DFAScanner scanner = new DFAScanner(dfa, bytes);
+        assertEquals(Arrays.asList("0:12", "1:,", "0:345"), scan(scanner));
+    }
+}
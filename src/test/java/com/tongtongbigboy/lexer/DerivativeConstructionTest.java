@@ -0,0 +1,176 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 导数的计算，以及导数构造最小化后与 Thompson 构造 + 子集构造的结果相同
+ */
+public class DerivativeConstructionTest {
+
+    private static final String ALPHABET = "abcifx09 ";
+
+    private static final CompileOptions DERIVATIVES = CompileOptions.DEFAULT.withDerivatives(true);
+
+    private static void assertDerivative(String expected, String pattern, String word) {
+        DerivativeConstruction construction = new DerivativeConstruction();
+        RegexNode derivative = construction.derivative(construction.normalize(pattern), word);
+        assertSame("D_" + word + "(" + pattern + ") = " + derivative, construction.normalize(expected), derivative);
+    }
+
+    private static void assertEmptyDerivative(String pattern, String word) {
+        DerivativeConstruction construction = new DerivativeConstruction();
+        assertEquals(RegexNode.EMPTY, construction.derivative(construction.normalize(pattern), word).getKind());
+    }
+
+    @Test
+    public void handCheckedDerivatives() {
+        assertDerivative("b*|c", "ab*|ac", "a");
+        assertDerivative("b*", "ab*|ac", "ab");
+        assertDerivative("b(ab)*", "(ab)*", "a");
+        assertDerivative("(ab)*", "(ab)*", "ab");
+        assertDerivative("b(ab)*", "(ab)+", "a");
+        assertDerivative("bc", "a?bc", "a");
+        assertDerivative("c", "a?bc", "b");
+        assertEmptyDerivative("ab", "b");
+        assertEmptyDerivative("ab", "z");
+    }
+
+    /**
+     * D(r s) = D(r) s | D(s)，r 能匹配空串时后一项不能丢
+     */
+    @Test
+    public void nullableHeadOfConcat() {
+        assertDerivative("a?", "a?a", "a");
+        assertDerivative("a*b", "a*b", "a");
+        assertDerivative("c", "a*b?c", "b");
+        assertDerivative("a*b?c", "a*b?c", "a");
+        DerivativeConstruction construction = new DerivativeConstruction();
+        assertEquals(RegexNode.EPSILON, construction.derivative(construction.normalize("a*b"), "b").getKind());
+        assertEquals(RegexNode.EPSILON, construction.derivative(construction.normalize("(a?)(b?)c"), "c").getKind());
+    }
+
+    /**
+     * D(r{m,n}) = D(r) r{m-1,n-1}
+     */
+    @Test
+    public void repeatDerivative() {
+        assertDerivative("a{1,3}", "a{2,4}", "a");
+        assertDerivative("a{0,2}", "a{2,4}", "aa");
+        assertDerivative("a?", "a{2,4}", "aaa");
+        assertDerivative("a{2}", "a{3}", "a");
+        assertDerivative("b(ab)+", "(ab){2,}", "a");
+        assertDerivative("b(ab)*", "(ab){1,}", "a");
+        assertEmptyDerivative("a{2,4}", "aaaaa");
+    }
+
+    /**
+     * 状态数相同，并且在随机输入上逐个字符前进时每一步的记号相同
+     */
+    private static void assertSameAsDefault(List<String> patterns) {
+        String message = patterns.toString();
+        CompiledDFA expected = CompiledDFA.create(CompiledPattern.create(patterns, CompileOptions.DEFAULT).getMinDFA());
+        CompiledDFA actual = CompiledDFA.create(CompiledPattern.create(patterns, DERIVATIVES).getMinDFA());
+        assertEquals(message, expected.getStateCount(), actual.getStateCount());
+        Random random = new Random(patterns.hashCode());
+        for (int t = 0; t < 200; t++) {
+            int state = expected.getStartState();
+            int actualState = actual.getStartState();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length && state >= 0; i++) {
+                char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                state = expected.next(state, c);
+                actualState = actual.next(actualState, c);
+                assertEquals(message, state < 0, actualState < 0);
+                if (state >= 0) {
+                    assertEquals(message, expected.getToken(state), actual.getToken(actualState));
+                }
+            }
+        }
+    }
+
+    private static String randomPattern(Random random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            String[] atoms = {"a", "b", "c", "x", "[a-c]", "[0-9]", "if"};
+            return atoms[random.nextInt(atoms.length)];
+        }
+        switch (random.nextInt(6)) {
+            case 0:
+            case 1:
+                return randomPattern(random, depth - 1) + randomPattern(random, depth - 1);
+            case 2:
+            case 3:
+                return "(" + randomPattern(random, depth - 1) + "|" + randomPattern(random, depth - 1) + ")";
+            case 4:
+                return "(" + randomPattern(random, depth - 1) + ")" + "*+?".charAt(random.nextInt(3));
+            default:
+                int min = random.nextInt(3);
+                return "(" + randomPattern(random, depth - 1) + "){" + min + "," + (min + random.nextInt(3)) + "}";
+        }
+    }
+
+    @Test
+    public void randomPatterns() {
+        Random random = new Random(15);
+        for (int t = 0; t < 300; t++) {
+            assertSameAsDefault(Collections.singletonList(randomPattern(random, 4)));
+        }
+    }
+
+    @Test
+    public void randomRuleSets() {
+        Random random = new Random(16);
+        for (int t = 0; t < 150; t++) {
+            List<String> patterns = new ArrayList<>();
+            int ruleCount = 2 + random.nextInt(4);
+            for (int i = 0; i < ruleCount; i++) {
+                patterns.add(randomPattern(random, 3));
+            }
+            assertSameAsDefault(patterns);
+        }
+    }
+
+    @Test
+    public void lexerRules() {
+        assertSameAsDefault(Arrays.asList("if|else|while", "[a-zA-Z_][a-zA-Z0-9_]*", "[0-9]+(.[0-9]+)?", "[ ]+",
+                "==|=|<=|<"));
+        assertSameAsDefault(Arrays.asList("(a?){2,3}b", "(ab|a){1,3}", "a*"));
+    }
+
+    /**
+     * 多条规则同时能匹配空串时取编号最小的，被完全覆盖的规则没有接受态
+     */
+    @Test
+    public void lowestNullableRuleWins() {
+        CompiledDFA dfa = CompiledDFA.create(DerivativeConstruction.toDFA(Arrays.asList("if", "[a-z]+"), 100));
+        assertEquals(0, dfa.getToken(dfa.next(dfa.next(dfa.getStartState(), 'i'), 'f')));
+        assertEquals(1, dfa.getToken(dfa.next(dfa.getStartState(), 'i')));
+
+        dfa = CompiledDFA.create(DerivativeConstruction.toDFA(Arrays.asList("[a-z]+", "if"), 100));
+        for (int s = 0; s < dfa.getStateCount(); s++) {
+            assertNotEquals(1, dfa.getToken(s));
+        }
+        assertEquals(0, dfa.getToken(dfa.next(dfa.next(dfa.getStartState(), 'i'), 'f')));
+    }
+
+    @Test
+    public void stateLimit() {
+        List<String> patterns = Collections.singletonList("(a|b)*a(a|b)(a|b)(a|b)(a|b)");
+        //第 5 个位置之前的每种 a、b 组合都对应一个状态
+        assertTrue(DerivativeConstruction.toDFA(patterns, 100).getStateTable().size() >= 32);
+        try {
+            DerivativeConstruction.toDFA(patterns, 20);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("DFA 状态数超过上限：20"));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsEmptyRuleSet() {
+        DerivativeConstruction.toDFA(Collections.emptyList(), 100);
+    }
+}
@@ -0,0 +1,148 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 逐条修改规则后增量编译的结果与 CompiledPattern.getMinDFA() 相同，并且只重新构造变化的分支
+ */
+public class IncrementalCompilerTest {
+
+    private static final String ALPHABET = "abcifelsx09 _";
+
+    /**
+     * 状态数相同，并且在随机输入上逐个字符前进时每一步的记号相同
+     */
+    private static void assertSameTokens(List<String> patterns, DFAGraph actualGraph) {
+        CompiledDFA expected = CompiledDFA.create(CompiledPattern.create(patterns, CompileOptions.DEFAULT).getMinDFA());
+        CompiledDFA actual = CompiledDFA.create(actualGraph);
+        String message = patterns.toString();
+        assertEquals(message, expected.getStateCount(), actual.getStateCount());
+        Random random = new Random(patterns.hashCode());
+        for (int t = 0; t < 200; t++) {
+            int state = expected.getStartState();
+            int actualState = actual.getStartState();
+            int length = random.nextInt(10);
+            for (int i = 0; i < length && state >= 0; i++) {
+                char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                state = expected.next(state, c);
+                actualState = actual.next(actualState, c);
+                assertEquals(message, state < 0, actualState < 0);
+                if (state >= 0) {
+                    assertEquals(message, expected.getToken(state), actual.getToken(actualState));
+                }
+            }
+        }
+    }
+
+    private static List<String> compile(IncrementalCompiler compiler, String... patterns) {
+        List<String> list = Arrays.asList(patterns);
+        assertSameTokens(list, compiler.compile(list));
+        return list;
+    }
+
+    @Test
+    public void onlyChangedBranchesAreRebuilt() {
+        IncrementalCompiler compiler = new IncrementalCompiler();
+        compile(compiler, "if|else|while", "[a-z_][a-z0-9_]*", "[0-9]+", "[ ]+");
+        assertEquals(6, compiler.getBuiltBranchCount());
+        assertEquals(0, compiler.getReusedBranchCount());
+
+        //没有修改
+        compile(compiler, "if|else|while", "[a-z_][a-z0-9_]*", "[0-9]+", "[ ]+");
+        assertEquals(0, compiler.getBuiltBranchCount());
+        assertEquals(6, compiler.getReusedBranchCount());
+
+        //修改一个分支
+        compile(compiler, "if|elif|while", "[a-z_][a-z0-9_]*", "[0-9]+", "[ ]+");
+        assertEquals(1, compiler.getBuiltBranchCount());
+        assertEquals(5, compiler.getReusedBranchCount());
+
+        //修改一条规则，分支调换顺序不需要重新构造
+        compile(compiler, "while|if|elif", "[a-z_][a-z0-9_]*", "[0-9]+(.[0-9]+)?", "[ ]+");
+        assertEquals(1, compiler.getBuiltBranchCount());
+        assertEquals(5, compiler.getReusedBranchCount());
+
+        //增加一条规则
+        compile(compiler, "while|if|elif", "[a-z_][a-z0-9_]*", "[0-9]+(.[0-9]+)?", "[ ]+", "==|=");
+        assertEquals(2, compiler.getBuiltBranchCount());
+        assertEquals(6, compiler.getReusedBranchCount());
+    }
+
+    @Test
+    public void unusedBranchesAreEvicted() {
+        IncrementalCompiler compiler = new IncrementalCompiler();
+        compile(compiler, "abc|x+", "[0-9]+");
+        compile(compiler, "abd|x+", "[0-9]+");
+        assertEquals(1, compiler.getBuiltBranchCount());
+        //abc 在上一次编译中没有用到，缓存已经清除
+        compile(compiler, "abc|x+", "[0-9]+");
+        assertEquals(1, compiler.getBuiltBranchCount());
+        assertEquals(2, compiler.getReusedBranchCount());
+    }
+
+    @Test
+    public void sharedFragmentsAreCopied() {
+        IncrementalCompiler compiler = new IncrementalCompiler();
+        compile(compiler, "[a-c][0-9]+x", "[a-c][0-9]+s");
+        assertTrue(compiler.getReusedFragmentCount() > 0);
+    }
+
+    /**
+     * 同一个分支出现在多条规则中时记号为编号最小的规则，被完全覆盖的规则没有接受态
+     */
+    @Test
+    public void lowestRuleWins() {
+        IncrementalCompiler compiler = new IncrementalCompiler();
+        compile(compiler, "a|b", "b|c", "[a-c]+");
+        CompiledDFA dfa = CompiledDFA.create(compiler.compile(Arrays.asList("a|b", "b|c", "[a-c]+")));
+        assertEquals(0, dfa.getToken(dfa.next(dfa.getStartState(), 'b')));
+        assertEquals(1, dfa.getToken(dfa.next(dfa.getStartState(), 'c')));
+        assertEquals(2, dfa.getToken(dfa.next(dfa.next(dfa.getStartState(), 'b'), 'b')));
+        compile(compiler, "if", "if", "[a-z]+");
+    }
+
+    private static String randomRule(Random random) {
+        String[] atoms = {"a", "b", "c", "if", "else", "[a-c]", "[0-9]", "x", "(ab|c)", "_"};
+        StringBuilder sb = new StringBuilder();
+        int branches = 1 + random.nextInt(3);
+        for (int b = 0; b < branches; b++) {
+            if (b > 0) {
+                sb.append('|');
+            }
+            int parts = 1 + random.nextInt(3);
+            for (int i = 0; i < parts; i++) {
+                sb.append(atoms[random.nextInt(atoms.length)]);
+                if (random.nextInt(3) == 0) {
+                    sb.append("*+?".charAt(random.nextInt(3)));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void randomEditSequence() {
+        Random random = new Random(14);
+        IncrementalCompiler compiler = new IncrementalCompiler();
+        List<String> rules = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            rules.add(randomRule(random));
+        }
+        assertSameTokens(rules, compiler.compile(rules));
+        for (int t = 0; t < 150; t++) {
+            rules.set(random.nextInt(rules.size()), randomRule(random));
+            assertSameTokens(rules, compiler.compile(rules));
+            //每次只修改一条规则，它最多 3 个分支
+            assertTrue(rules.toString(), compiler.getBuiltBranchCount() <= 3);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsEmptyRuleSet() {
+        new IncrementalCompiler().compile(Collections.emptyList());
+    }
+}
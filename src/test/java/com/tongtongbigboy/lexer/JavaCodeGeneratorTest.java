@@ -0,0 +1,132 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * 编译生成的 Java 源代码，记号序列与 DFAScanner 比较
+ */
+public class JavaCodeGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CompiledDFA compile(List<String> patterns) {
+        return CompiledPattern.create(patterns, CompileOptions.DEFAULT).getCompiledDFA();
+    }
+
+    /**
+     * 编译并加载生成的类
+     */
+    private Class<?> load(String packageName, String className, String code) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+        File dir = folder.newFolder();
+        File source = new File(dir, className + ".java");
+        Files.write(source.toPath(), code.getBytes(StandardCharsets.UTF_8));
+        int result = compiler.run(null, null, null, "-encoding", "UTF-8", "-d", dir.getPath(), source.getPath());
+        assertEquals(0, result);
+        URLClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, getClass().getClassLoader());
+        return loader.loadClass(packageName == null ? className : packageName + "." + className);
+    }
+
+    /**
+     * 每次最多读 5 个字符的 Reader，记号经常跨越读取边界
+     */
+    private static Reader slowReader(String input) {
+        return new StringReader(input) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 5));
+            }
+        };
+    }
+
+    @Test
+    public void tokenStreamMatchesDFAScanner() throws Exception {
+        List<String> rules = Arrays.asList("if|else", "[a-zA-Z_][a-zA-Z0-9_]*", "[0-9]+", "[ \n]+", "[中文]+", "==|=");
+        CompiledDFA dfa = compile(rules);
+        String code = JavaCodeGenerator.generate(dfa, "test.lexer", "TestLexer",
+                Arrays.asList("KEYWORD", "IDENT", "NUMBER", "SPACE", "CJK", "OP"));
+        Class<?> lexerClass = load("test.lexer", "TestLexer", code);
+        assertEquals(4, lexerClass.getField("CJK").getInt(null));
+
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(8);
+        String[] words = {"if", "else", "x1", "42", " ", "\n", "中文", "文", "==", "=", "@", "é"};
+        for (int i = 0; i < 5000; i++) {
+            sb.append(words[random.nextInt(words.length)]);
+        }
+        String input = sb.toString();
+
+        Constructor<?> constructor = lexerClass.getConstructor(Reader.class);
+        Object lexer = constructor.newInstance(slowReader(input));
+        Method nextToken = lexerClass.getMethod("nextToken");
+        Method getTokenText = lexerClass.getMethod("getTokenText");
+        Method getTokenOffset = lexerClass.getMethod("getTokenOffset");
+        DFAScanner scanner = new DFAScanner(dfa, slowReader(input));
+        while (true) {
+            int expected = scanner.nextToken();
+            int actual = (Integer) nextToken.invoke(lexer);
+            assertEquals(expected, actual);
+            if (expected == DFAScanner.EOF) {
+                break;
+            }
+            assertEquals(scanner.getTokenText(), getTokenText.invoke(lexer));
+            assertEquals(scanner.getTokenOffset(), getTokenOffset.invoke(lexer));
+        }
+    }
+
+    /**
+     * 最后一条规则被完全覆盖，DFA 中没有它的接受态，常量仍然要生成
+     */
+    @Test
+    public void shadowedRuleKeepsItsConstant() throws Exception {
+        CompiledDFA dfa = compile(Arrays.asList("a", "a"));
+        String code = JavaCodeGenerator.generate(dfa, null, "ShadowLexer", Arrays.asList("A", "B"));
+        Class<?> lexerClass = load(null, "ShadowLexer", code);
+        assertEquals(0, lexerClass.getField("A").getInt(null));
+        assertEquals(1, lexerClass.getField("B").getInt(null));
+    }
+
+    @Test
+    public void defaultTokenNames() throws Exception {
+        CompiledDFA dfa = compile(Arrays.asList("a", "b"));
+        Class<?> lexerClass = load(null, "DefaultLexer", JavaCodeGenerator.generate(dfa, null, "DefaultLexer", null));
+        assertEquals(0, lexerClass.getField("RULE_0").getInt(null));
+        assertEquals(1, lexerClass.getField("RULE_1").getInt(null));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsReservedTokenName() {
+        JavaCodeGenerator.generate(compile(Collections.singletonList("a")), null, "L", Collections.singletonList("EOF"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsDuplicateTokenName() {
+        JavaCodeGenerator.generate(compile(Arrays.asList("a", "b")), null, "L", Arrays.asList("X", "X"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsInvalidClassName() {
+        JavaCodeGenerator.generate(compile(Collections.singletonList("a")), null, "1L", null);
+    }
+}
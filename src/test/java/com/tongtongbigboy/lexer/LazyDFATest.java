@@ -0,0 +1,92 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LazyDFATest {
+
+    private static NFAGraph nfa(String pattern) {
+        NFAGraph graph = NFARegexUtil.createNFAGraph(pattern);
+        graph.getEndState().setEnd(true);
+        graph.getStartState().setStart(true);
+        return graph;
+    }
+
+    private static CompiledDFA compile(String pattern) {
+        return CompiledPattern.create(Collections.singletonList(pattern), CompileOptions.DEFAULT).getCompiledDFA();
+    }
+
+    private static String randomInput(Random random, String alphabet, int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void agreesWithCompiledDFA() {
+        Random random = new Random(2);
+        String[] patterns = {"(a|b)*abb", "a(b|c)*d?", "(ab|ba)+c*", "[a-c]d|d[a-c]*", "a*"};
+        for (String pattern : patterns) {
+            LazyDFA lazy = LazyDFA.create(nfa(pattern));
+            CompiledDFA dfa = compile(pattern);
+            for (int t = 0; t < 300; t++) {
+                String input = randomInput(random, "abcdx", 10);
+                assertEquals(pattern + " " + input, dfa.matches(input), lazy.matches(input));
+                assertEquals(pattern + " " + input, dfa.lookingAt(input, 0), lazy.lookingAt(input, 0));
+                assertEquals(pattern + " " + input, dfa.find(input, 0), lazy.find(input, 0));
+            }
+        }
+    }
+
+    @Test
+    public void buildsOnlyReachedStates() {
+        //完整 DFA 有 2^12 个状态
+        LazyDFA lazy = LazyDFA.create(nfa("(a|b)*a(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)"));
+        assertTrue(lazy.matches("babababababab"));
+        assertFalse(lazy.matches("bbbababababab"));
+        //两次匹配各 13 个字符，加上开始状态
+        assertTrue(lazy.getCachedStateCount() <= 1 + 2 * 13);
+        assertEquals(0, lazy.getFlushCount());
+    }
+
+    @Test
+    public void flushesWhenCacheIsFull() {
+        String pattern = "(a|b)*a(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)";
+        LazyDFA lazy = LazyDFA.create(CompactNFA.create(nfa(pattern)), 8);
+        CompiledDFA dfa = compile(pattern);
+        Random random = new Random(3);
+        for (int t = 0; t < 200; t++) {
+            String input = randomInput(random, "ab", 40);
+            assertEquals(input, dfa.matches(input), lazy.matches(input));
+            assertEquals(input, dfa.lookingAt(input, 0), lazy.lookingAt(input, 0));
+            assertTrue(lazy.getCachedStateCount() <= 8);
+        }
+        assertTrue(lazy.getFlushCount() > 0);
+    }
+
+    @Test
+    public void reportsRuleOfHighestPriority() {
+        LazyDFA lazy = LazyDFA.create(CompactNFA.create(NFARegexUtil.createNFAGraph(Arrays.asList("if", "[a-z]+"))),
+                LazyDFA.DEFAULT_MAX_STATES);
+        int state = lazy.getStartState();
+        state = lazy.next(state, 'i');
+        assertEquals(1, lazy.getToken(state));
+        state = lazy.next(state, 'f');
+        assertEquals(0, lazy.getToken(state));
+        state = lazy.next(state, '0');
+        assertEquals(-1, state);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsTooSmallCache() {
+        LazyDFA.create(CompactNFA.create(nfa("a")), 1);
+    }
+}
@@ -0,0 +1,129 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LexerSpecTest {
+
+    // 示例规则文件，测试在项目根目录下运行
+    private static final Path EXAMPLE = Paths.get("src/main/xlex/ExampleLexer.xlex");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertParseError(String message, String... lines) {
+        try {
+            LexerSpec.parse(Arrays.asList(lines), "L");
+            fail(message);
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    @Test
+    public void parsesDirectivesAndRules() {
+        LexerSpec spec = LexerSpec.parse(Arrays.asList(
+                "# 注释",
+                "",
+                "%package com.example.lexer",
+                "%class MyLexer",
+                "IF      if",
+                "  IDENT\t[a-zA-Z_][a-zA-Z0-9_]*  ",
+                "SPACE   [ ]+"), "Default");
+        assertEquals("com.example.lexer", spec.getPackageName());
+        assertEquals("MyLexer", spec.getClassName());
+        assertEquals(Arrays.asList("IF", "IDENT", "SPACE"), spec.getTokenNames());
+        //正则表达式为该行剩余部分，内部的空白保留
+        assertEquals(Arrays.asList("if", "[a-zA-Z_][a-zA-Z0-9_]*", "[ ]+"), spec.getPatterns());
+    }
+
+    @Test
+    public void defaults() {
+        LexerSpec spec = LexerSpec.parse(Collections.singletonList("A a"), "Default");
+        assertNull(spec.getPackageName());
+        assertEquals("Default", spec.getClassName());
+    }
+
+    @Test
+    public void rejectsMalformedSpecs() {
+        assertParseError("第1行缺少正则表达式", "IF");
+        assertParseError("第2行无法识别的指令", "A a", "%option x");
+        assertParseError("第2行记号类型重复", "A a", "A b");
+        assertParseError("没有任何规则", "# 空", "%class L");
+    }
+
+    @Test
+    public void readsFileNameAsDefaultClassName() throws IOException {
+        Path path = folder.newFile("Calc.xlex").toPath();
+        Files.write(path, Arrays.asList("NUM [0-9]+", "中文 [中文]+"), StandardCharsets.UTF_8);
+        LexerSpec spec = LexerSpec.read(path);
+        assertEquals("Calc", spec.getClassName());
+        assertEquals("[中文]+", spec.getPatterns().get(1));
+    }
+
+    @Test
+    public void readErrorsNameTheFile() throws IOException {
+        Path path = folder.newFile("Bad.xlex").toPath();
+        Files.write(path, Collections.singletonList("%bad x"), StandardCharsets.UTF_8);
+        try {
+            LexerSpec.read(path);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(path.toString()));
+        }
+    }
+
+    @Test
+    public void exampleSpecScans() throws IOException {
+        LexerSpec spec = LexerSpec.read(EXAMPLE);
+        assertEquals("com.tongtongbigboy.lexer.example", spec.getPackageName());
+        assertEquals("ExampleLexer", spec.getClassName());
+        CompiledDFA dfa = CompiledPattern.create(spec.getPatterns(), CompileOptions.DEFAULT).getCompiledDFA();
+        DFAScanner scanner = new DFAScanner(dfa, new StringReader("while (x1 >= 3.5) { s = \"a b\"; return x1; }"));
+        List<String> tokens = new ArrayList<>();
+        while (scanner.nextToken() != DFAScanner.EOF) {
+            assertTrue(scanner.getTokenText(), scanner.getTokenType() >= 0);
+            String name = spec.getTokenNames().get(scanner.getTokenType());
+            if (!"SPACE".equals(name)) {
+                tokens.add(name + ":" + scanner.getTokenText());
+            }
+        }
+        assertEquals(Arrays.asList("WHILE:while", "PUNCT:(", "IDENT:x1", "OP:>=", "NUMBER:3.5", "PUNCT:)",
+                "PUNCT:{", "IDENT:s", "OP:=", "STRING:\"a b\"", "PUNCT:;", "RETURN:return", "IDENT:x1", "PUNCT:;",
+                "PUNCT:}"), tokens);
+    }
+
+    @Test
+    public void xlexCompilerWritesSourceTableAndState() throws IOException {
+        Path javaDir = folder.newFolder("java").toPath();
+        Path tablesDir = folder.newFolder("tables").toPath();
+        Path stateDir = folder.newFolder("state").toPath();
+        List<Path> outputs = XlexCompiler.compile(EXAMPLE, EXAMPLE.getFileName(), javaDir, tablesDir, stateDir);
+
+        Path javaFile = javaDir.resolve("com/tongtongbigboy/lexer/example/ExampleLexer.java");
+        Path tableFile = tablesDir.resolve("com/tongtongbigboy/lexer/example/ExampleLexer.dfa");
+        assertEquals(Arrays.asList(javaFile.toAbsolutePath(), tableFile.toAbsolutePath()), outputs);
+        String source = new String(Files.readAllBytes(javaFile), StandardCharsets.UTF_8);
+        assertTrue(source.contains("package com.tongtongbigboy.lexer.example;"));
+        assertTrue(source.contains("public static final int SPACE = 9;"));
+        MappedDFA table = MappedDFA.load(tableFile);
+        assertEquals(4, table.lookingAt("1.25+", 0));
+
+        List<String> state = Files.readAllLines(stateDir.resolve("ExampleLexer.xlex.outputs"), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList(javaFile.toAbsolutePath().toString(), tableFile.toAbsolutePath().toString()), state);
+    }
+}
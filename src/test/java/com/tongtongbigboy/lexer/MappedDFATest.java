@@ -0,0 +1,128 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MappedDFATest {
+
+    private static final List<String> RULES = Arrays.asList("if", "[a-z]+", "[0-9]+", "[中文]+", " ");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CompiledDFA compile() {
+        return CompiledPattern.create(RULES, CompileOptions.DEFAULT).getCompiledDFA();
+    }
+
+    private static void assertMatchesLike(CompiledDFA expected, MappedDFA actual) {
+        assertEquals(expected.getStateCount(), actual.getStateCount());
+        assertEquals(expected.getClassCount(), actual.getClassCount());
+        Random random = new Random(9);
+        String alphabet = "ifx09中文 é";
+        for (int t = 0; t < 500; t++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String input = sb.toString();
+            assertEquals(input, expected.matches(input), actual.matches(input));
+            assertEquals(input, expected.lookingAt(input, 0), actual.lookingAt(input, 0));
+            assertEquals(input, expected.find(input, 0), actual.find(input, 0));
+            int state = expected.getStartState();
+            int mappedState = actual.getStartState();
+            for (int i = 0; i < length && state >= 0; i++) {
+                state = expected.next(state, input.charAt(i));
+                mappedState = actual.next(mappedState, input.charAt(i));
+                assertEquals(state, mappedState);
+                if (state >= 0) {
+                    assertEquals(expected.getToken(state), actual.getToken(mappedState));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundTripThroughFile() throws Exception {
+        CompiledDFA dfa = compile();
+        Path path = folder.newFile("rules.xdfa").toPath();
+        MappedDFA.write(dfa, path);
+        assertMatchesLike(dfa, MappedDFA.load(path));
+        assertMatchesLike(dfa, MappedDFA.load(path, false));
+    }
+
+    @Test
+    public void roundTripThroughBytes() {
+        CompiledDFA dfa = compile();
+        assertMatchesLike(dfa, MappedDFA.wrap(ByteBuffer.wrap(MappedDFA.toBytes(dfa)), true));
+    }
+
+    @Test
+    public void classOfCharactersAboveDirectTable() {
+        CompiledDFA dfa = compile();
+        MappedDFA mapped = MappedDFA.wrap(ByteBuffer.wrap(MappedDFA.toBytes(dfa)), true);
+        for (int c : new int[]{'a', 'z', '0', ' ', 0xe9, '中', '文', '字', 0xffff}) {
+            assertEquals(String.valueOf(c), dfa.getAlphabet().classOf(c), mapped.classOf(c));
+        }
+    }
+
+    @Test
+    public void wrapsFromBufferPosition() {
+        byte[] bytes = MappedDFA.toBytes(compile());
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 8);
+        buffer.position(8);
+        buffer.put(bytes);
+        buffer.position(8);
+        assertTrue(MappedDFA.wrap(buffer, true).matches("if"));
+    }
+
+    private static void assertRejected(byte[] bytes, String message) {
+        try {
+            MappedDFA.wrap(ByteBuffer.wrap(bytes), true);
+            fail(message);
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    @Test
+    public void rejectsCorruptFiles() throws Exception {
+        byte[] bytes = MappedDFA.toBytes(compile());
+
+        byte[] magic = bytes.clone();
+        magic[0] ^= 1;
+        assertRejected(magic, "不是 DFA 文件");
+
+        byte[] version = bytes.clone();
+        version[7] = 2;
+        assertRejected(version, "不支持的 DFA 文件版本");
+
+        assertRejected(Arrays.copyOf(bytes, bytes.length - 4), "长度与头部不符");
+        assertRejected(Arrays.copyOf(bytes, bytes.length - 1), "长度为");
+        assertRejected(new byte[16], "长度为");
+
+        byte[] stateCount = bytes.clone();
+        stateCount[11]++;
+        assertRejected(stateCount, "长度与头部不符");
+
+        //转换表中的一个字节
+        byte[] content = bytes.clone();
+        content[bytes.length - 8] ^= 0x10;
+        assertRejected(content, "校验和不符");
+
+        //不检查校验和时可以加载
+        Path path = folder.newFile("corrupt.xdfa").toPath();
+        Files.write(path, content);
+        MappedDFA.load(path, false);
+    }
+}
@@ -0,0 +1,98 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 生成的字节码匹配器与 CompiledDFA 的匹配结果相同
+ */
+public class MatcherGeneratorTest {
+
+    private static CompiledDFA compile(List<String> patterns) {
+        return CompiledPattern.create(patterns, CompileOptions.DEFAULT).getCompiledDFA();
+    }
+
+    /**
+     * n 个字符的字面量，每个位置一个状态，字母各成一个等价类
+     */
+    private static String literal(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        return sb.toString();
+    }
+
+    private static void assertMatchesLike(CompiledDFA expected, AutomatonMatcher actual, String alphabet, long seed) {
+        Random random = new Random(seed);
+        for (int t = 0; t < 1000; t++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String input = sb.toString();
+            assertEquals(input, expected.matches(input), actual.matches(input));
+            int from = random.nextInt(length + 1);
+            assertEquals(input, expected.lookingAt(input, from), actual.lookingAt(input, from));
+            assertEquals(input, expected.find(input, from), actual.find(input, from));
+        }
+    }
+
+    @Test
+    public void agreesWithCompiledDFA() {
+        CompiledDFA dfa = compile(Arrays.asList("if|else", "[a-z_][a-z0-9_]*", "[0-9]+(.[0-9]+)?", "[ ]+", "[中文]+"));
+        GeneratedMatcher matcher = MatcherGenerator.generate(dfa);
+        assertMatchesLike(dfa, matcher, "ifelsx_09. 中文字é", 17);
+        assertTrue(matcher.matches("else"));
+        assertFalse(matcher.matches("1+"));
+        assertEquals(4, matcher.lookingAt("3.25+", 0));
+        assertEquals(((long) 1 << 32) | 3, matcher.find("+中文+", 0));
+    }
+
+    @Test
+    public void agreesOnPatternFamilies() {
+        for (String family : new String[]{"literal", "charClass", "nestedStar", "blowup8"}) {
+            CompiledDFA dfa = compile(Collections.singletonList(PatternFamilies.create(family)));
+            assertMatchesLike(dfa, MatcherGenerator.generate(dfa), "abcdefghijklmnopqrstuvwxyz0123456789", 18);
+        }
+    }
+
+    /**
+     * 开始状态就是接受态，空串也能匹配
+     */
+    @Test
+    public void acceptingStartState() {
+        CompiledDFA dfa = compile(Collections.singletonList("a*"));
+        GeneratedMatcher matcher = MatcherGenerator.generate(dfa);
+        assertTrue(matcher.matches(""));
+        assertEquals(0, matcher.lookingAt("b", 0));
+        assertEquals(2, matcher.lookingAt("aab", 1));
+        assertMatchesLike(dfa, matcher, "ab", 19);
+    }
+
+    @Test
+    public void compileFallsBackForHugeMethods() {
+        CompiledDFA small = compile(Collections.singletonList("[a-z]+"));
+        assertTrue(MatcherGenerator.compile(small) instanceof GeneratedMatcher);
+
+        //超过 HugeMethodLimit 的方法不会被 JIT 编译，compile 直接返回 CompiledDFA，generate 仍然可以生成
+        CompiledDFA large = compile(Collections.singletonList(literal(100)));
+        assertSame(large, MatcherGenerator.compile(large));
+        assertMatchesLike(large, MatcherGenerator.generate(large), "abcdefghijklmnopqrstuvwxyz", 20);
+        assertTrue(MatcherGenerator.generate(large).matches(literal(100)));
+    }
+
+    @Test
+    public void rejectsMethodsOverTheBytecodeLimit() {
+        try {
+            MatcherGenerator.generate(compile(Collections.singletonList(literal(600))));
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("DFA 太大，无法生成字节码"));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NFAMatcherTest {
+
+    private static NFAMatcher matcher(String pattern) {
+        NFAGraph graph = NFARegexUtil.createNFAGraph(pattern);
+        graph.getEndState().setEnd(true);
+        graph.getStartState().setStart(true);
+        return NFAMatcher.create(graph);
+    }
+
+    private static CompiledDFA compile(String pattern) {
+        return CompiledPattern.create(Collections.singletonList(pattern), CompileOptions.DEFAULT).getCompiledDFA();
+    }
+
+    @Test
+    public void matches() {
+        NFAMatcher matcher = matcher("(a|b)*abb");
+        assertTrue(matcher.matches("abb"));
+        assertTrue(matcher.matches("aababb"));
+        assertFalse(matcher.matches("abba"));
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches("abz"));
+        assertTrue(matcher("a*").matches(""));
+    }
+
+    @Test
+    public void lookingAtReturnsLongestMatch() {
+        NFAMatcher matcher = matcher("ab|abcd|a");
+        assertEquals(2, matcher.lookingAt("abcx", 0));
+        assertEquals(4, matcher.lookingAt("abcd", 0));
+        assertEquals(1, matcher.lookingAt("ax", 0));
+        assertEquals(-1, matcher.lookingAt("xa", 0));
+        assertEquals(4, matcher.lookingAt("xxab", 2));
+        assertEquals(1, matcher("x*").lookingAt("abc", 1));
+    }
+
+    @Test
+    public void findReturnsLeftmostLongest() {
+        NFAMatcher matcher = matcher("[0-9]+");
+        long match = matcher.find("ab123c45", 0);
+        assertEquals(2, CompiledDFA.matchStart(match));
+        assertEquals(5, CompiledDFA.matchEnd(match));
+        match = matcher.find("ab123c45", 5);
+        assertEquals(6, CompiledDFA.matchStart(match));
+        assertEquals(8, CompiledDFA.matchEnd(match));
+        assertEquals(-1, matcher.find("abc", 0));
+        //最左优先于最长：从 0 开始的 ab 比从 1 开始的 bcccc 短
+        match = matcher("ab|bc*").find("abcccc", 0);
+        assertEquals(0, CompiledDFA.matchStart(match));
+        assertEquals(2, CompiledDFA.matchEnd(match));
+        //空匹配
+        match = matcher("a*").find("bc", 1);
+        assertEquals(1, CompiledDFA.matchStart(match));
+        assertEquals(1, CompiledDFA.matchEnd(match));
+    }
+
+    /**
+     * 大量 ε 边、闭包互相重叠的正则表达式
+     */
+    @Test
+    public void epsilonHeavyPatterns() {
+        assertTrue(matcher("((a*)*)*").matches("aaaa"));
+        assertTrue(matcher("((a*)*)*").matches(""));
+        assertTrue(matcher("(a?)*(b?)*a").matches("aabba"));
+        assertFalse(matcher("(a?)*(b?)*a").matches("aabb"));
+        assertTrue(matcher("(a*|b*)*c").matches("abbac"));
+    }
+
+    @Test
+    public void agreesWithCompiledDFA() {
+        Random random = new Random(4);
+        String[] patterns = {"(a|b)*abb", "a(b|c)*d?", "(ab|ba)+c*", "[a-c]d|d[a-c]*", "((a*)*b?)*c", "(a|ab)(c|bcd)(d*)"};
+        for (String pattern : patterns) {
+            NFAMatcher matcher = matcher(pattern);
+            CompiledDFA dfa = compile(pattern);
+            for (int t = 0; t < 300; t++) {
+                StringBuilder sb = new StringBuilder();
+                int length = random.nextInt(10);
+                for (int i = 0; i < length; i++) {
+                    sb.append("abcdx".charAt(random.nextInt(5)));
+                }
+                String input = sb.toString();
+                int from = random.nextInt(length + 1);
+                assertEquals(pattern + " " + input, dfa.matches(input), matcher.matches(input));
+                assertEquals(pattern + " " + input, dfa.lookingAt(input, from), matcher.lookingAt(input, from));
+                assertEquals(pattern + " " + input, dfa.find(input, from), matcher.find(input, from));
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * 并行子集构造与 DFARegexUtil.NFAToDFA 的结果相同。
+ * 两者的编号顺序不同，DFAGraph 中的状态以 NFA 状态集合标识，按标识比较
+ */
+public class ParallelSubsetConstructionTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void createPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    private static CompactNFA nfa(List<String> patterns) {
+        if (patterns.size() > 1) {
+            return CompactNFA.create(NFARegexUtil.createNFAGraph(patterns));
+        }
+        NFAGraph graph = NFARegexUtil.createNFAGraph(patterns.get(0));
+        graph.getEndState().setEnd(true);
+        graph.getStartState().setStart(true);
+        return CompactNFA.create(graph);
+    }
+
+    /**
+     * 状态标识@规则编号 => 排序后的 路径>目的状态标识
+     */
+    private static Map<String, List<String>> describe(DFAGraph dfaGraph) {
+        Map<String, List<String>> result = new TreeMap<>();
+        for (Map.Entry<DFAState, Map<String, DFAState>> entry : dfaGraph.getStateTable().entrySet()) {
+            List<String> edges = new ArrayList<>();
+            for (Map.Entry<String, DFAState> edge : entry.getValue().entrySet()) {
+                edges.add(edge.getKey() + ">" + edge.getValue().getNFAStatesId());
+            }
+            Collections.sort(edges);
+            DFAState state = entry.getKey();
+            result.put(state.getNFAStatesId() + "@" + state.getToken(), edges);
+        }
+        return result;
+    }
+
+    private static void assertSameAsSequential(List<String> patterns) {
+        CompactNFA nfa = nfa(patterns);
+        DFAGraph sequential = DFARegexUtil.NFAToDFA(nfa, Integer.MAX_VALUE);
+        DFAGraph parallel = ParallelSubsetConstruction.NFAToDFA(nfa, Integer.MAX_VALUE, pool);
+        assertEquals(patterns.toString(), sequential.getStart().getNFAStatesId(), parallel.getStart().getNFAStatesId());
+        assertEquals(patterns.toString(), sequential.getPaths(), parallel.getPaths());
+        assertEquals(patterns.toString(), describe(sequential), describe(parallel));
+        assertEquals(patterns.toString(), CompiledDFA.create(sequential.translateMinDFA()).getStateCount(),
+                CompiledDFA.create(parallel.translateMinDFA()).getStateCount());
+    }
+
+    @Test
+    public void patternFamilies() {
+        for (String family : new String[]{"literal", "charClass", "nestedStar", "blowup8", "blowup10"}) {
+            assertSameAsSequential(Collections.singletonList(PatternFamilies.create(family)));
+        }
+    }
+
+    @Test
+    public void lexerRules() {
+        assertSameAsSequential(Arrays.asList("if|else|while", "[a-zA-Z_][a-zA-Z0-9_]*", "[0-9]+(.[0-9]+)?",
+                "[ ]+", "==|=|<=|<"));
+        assertSameAsSequential(Arrays.asList("a", "a"));
+    }
+
+    @Test
+    public void randomPatterns() {
+        Random random = new Random(10);
+        String[] atoms = {"a", "b", "c", "[a-c]", "(ab)", "(a|b)", "x"};
+        for (int t = 0; t < 100; t++) {
+            StringBuilder sb = new StringBuilder();
+            int parts = 1 + random.nextInt(5);
+            for (int i = 0; i < parts; i++) {
+                sb.append('(').append(atoms[random.nextInt(atoms.length)]);
+                if (random.nextBoolean()) {
+                    sb.append('|').append(atoms[random.nextInt(atoms.length)]);
+                }
+                sb.append(')').append("*+?".charAt(random.nextInt(3)));
+            }
+            assertSameAsSequential(Collections.singletonList(sb.toString()));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void stateLimit() {
+        ParallelSubsetConstruction.NFAToDFA(nfa(Collections.singletonList(PatternFamilies.create("blowup8"))), 100, pool);
+    }
+}
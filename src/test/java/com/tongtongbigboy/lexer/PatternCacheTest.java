@@ -0,0 +1,109 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class PatternCacheTest {
+
+    @Test
+    public void equalKeysShareOneCompiledPattern() {
+        PatternCache cache = new PatternCache(8);
+        CompiledPattern compiled = cache.get("a|b");
+        assertSame(compiled, cache.get("a|b"));
+        assertSame(compiled, cache.get(Collections.singletonList("a|b"), CompileOptions.DEFAULT));
+        //相等但不是同一个的选项
+        assertSame(compiled, cache.get("a|b", CompileOptions.DEFAULT.withParallel(true).withParallel(false)));
+        assertNotSame(compiled, cache.get("a|b", CompileOptions.DEFAULT.withParallel(true)));
+        assertNotSame(compiled, cache.get(Arrays.asList("a", "b"), CompileOptions.DEFAULT));
+        assertEquals(3, cache.size());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    /**
+     * 键保存的是列表的副本，调用者之后修改列表不影响缓存
+     */
+    @Test
+    public void keyIsCopied() {
+        PatternCache cache = new PatternCache(8);
+        List<String> patterns = new ArrayList<>(Arrays.asList("a", "b"));
+        CompiledPattern compiled = cache.get(patterns, CompileOptions.DEFAULT);
+        patterns.set(1, "c");
+        assertSame(compiled, cache.get(Arrays.asList("a", "b"), CompileOptions.DEFAULT));
+        assertNotSame(compiled, cache.get(patterns, CompileOptions.DEFAULT));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        PatternCache cache = new PatternCache(3);
+        CompiledPattern a = cache.get("a");
+        CompiledPattern b = cache.get("b");
+        cache.get("c");
+        //访问 a 后最久未使用的是 b
+        assertSame(a, cache.get("a"));
+        cache.get("d");
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(a, cache.get("a"));
+        assertNotSame(b, cache.get("b"));
+        //b 重新编译后淘汰了 c
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(5, cache.getMissCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNotSame(a, cache.get("a"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsNonPositiveSize() {
+        new PatternCache(0);
+    }
+
+    @Test(timeout = 60000)
+    public void threadsGetTheSameInstance() throws Exception {
+        PatternCache cache = new PatternCache(64);
+        String[] patterns = {"(a|b)*abb", "l(l|d)*", "[0-9]+", "x{2,4}y"};
+        int threads = 8;
+        int rounds = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch ready = new CountDownLatch(threads);
+            List<Future<List<CompiledPattern>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    List<CompiledPattern> result = new ArrayList<>();
+                    for (int i = 0; i < rounds; i++) {
+                        CompiledPattern compiled = cache.get(patterns[i % patterns.length]);
+                        //各阶段延迟计算，多个线程同时触发
+                        compiled.getCompiledDFA();
+                        result.add(compiled);
+                    }
+                    return result;
+                }));
+            }
+            List<List<CompiledPattern>> results = new ArrayList<>();
+            for (Future<List<CompiledPattern>> future : futures) {
+                results.add(future.get());
+            }
+            for (List<CompiledPattern> result : results) {
+                for (int i = 0; i < rounds; i++) {
+                    assertSame(results.get(0).get(i % patterns.length), result.get(i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(patterns.length, cache.size());
+        assertEquals(patterns.length, cache.getMissCount());
+        assertEquals((long) threads * rounds - patterns.length, cache.getHitCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,195 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 化简规则的结果，以及化简前后的语法树得到相同的最小化 DFA
+ */
+public class RegexSimplifierTest {
+
+    // 随机表达式和随机输入使用的字符，'#' 不出现在表达式中
+    private static final String ALPHABET = "abcx#";
+
+    private RegexContext context;
+    private RegexSimplifier simplifier;
+
+    @Before
+    public void createContext() {
+        context = new RegexContext();
+        simplifier = new RegexSimplifier(context);
+    }
+
+    private RegexNode simplify(String pattern) {
+        return simplifier.simplify(context.parse(pattern));
+    }
+
+    private RegexNode ch(char c) {
+        return context.chars(c);
+    }
+
+    private static CompiledDFA minDFA(RegexNode node) {
+        NFAGraph graph = NFARegexUtil.createNFAGraph(new NFAContext(), node);
+        graph.getEndState().setEnd(true);
+        graph.getStartState().setStart(true);
+        return CompiledDFA.create(DFARegexUtil.NFAToDFA(CompactNFA.create(graph), Integer.MAX_VALUE).translateMinDFA());
+    }
+
+    /**
+     * 两个最小化 DFA 状态数相同，并且从开始状态同步遍历时状态一一对应、接受状态相同，即两者同构
+     */
+    private static void assertIsomorphic(String message, CompiledDFA expected, CompiledDFA actual) {
+        assertEquals(message, expected.getStateCount(), actual.getStateCount());
+        Map<Integer, Integer> forward = new HashMap<>();
+        Map<Integer, Integer> backward = new HashMap<>();
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[]{expected.getStartState(), actual.getStartState()});
+        forward.put(expected.getStartState(), actual.getStartState());
+        backward.put(actual.getStartState(), expected.getStartState());
+        while (!queue.isEmpty()) {
+            int[] pair = queue.removeFirst();
+            assertEquals(message, expected.isAccept(pair[0]), actual.isAccept(pair[1]));
+            for (int i = 0; i < ALPHABET.length(); i++) {
+                char c = ALPHABET.charAt(i);
+                int s = expected.next(pair[0], c);
+                int t = actual.next(pair[1], c);
+                assertEquals(message, s < 0, t < 0);
+                if (s < 0) {
+                    continue;
+                }
+                Integer mapped = forward.get(s);
+                if (mapped == null) {
+                    assertNull(message, backward.get(t));
+                    forward.put(s, t);
+                    backward.put(t, s);
+                    queue.addLast(new int[]{s, t});
+                } else {
+                    assertEquals(message, mapped.intValue(), t);
+                }
+            }
+        }
+    }
+
+    private static String randomPattern(Random random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            String[] atoms = {"a", "b", "c", "x", "[a-c]", "[bx]"};
+            return atoms[random.nextInt(atoms.length)];
+        }
+        switch (random.nextInt(7)) {
+            case 0:
+            case 1:
+                return randomPattern(random, depth - 1) + randomPattern(random, depth - 1);
+            case 2:
+            case 3:
+                return "(" + randomPattern(random, depth - 1) + "|" + randomPattern(random, depth - 1) + ")";
+            case 4:
+                return "(" + randomPattern(random, depth - 1) + ")" + "*+?".charAt(random.nextInt(3));
+            case 5:
+                int min = random.nextInt(3);
+                return "(" + randomPattern(random, depth - 1) + "){" + min + "," + (min + random.nextInt(2)) + "}";
+            default:
+                return "(" + randomPattern(random, depth - 1) + ")" + "*+?".charAt(random.nextInt(3))
+                        + "*+?".charAt(random.nextInt(3));
+        }
+    }
+
+    @Test
+    public void randomPatternsKeepTheirMinimizedDFA() {
+        Random random = new Random(11);
+        for (int t = 0; t < 300; t++) {
+            String pattern = randomPattern(random, 4);
+            RegexNode node = context.parse(pattern);
+            CompiledDFA expected = minDFA(node);
+            assertIsomorphic(pattern, expected, minDFA(simplifier.normalize(node)));
+            assertIsomorphic(pattern, expected, minDFA(simplifier.simplify(node)));
+        }
+    }
+
+    @Test
+    public void examplePatternsKeepTheirMinimizedDFA() {
+        for (String pattern : new String[]{"a**", "(a|a)", "(a|b|c)", "(x)?*", "(a{2}){3}", "(ab|ac)", "(abc|ab)",
+                "(a?|b)", "((a+)?)+", "((ab)|c)*[a-b]x", "(ab|abc|b)*"}) {
+            RegexNode node = context.parse(pattern);
+            assertIsomorphic(pattern, minDFA(node), minDFA(simplifier.simplify(node)));
+        }
+    }
+
+    @Test
+    public void alternationOfCharactersBecomesOneSet() {
+        assertSame(context.chars(new int[]{'a', 'c'}), simplify("(a|b|c)"));
+        assertSame(context.chars(new int[]{'a', 'c', 'x', 'x'}), simplify("(x|[a-b]|c)"));
+        assertSame(ch('a'), simplify("(a|a)"));
+    }
+
+    @Test
+    public void nestedRepetitionsCollapse() {
+        RegexNode aStar = context.star(ch('a'));
+        assertSame(aStar, simplify("a**"));
+        assertSame(aStar, simplify("(a+)*"));
+        assertSame(aStar, simplify("(a?)+"));
+        assertSame(aStar, simplify("(a*)?"));
+        assertSame(context.star(ch('x')), simplify("(x)?*"));
+        assertSame(context.plus(ch('a')), simplify("(a+)+"));
+        assertSame(context.repeat(ch('a'), 6, 6), simplify("(a{2}){3}"));
+    }
+
+    @Test
+    public void countedRepetitionsBecomeOperators() {
+        assertSame(context.star(ch('a')), simplify("a{0,}"));
+        assertSame(context.plus(ch('a')), simplify("a{1,}"));
+        assertSame(context.optional(ch('a')), simplify("a{0,1}"));
+        assertSame(ch('a'), simplify("a{1}"));
+    }
+
+    @Test
+    public void commonPrefixesAreFactored() {
+        assertSame(context.concat(Arrays.asList(ch('a'), context.chars(new int[]{'b', 'c'}))), simplify("(ab|ac)"));
+        assertSame(context.concat(Arrays.asList(ch('a'), ch('b'), context.optional(ch('c')))), simplify("(abc|ab)"));
+        //normalize 不提取公共前缀
+        assertEquals(RegexNode.ALT, simplifier.normalize(context.parse("(ab|ac)")).getKind());
+    }
+
+    @Test
+    public void nullableAlternativeBecomesOptional() {
+        RegexNode node = simplify("(a?|b)");
+        assertSame(context.optional(context.chars(new int[]{'a', 'b'})), node);
+        assertTrue(node.isNullable());
+        //分支本身能匹配空串时不再加可选
+        assertSame(context.alt(context.star(ch('a')), context.concat(ch('b'), ch('c'))),
+                simplifier.alt(Arrays.asList(context.concat(ch('b'), ch('c')), context.epsilon(), context.star(ch('a')))));
+    }
+
+    @Test
+    public void alternativeOrderDoesNotMatter() {
+        assertSame(simplify("(b|xa|c|ab)"), simplify("(ab|c|xa|b)"));
+        assertSame(simplifier.normalize(context.parse("(ab|b*|xc)")), simplifier.normalize(context.parse("(xc|ab|b*)")));
+    }
+
+    @Test
+    public void emptyAndEpsilon() {
+        RegexNode a = ch('a');
+        assertSame(context.empty(), simplifier.concat(Arrays.asList(a, context.empty())));
+        assertSame(a, simplifier.concat(Arrays.asList(context.epsilon(), a, context.epsilon())));
+        assertSame(a, simplifier.alt(Arrays.asList(context.empty(), a)));
+        assertSame(context.epsilon(), simplifier.star(context.empty()));
+        assertSame(context.epsilon(), simplifier.repeat(a, 0, 0));
+        assertSame(context.empty(), simplifier.repeat(context.empty(), 2, 3));
+    }
+
+    @Test
+    public void simplificationShrinksTheNFA() {
+        for (String pattern : new String[]{"a**", "(a|b|c)", "(ab|ac|ad)", "(if|int|in)[a-z]*"}) {
+            RegexNode node = context.parse(pattern);
+            NFAContext before = new NFAContext();
+            NFARegexUtil.createNFAGraph(before, node);
+            NFAContext after = new NFAContext();
+            NFARegexUtil.createNFAGraph(after, simplifier.simplify(node));
+            assertTrue(pattern + " " + before.getStateCount() + " => " + after.getStateCount(),
+                    after.getStateCount() < before.getStateCount());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.tongtongbigboy.lexer;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * 计数重复 {m}、{m,}、{m,n}
+ */
+public class RepeatTest {
+
+    private static CompiledDFA compile(String pattern) {
+        return compile(pattern, CompileOptions.DEFAULT);
+    }
+
+    private static CompiledDFA compile(String pattern, CompileOptions options) {
+        return CompiledPattern.create(Collections.singletonList(pattern), options).getCompiledDFA();
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 检查 pattern 恰好匹配 a 重复 [min, max] 次，max 为 -1 表示不限（检查到 max(min, 3) + 5 次）
+     */
+    private static void assertCounts(String pattern, int min, int max) {
+        CompiledDFA dfa = compile(pattern);
+        int limit = (max < 0 ? Math.max(min, 3) : max) + 5;
+        for (int n = 0; n <= limit; n++) {
+            boolean expected = n >= min && (max < 0 || n <= max);
+            assertEquals(pattern + " " + n, expected, dfa.matches(repeat('a', n)));
+        }
+    }
+
+    @Test
+    public void exact() {
+        assertCounts("a{3}", 3, 3);
+        assertCounts("a{3,3}", 3, 3);
+        assertCounts("a{1}", 1, 1);
+    }
+
+    @Test
+    public void zero() {
+        assertCounts("a{0}", 0, 0);
+        assertCounts("a{0,0}", 0, 0);
+        CompiledDFA dfa = compile("ba{0}c");
+        assertTrue(dfa.matches("bc"));
+        assertFalse(dfa.matches("bac"));
+    }
+
+    @Test
+    public void unbounded() {
+        assertCounts("a{0,}", 0, -1);
+        assertCounts("a{1,}", 1, -1);
+        assertCounts("a{4,}", 4, -1);
+    }
+
+    @Test
+    public void range() {
+        assertCounts("a{0,1}", 0, 1);
+        assertCounts("a{2,5}", 2, 5);
+    }
+
+    @Test
+    public void appliesToPrecedingExpression() {
+        CompiledDFA dfa = compile("(ab){2}c");
+        assertTrue(dfa.matches("ababc"));
+        assertFalse(dfa.matches("abc"));
+        assertFalse(dfa.matches("abbc"));
+        dfa = compile("[0-9]{2,3}");
+        assertTrue(dfa.matches("12"));
+        assertTrue(dfa.matches("123"));
+        assertFalse(dfa.matches("1234"));
+        dfa = compile("((a|b){2}){2}");
+        assertTrue(dfa.matches("abba"));
+        assertFalse(dfa.matches("aba"));
+    }
+
+    @Test
+    public void sameDFAAsExpandedPattern() {
+        assertEquals(compile("aaa(a(a)?)?").getStateCount(), compile("a{3,5}").getStateCount());
+        assertEquals(compile("aa(a)*").getStateCount(), compile("a{2,}").getStateCount());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsMaxBelowMin() {
+        compile("a{3,2}");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsMissingBrace() {
+        compile("a{3");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsMalformedCount() {
+        compile("a{x}");
+    }
+
+    @Test
+    public void nestedCopiesAreLimited() {
+        CompileOptions options = CompileOptions.DEFAULT.withMaxRepeat(100);
+        assertTrue(compile("(a{10}){10}", options).matches(repeat('a', 100)));
+        try {
+            compile("((a{10}){10}){2}", options);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("重复次数过大"));
+        }
+    }
+}